@@ -6,6 +6,7 @@ import burp.api.montoya.logging.Logging;
 import com.ecapture.burp.ui.ECaptureTab;
 import com.ecapture.burp.websocket.ECaptureWebSocketClient;
 import com.ecapture.burp.event.EventManager;
+import com.ecapture.burp.ingest.IngestPipeline;
 
 /**
  * Main entry point for the eCapture Burp Suite Extension.
@@ -20,6 +21,7 @@ public class ECaptureBurpExtension implements BurpExtension {
     private Logging logging;
     private ECaptureWebSocketClient wsClient;
     private EventManager eventManager;
+    private IngestPipeline ingestPipeline;
     private ECaptureTab mainTab;
     
     @Override
@@ -38,11 +40,14 @@ public class ECaptureBurpExtension implements BurpExtension {
         // Initialize event manager
         this.eventManager = new EventManager(api);
         
+        // Initialize ingest pipeline (decouples WebSocket reads from processing)
+        this.ingestPipeline = new IngestPipeline(api, eventManager);
+        
         // Initialize WebSocket client
-        this.wsClient = new ECaptureWebSocketClient(api, eventManager);
+        this.wsClient = new ECaptureWebSocketClient(api, eventManager, ingestPipeline);
         
         // Initialize and register UI tab
-        this.mainTab = new ECaptureTab(api, wsClient, eventManager);
+        this.mainTab = new ECaptureTab(api, wsClient, eventManager, ingestPipeline);
         api.userInterface().registerSuiteTab(EXTENSION_NAME, mainTab.getComponent());
         
         // Register context menu
@@ -54,6 +59,15 @@ public class ECaptureBurpExtension implements BurpExtension {
             if (wsClient != null) {
                 wsClient.disconnect();
             }
+            if (ingestPipeline != null) {
+                ingestPipeline.shutdown();
+            }
+            if (mainTab != null) {
+                mainTab.shutdown();
+            }
+            if (eventManager != null) {
+                eventManager.shutdown();
+            }
         });
         
         logging.logToOutput("eCapture extension loaded successfully!");
@@ -71,5 +85,9 @@ public class ECaptureBurpExtension implements BurpExtension {
     public EventManager getEventManager() {
         return eventManager;
     }
+    
+    public IngestPipeline getIngestPipeline() {
+        return ingestPipeline;
+    }
 }
 
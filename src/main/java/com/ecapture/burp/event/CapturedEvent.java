@@ -1,5 +1,8 @@
 package com.ecapture.burp.event;
 
+import com.ecapture.burp.http.HttpHead;
+import com.ecapture.burp.store.Payload;
+
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -38,13 +41,21 @@ public class CapturedEvent {
             return description;
         }
         
-        public static EventType fromCode(int code) {
+        // Indexed by code - MIN_CODE; values() clones its array on every call
+        private static final int MIN_CODE = -2;
+        private static final EventType[] BY_CODE = new EventType[7];
+        static {
             for (EventType type : values()) {
-                if (type.code == code) {
-                    return type;
-                }
+                BY_CODE[type.code - MIN_CODE] = type;
+            }
+        }
+        
+        public static EventType fromCode(int code) {
+            int index = code - MIN_CODE;
+            if (index < 0 || index >= BY_CODE.length) {
+                return UNKNOWN;
             }
-            return UNKNOWN;
+            return BY_CODE[index];
         }
         
         public boolean isRequest() {
@@ -56,79 +67,155 @@ public class CapturedEvent {
         }
     }
     
+    // Status code strings, so getStatusCode() does not allocate
+    private static final String[] STATUS_CODES = new String[1000];
+    static {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            STATUS_CODES[i] = String.valueOf(i);
+        }
+    }
+    
+    // Process names (and the rare address that is not an IP literal) repeat across many
+    // events; each is stored once. Only low-cardinality values are interned, since symbols
+    // are never removed.
+    private static final SymbolTable SYMBOLS = new SymbolTable();
+    
+    // UUIDs repeat across every event of a socket but grow with every socket, so they
+    // are shared through a pool that is emptied on Clear (see clearUuids())
+    private static final int MAX_POOLED_UUIDS = 65536;
+    private static final UuidPool UUIDS = new UuidPool(MAX_POOLED_UUIDS);
+    
+    // Set in addressFlags when an address is not an IP literal and is kept as a symbol instead
+    private static final byte SRC_ADDRESS_SYMBOL = 1;
+    private static final byte DST_ADDRESS_SYMBOL = 2;
+    
     private final long timestamp;
-    private final String uuid;
-    private final String srcIp;
+    private final UuidPool.Entry socket;
+    // IP addresses as 128 bits each (IPv4 is stored IPv4-mapped)
+    private final long srcAddrHigh;
+    private final long srcAddrLow;
+    private final long dstAddrHigh;
+    private final long dstAddrLow;
+    private final byte addressFlags;
     private final int srcPort;
-    private final String dstIp;
     private final int dstPort;
     private final long pid;
-    private final String processName;
+    private final int processNameId;
     private final EventType eventType;
     private final int length;
-    private final byte[] payload;
+    private final Payload payload;
     private final long receivedAt;
     
+    // HTTP/2 stream the message belongs to; 0 for HTTP/1.x and raw events
+    private final int streamId;
+    
+    // Body bytes not kept by the retention policy (see RetentionPolicy)
+    private final int omittedBytes;
+    
+    // Parsed start line and header offsets, computed on first use; holds no payload bytes
+    private volatile HttpHead head;
+    
     public CapturedEvent(long timestamp, String uuid, String srcIp, int srcPort,
                          String dstIp, int dstPort, long pid, String processName,
-                         int type, int length, byte[] payload) {
+                         int type, int length, Payload payload) {
         this.timestamp = timestamp;
-        this.uuid = uuid;
-        this.srcIp = srcIp;
+        this.socket = UUIDS.get(uuid);
+        
+        long[] packed = new long[2];
+        byte flags = 0;
+        if (PackedAddress.parse(srcIp, packed)) {
+            this.srcAddrHigh = packed[0];
+            this.srcAddrLow = packed[1];
+        } else {
+            this.srcAddrHigh = 0;
+            this.srcAddrLow = SYMBOLS.intern(srcIp);
+            flags |= SRC_ADDRESS_SYMBOL;
+        }
+        if (PackedAddress.parse(dstIp, packed)) {
+            this.dstAddrHigh = packed[0];
+            this.dstAddrLow = packed[1];
+        } else {
+            this.dstAddrHigh = 0;
+            this.dstAddrLow = SYMBOLS.intern(dstIp);
+            flags |= DST_ADDRESS_SYMBOL;
+        }
+        this.addressFlags = flags;
+        
         this.srcPort = srcPort;
-        this.dstIp = dstIp;
         this.dstPort = dstPort;
         this.pid = pid;
-        this.processName = processName;
+        this.processNameId = SYMBOLS.intern(processName);
         this.length = length;
-        this.payload = payload;
+        this.payload = payload != null ? payload : Payload.EMPTY;
         this.receivedAt = System.currentTimeMillis();
+        this.streamId = 0;
+        this.omittedBytes = 0;
         
         // Auto-detect event type if UNKNOWN (type=0)
         EventType detectedType = EventType.fromCode(type);
-        if (detectedType == EventType.UNKNOWN && payload != null && payload.length > 0) {
-            detectedType = detectEventType(payload);
+        if (detectedType == EventType.UNKNOWN && !this.payload.isEmpty()) {
+            detectedType = EventTypeDetector.getDefault().detect(this.payload);
         }
         this.eventType = detectedType;
     }
     
     /**
-     * Auto-detect if payload is HTTP request or response based on content.
+     * Same event metadata with another payload (e.g. a message reassembled from several
+     * events of the connection, starting with this one). A null type is detected from
+     * the payload as for new events. The length includes the omitted bytes.
      */
-    private static EventType detectEventType(byte[] payload) {
-        if (payload == null || payload.length < 4) {
-            return EventType.UNKNOWN;
-        }
-        
-        String start = new String(payload, 0, Math.min(payload.length, 20));
+    private CapturedEvent(CapturedEvent source, Payload payload, EventType type, int streamId,
+                          int omittedBytes) {
+        this.timestamp = source.timestamp;
+        this.socket = source.socket;
+        this.srcAddrHigh = source.srcAddrHigh;
+        this.srcAddrLow = source.srcAddrLow;
+        this.dstAddrHigh = source.dstAddrHigh;
+        this.dstAddrLow = source.dstAddrLow;
+        this.addressFlags = source.addressFlags;
+        this.srcPort = source.srcPort;
+        this.dstPort = source.dstPort;
+        this.pid = source.pid;
+        this.processNameId = source.processNameId;
+        this.payload = payload != null ? payload : Payload.EMPTY;
+        this.length = this.payload.length() + omittedBytes;
+        this.receivedAt = source.receivedAt;
+        this.streamId = streamId;
+        this.omittedBytes = omittedBytes;
         
-        // Check for HTTP response (starts with "HTTP/")
-        if (start.startsWith("HTTP/")) {
-            return EventType.AUTO_RESPONSE;
+        EventType detectedType = type != null ? type : source.eventType;
+        if (detectedType == EventType.UNKNOWN && !this.payload.isEmpty()) {
+            detectedType = EventTypeDetector.getDefault().detect(this.payload);
         }
-        
-        // Check for HTTP request methods
-        if (start.startsWith("GET ") || 
-            start.startsWith("POST ") || 
-            start.startsWith("PUT ") || 
-            start.startsWith("DELETE ") || 
-            start.startsWith("HEAD ") || 
-            start.startsWith("OPTIONS ") || 
-            start.startsWith("PATCH ") ||
-            start.startsWith("CONNECT ") ||
-            start.startsWith("TRACE ")) {
-            return EventType.AUTO_REQUEST;
-        }
-        
-        // Check for HTTP/2 pseudo headers (requests often start with these in text form)
-        if (start.contains(":method") || start.contains(":path") || start.contains(":authority")) {
-            return EventType.AUTO_REQUEST;
-        }
-        if (start.contains(":status")) {
-            return EventType.AUTO_RESPONSE;
-        }
-        
-        return EventType.UNKNOWN;
+        this.eventType = detectedType;
+    }
+    
+    /**
+     * Stop sharing UUID strings with earlier events (the captured traffic was cleared).
+     * Existing events keep theirs.
+     */
+    static void clearUuids() {
+        UUIDS.clear();
+    }
+    
+    public CapturedEvent withPayload(Payload payload) {
+        return withPayload(payload, 0);
+    }
+    
+    /**
+     * Same event metadata with a payload whose body was cut by {@code omittedBytes}.
+     */
+    public CapturedEvent withPayload(Payload payload, int omittedBytes) {
+        return new CapturedEvent(this, payload, null, streamId, omittedBytes);
+    }
+    
+    /**
+     * A message decoded from this event's HTTP/2 connection, stored in HTTP/1-style
+     * text form (see {@link com.ecapture.burp.http2.Http2Message#render()}).
+     */
+    public CapturedEvent withHttp2Message(Payload payload, boolean request, int streamId, int omittedBytes) {
+        return new CapturedEvent(this, payload,
+                request ? EventType.HTTP2_REQUEST : EventType.HTTP2_RESPONSE, streamId, omittedBytes);
     }
     
     public long getTimestamp() {
@@ -142,11 +229,21 @@ public class CapturedEvent {
     }
     
     public String getUuid() {
-        return uuid;
+        return socket.uuid;
+    }
+    
+    /**
+     * Connection part of the UUID (see {@link EventManager#extractConnectionId(String)}).
+     */
+    public String getConnectionId() {
+        return socket.connectionId;
     }
     
     public String getSrcIp() {
-        return srcIp;
+        if ((addressFlags & SRC_ADDRESS_SYMBOL) != 0) {
+            return SYMBOLS.get((int) srcAddrLow);
+        }
+        return PackedAddress.format(srcAddrHigh, srcAddrLow);
     }
     
     public int getSrcPort() {
@@ -154,7 +251,10 @@ public class CapturedEvent {
     }
     
     public String getDstIp() {
-        return dstIp;
+        if ((addressFlags & DST_ADDRESS_SYMBOL) != 0) {
+            return SYMBOLS.get((int) dstAddrLow);
+        }
+        return PackedAddress.format(dstAddrHigh, dstAddrLow);
     }
     
     public int getDstPort() {
@@ -162,11 +262,11 @@ public class CapturedEvent {
     }
     
     public String getSource() {
-        return srcIp + ":" + srcPort;
+        return getSrcIp() + ":" + srcPort;
     }
     
     public String getDestination() {
-        return dstIp + ":" + dstPort;
+        return getDstIp() + ":" + dstPort;
     }
     
     public long getPid() {
@@ -174,18 +274,38 @@ public class CapturedEvent {
     }
     
     public String getProcessName() {
-        return processName;
+        return SYMBOLS.get(processNameId);
     }
     
     public EventType getEventType() {
         return eventType;
     }
     
+    /**
+     * Size of the message as captured, including body bytes that were not kept.
+     */
     public int getLength() {
         return length;
     }
     
-    public byte[] getPayload() {
+    /**
+     * Body bytes dropped by the retention policy; the payload holds the rest of the message.
+     */
+    public int getOmittedBytes() {
+        return omittedBytes;
+    }
+    
+    /**
+     * Whether the body was cut (or dropped) by the retention policy.
+     */
+    public boolean isBodyTruncated() {
+        return omittedBytes > 0;
+    }
+    
+    /**
+     * Payload bytes; may live off the heap (see {@link com.ecapture.burp.store.PayloadStore}).
+     */
+    public Payload getPayload() {
         return payload;
     }
     
@@ -193,6 +313,13 @@ public class CapturedEvent {
         return receivedAt;
     }
     
+    /**
+     * HTTP/2 stream ID of a decoded HTTP/2 message, or 0.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+    
     public boolean isRequest() {
         return eventType.isRequest();
     }
@@ -201,90 +328,74 @@ public class CapturedEvent {
         return eventType.isResponse();
     }
     
+    /**
+     * Parsed HTTP/1.x head of the payload. Parsed once on first use, then cached;
+     * the parse stops at the end of the header block, so large bodies cost nothing.
+     * The cached head keeps no copy of the header bytes, so only its start-line fields,
+     * Host, Content-Length and offsets can be read; use {@link #readHead()} for headers.
+     */
+    public HttpHead getHead() {
+        HttpHead parsed = head;
+        if (parsed == null) {
+            // Racing threads parse the same bytes into equal immutable views
+            parsed = readHead().withoutHeaderBytes();
+            head = parsed;
+        }
+        return parsed;
+    }
+    
+    /**
+     * Parse the head of the payload again, with its header bytes (not cached).
+     */
+    public HttpHead readHead() {
+        return HttpHead.parse(payload.buffer(HttpHead.MAX_HEAD_SIZE));
+    }
+    
     /**
      * Extract HTTP method from request payload
      */
     public String getHttpMethod() {
-        if (!isRequest() || payload == null || payload.length == 0) {
+        if (!isRequest()) {
             return "-";
         }
-        String payloadStr = new String(payload);
-        int spaceIndex = payloadStr.indexOf(' ');
-        if (spaceIndex > 0 && spaceIndex < 10) {
-            return payloadStr.substring(0, spaceIndex);
-        }
-        return "-";
+        String method = getHead().getMethod();
+        return method != null ? method : "-";
     }
     
     /**
      * Extract URL/path from request payload
      */
     public String getUrl() {
-        if (!isRequest() || payload == null || payload.length == 0) {
+        if (!isRequest()) {
             return "-";
         }
-        String payloadStr = new String(payload);
-        int firstSpace = payloadStr.indexOf(' ');
-        if (firstSpace > 0) {
-            int secondSpace = payloadStr.indexOf(' ', firstSpace + 1);
-            if (secondSpace > firstSpace) {
-                return payloadStr.substring(firstSpace + 1, secondSpace);
-            }
-        }
-        return "-";
+        String target = getHead().getTarget();
+        return target != null ? target : "-";
     }
     
     /**
      * Extract status code from response payload
      */
     public String getStatusCode() {
-        if (!isResponse() || payload == null || payload.length == 0) {
+        if (!isResponse()) {
             return "-";
         }
-        String payloadStr = new String(payload);
-        // HTTP/1.1 200 OK or HTTP/2 200
-        int firstSpace = payloadStr.indexOf(' ');
-        if (firstSpace > 0) {
-            int secondSpace = payloadStr.indexOf(' ', firstSpace + 1);
-            int endIndex = secondSpace > firstSpace ? secondSpace : Math.min(payloadStr.length(), firstSpace + 4);
-            if (endIndex > firstSpace + 1) {
-                return payloadStr.substring(firstSpace + 1, endIndex).trim();
-            }
-        }
-        return "-";
+        int statusCode = getHead().getStatusCode();
+        return statusCode >= 0 ? STATUS_CODES[statusCode] : "-";
     }
     
     /**
      * Extract Host header from HTTP request
      */
     public String getHost() {
-        if (payload == null || payload.length == 0) {
-            return dstIp;
-        }
-        String payloadStr = new String(payload);
-        String hostHeader = "Host:";
-        int hostIndex = payloadStr.indexOf(hostHeader);
-        if (hostIndex == -1) {
-            hostHeader = "host:";
-            hostIndex = payloadStr.indexOf(hostHeader);
-        }
-        if (hostIndex >= 0) {
-            int start = hostIndex + hostHeader.length();
-            int end = payloadStr.indexOf('\r', start);
-            if (end == -1) {
-                end = payloadStr.indexOf('\n', start);
-            }
-            if (end > start) {
-                return payloadStr.substring(start, end).trim();
-            }
-        }
-        return dstIp;
+        String host = getHead().getHost();
+        return host != null ? host : getDstIp();
     }
     
     @Override
     public String toString() {
         return String.format("CapturedEvent[uuid=%s, type=%s, %s -> %s, process=%s(%d), len=%d]",
-                uuid, eventType.getDescription(), getSource(), getDestination(), processName, pid, length);
+                getUuid(), eventType.getDescription(), getSource(), getDestination(), getProcessName(), pid, length);
     }
 }
 
@@ -0,0 +1,152 @@
+package com.ecapture.burp.event;
+
+import com.ecapture.burp.http.BodyDecoder;
+import com.ecapture.burp.http.DecodedBody;
+import com.ecapture.burp.store.Payload;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded (de-chunked, decompressed) request and response bodies of pairs, decoded on
+ * demand and kept in an LRU cache bounded by total size.
+ *
+ * Nothing is decoded during ingest. The detail view asks for a pair asynchronously, so
+ * decoding runs on the decoder thread rather than the EDT; body search calls
+ * {@link #get} from its own background thread and shares the cached results.
+ */
+public class DecodedBodyCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final long maxBytes;
+
+    // Key: pair ID plus side; access order for LRU eviction
+    private final LinkedHashMap<String, DecodedBody> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final ExecutorService decoder;
+
+    // Stats
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong limitedBodies = new AtomicLong();
+
+    public DecodedBodyCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public DecodedBodyCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.decoder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-Decoder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Decoded request or response of a pair, decoding it on the calling thread if it is
+     * not cached. Never call on the EDT; use {@link #getAsync} there.
+     *
+     * @return null if the pair has no message on that side
+     */
+    public DecodedBody get(MatchedHttpPair pair, boolean response) {
+        CapturedEvent event = response ? pair.getResponse() : pair.getRequest();
+        if (event == null) {
+            return null;
+        }
+        String key = key(pair, response);
+        synchronized (this) {
+            DecodedBody cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        // Decoded outside the lock; two threads may decode the same body, which is harmless
+        // The head and body are read as stored, without joining them first
+        Payload payload = event.getPayload();
+        int bodyOffset = event.getHead().getBodyOffset();
+        DecodedBody decoded = bodyOffset >= 0 && bodyOffset <= payload.length()
+                ? BodyDecoder.decode(payload.buffer(bodyOffset), payload.bufferFrom(bodyOffset))
+                : BodyDecoder.decode(payload.buffer());
+        if (decoded.getProblem() != null && decoded.getProblem().contains("expansion limit")) {
+            limitedBodies.incrementAndGet();
+        }
+        put(key, decoded);
+        return decoded;
+    }
+
+    /**
+     * Decode on the decoder thread (or complete at once if cached).
+     */
+    public CompletableFuture<DecodedBody> getAsync(MatchedHttpPair pair, boolean response) {
+        synchronized (this) {
+            DecodedBody cached = entries.get(key(pair, response));
+            if (cached != null) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> get(pair, response), decoder);
+    }
+
+    private static String key(MatchedHttpPair pair, boolean response) {
+        return pair.getUuid() + (response ? "#res" : "#req");
+    }
+
+    private synchronized void put(String key, DecodedBody decoded) {
+        if (decoded.size() > maxBytes) {
+            return; // Would evict everything else
+        }
+        DecodedBody previous = entries.put(key, decoded);
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+        bytes += decoded.size();
+
+        Iterator<Map.Entry<String, DecodedBody>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public void shutdown() {
+        decoder.shutdownNow();
+        clear();
+    }
+
+    // Getters for stats
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Bodies whose decompression was stopped by the expansion limit.
+     */
+    public long getLimitedBodies() {
+        return limitedBodies.get();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+}
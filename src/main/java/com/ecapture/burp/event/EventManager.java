@@ -6,12 +6,16 @@ import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
 import burp.api.montoya.http.message.responses.HttpResponse;
 import burp.api.montoya.logging.Logging;
+import com.ecapture.burp.http2.Http2Messages;
+import com.ecapture.burp.log.LogRateLimiter;
+import com.ecapture.burp.log.RuntimeLogEntry;
+import com.ecapture.burp.log.RuntimeLogStore;
+import com.ecapture.burp.store.PayloadStore;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -24,231 +28,235 @@ public class EventManager {
     private final Logging logging;
     
     // Store all matched pairs for display
-    private final List<MatchedHttpPair> matchedPairs;
+    private final PairStore matchedPairs;
     
-    // Pending requests/responses waiting to be matched (by UUID)
-    private final Map<String, MatchedHttpPair> pendingPairs;
+    // Payload bytes of retained events, kept off the heap
+    private final PayloadStore payloadStore;
+    
+    // Orders store appends with their notifications, so table rows follow store indexes
+    private final Object appendLock = new Object();
     
     // Runtime logs from eCapture
-    private final List<String> runtimeLogs;
+    private final RuntimeLogStore runtimeLogs;
+    
+    // Decoded bodies for the detail view and body search, decoded on demand
+    private final DecodedBodyCache decodedBodies;
+    
+    // Limits how many runtime log lines reach the log listeners (Burp Output)
+    private final LogRateLimiter logRateLimiter;
+    
+    // Pairing state, sharded by connection
+    private final PairingLane[] lanes;
+    
+    // Expires requests that never get a response
+    private final HashedTimerWheel expiryWheel;
+    private volatile long matchTimeoutMs;
     
     // Event listeners
     private final List<Consumer<MatchedHttpPair>> pairListeners;
     private final List<Consumer<String>> logListeners;
     
     // Stats
-    private long totalEventsReceived;
-    private long totalPairsMatched;
+    private final AtomicLong totalEventsReceived;
+    private final AtomicLong totalPairsMatched;
+    private final AtomicLong pairSequence;
+    private final AtomicLong expiredRequests;
     private long lastHeartbeatTime;
     private long heartbeatCount;
     
-    // Timeout for matching (5 minutes)
-    private static final long MATCH_TIMEOUT_MS = 5 * 60 * 1000;
+    // Default timeout for matching (5 minutes)
+    public static final long DEFAULT_MATCH_TIMEOUT_MS = 5 * 60 * 1000;
+    
+    // Expiry wheel resolution: 512 buckets of 100 ms (51.2 s per revolution)
+    private static final long EXPIRY_TICK_MS = 100;
+    private static final int EXPIRY_WHEEL_SIZE = 512;
+    
+    // Runtime log lines forwarded to listeners: sustained lines per second, and burst
+    private static final int LOG_FORWARD_RATE = 20;
+    private static final int LOG_FORWARD_BURST = 100;
+    
+    // Default lane count for parallel pairing
+    public static final int DEFAULT_LANES = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
     
     public EventManager(MontoyaApi api) {
+        this(api, DEFAULT_LANES);
+    }
+    
+    public EventManager(MontoyaApi api, int laneCount) {
         this.api = api;
         this.logging = api.logging();
-        this.matchedPairs = new CopyOnWriteArrayList<>();
-        this.pendingPairs = new ConcurrentHashMap<>();
-        this.runtimeLogs = new CopyOnWriteArrayList<>();
+        this.matchedPairs = new PairStore();
+        this.payloadStore = new PayloadStore(api);
+        this.runtimeLogs = new RuntimeLogStore();
+        this.decodedBodies = new DecodedBodyCache();
+        this.logRateLimiter = new LogRateLimiter(LOG_FORWARD_RATE, LOG_FORWARD_BURST);
         this.pairListeners = new CopyOnWriteArrayList<>();
         this.logListeners = new CopyOnWriteArrayList<>();
-        this.totalEventsReceived = 0;
-        this.totalPairsMatched = 0;
+        this.totalEventsReceived = new AtomicLong(0);
+        this.totalPairsMatched = new AtomicLong(0);
+        this.pairSequence = new AtomicLong(0);
+        this.expiredRequests = new AtomicLong(0);
         this.lastHeartbeatTime = 0;
         this.heartbeatCount = 0;
+        
+        this.matchTimeoutMs = DEFAULT_MATCH_TIMEOUT_MS;
+        this.expiryWheel = new HashedTimerWheel("eCapture-Expiry", EXPIRY_TICK_MS, TimeUnit.MILLISECONDS,
+                EXPIRY_WHEEL_SIZE);
+        
+        this.lanes = new PairingLane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new PairingLane(this);
+        }
     }
     
-    // Per-connection queues for request/response pairing
-    // Key: connection UUID prefix (e.g., "sock:12345_67890_processname")
-    // Value: list of pending requests waiting for responses
-    private final Map<String, java.util.LinkedList<MatchedHttpPair>> pendingRequestsByConnection = new ConcurrentHashMap<>();
-    
     /**
      * Extract connection ID from eCapture UUID.
      * UUID format: sock:pid_tid_processname_x_y_ip-ip_z
-     * We extract: sock:pid_tid_processname (the first 4 parts joined by _)
+     * We extract: sock:pid_tid_processname (the first 3 parts joined by _)
      */
-    private String extractConnectionId(String uuid) {
+    static String extractConnectionId(String uuid) {
         if (uuid == null || uuid.isEmpty()) {
             return "unknown";
         }
         
         // Format: sock:27570_27907_httpdns3_0_1_0.0.0.0:0-0.0.0.0:0_0
         // We want: sock:27570_27907_httpdns3 (ignore direction indicator _0_1_ or _0_0_)
-        
-        // Find the prefix before the direction indicators
-        // Pattern: sock:PID_TID_NAME_X_Y_... where X_Y is direction (0_0 or 0_1 etc)
-        String[] parts = uuid.split("_");
-        if (parts.length >= 4) {
-            // Take first 3 parts: sock:PID, TID, NAME
-            StringBuilder connId = new StringBuilder();
-            connId.append(parts[0]); // sock:PID
-            connId.append("_").append(parts[1]); // TID
-            connId.append("_").append(parts[2]); // NAME
-            return connId.toString();
+        int end = connectionIdEnd(uuid);
+        return end == uuid.length() ? uuid : uuid.substring(0, end);
+    }
+    
+    /**
+     * End index of the connection ID prefix (the first 3 "_"-separated parts),
+     * or the whole UUID if it has fewer than 4 parts.
+     */
+    private static int connectionIdEnd(String uuid) {
+        int separators = 0;
+        for (int i = 0; i < uuid.length(); i++) {
+            if (uuid.charAt(i) == '_' && ++separators == 3) {
+                // A 4th part must follow, otherwise fall back to the whole UUID
+                for (int j = i + 1; j < uuid.length(); j++) {
+                    if (uuid.charAt(j) != '_') {
+                        return i;
+                    }
+                }
+                return uuid.length();
+            }
         }
-        
-        // Fallback: use the whole UUID
-        return uuid;
+        return uuid.length();
     }
     
     /**
-     * Process a captured event from eCapture.
-     * Requests and responses are paired by connection (UUID prefix) in order.
+     * Extract the socket ID from eCapture UUID: the whole UUID without its direction part,
+     * so both directions of one socket (fd and address tuple) share it.
+     * sock:27570_27907_httpdns3_5_1_10.0.0.1:443-10.0.0.2:5000_0 gives
+     * sock:27570_27907_httpdns3_5_10.0.0.1:443-10.0.0.2:5000_0
      */
-    public synchronized void processEvent(CapturedEvent event) {
-        totalEventsReceived++;
-        
-        String uuid = event.getUuid();
-        
-        // Extract connection ID from UUID
-        String connectionId = extractConnectionId(uuid);
+    static String extractSocketId(String uuid) {
+        if (uuid == null || uuid.isEmpty()) {
+            return "unknown";
+        }
         
-        // Log event details for debugging
-        if (event.isRequest()) {
-            // Filter: only keep GET and POST requests with valid data
-            String method = event.getHttpMethod();
-            String url = event.getUrl();
-            String host = event.getHost();
-            
-            // Accept GET and POST (case-insensitive)
-            String upperMethod = method.toUpperCase();
-            if (!upperMethod.equals("GET") && !upperMethod.equals("POST")) {
-                return; // Skip non-GET/POST
-            }
-            
-            // Skip requests with invalid/missing data
-            if (url.equals("-") || url.isEmpty()) {
-                return; // Skip requests without URL
+        // The direction is the 5th "_"-separated part
+        int separators = 0;
+        int directionStart = -1;
+        for (int i = 0; i < uuid.length(); i++) {
+            if (uuid.charAt(i) != '_') {
+                continue;
             }
-            if (host.equals("-") || host.isEmpty() || host.equals("0.0.0.0")) {
-                return; // Skip requests without valid host
+            separators++;
+            if (separators == 4) {
+                directionStart = i;
+            } else if (separators == 5) {
+                return uuid.substring(0, directionStart) + uuid.substring(i);
             }
-            
-            // Create a new pair for this request
-            String pairId = connectionId + "_req_" + System.currentTimeMillis();
-            MatchedHttpPair pair = new MatchedHttpPair(pairId);
-            pair.setRequest(event);
-            
-            // Add to pending requests for this connection
-            pendingRequestsByConnection
-                    .computeIfAbsent(connectionId, k -> new java.util.LinkedList<>())
-                    .add(pair);
-            
-            // Add to display list
-            matchedPairs.add(pair);
-            totalPairsMatched++;
+        }
+        return directionStart >= 0 ? uuid.substring(0, directionStart) : uuid;
+    }
+    
+    /**
+     * Lane that owns the pairing state of the event's connection.
+     * Hashes the connection ID in place, without building the substring.
+     */
+    public int laneIndex(String uuid) {
+        if (lanes.length == 1) {
+            return 0;
+        }
+        if (uuid == null || uuid.isEmpty()) {
+            uuid = "unknown";
+        }
+        int end = connectionIdEnd(uuid);
+        int hash = 0;
+        for (int i = 0; i < end; i++) {
+            hash = 31 * hash + uuid.charAt(i);
+        }
+        // Spread high bits so sequential PIDs don't cluster
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, lanes.length);
+    }
+    
+    /**
+     * Process a captured event from eCapture.
+     * The event is handed to the lane owning its connection; events of different
+     * connections can be processed concurrently from different threads.
+     */
+    public void processEvent(CapturedEvent event) {
+        totalEventsReceived.incrementAndGet();
+        lanes[laneIndex(event.getUuid())].process(event);
+    }
+    
+    /**
+     * Unique sequence number for pair IDs.
+     */
+    long nextPairSequence() {
+        return pairSequence.incrementAndGet();
+    }
+    
+    /**
+     * Called by a lane when a new request pair has been created.
+     */
+    void addPair(MatchedHttpPair pair) {
+        synchronized (appendLock) {
+            pair.setIndex(matchedPairs.add(pair));
+            totalPairsMatched.incrementAndGet();
             
             // Notify UI
             notifyPairListeners(pair);
-            
-        } else if (event.isResponse()) {
-            // Filter: only keep valid HTTP responses (must have numeric status code)
-            String statusCode = event.getStatusCode();
-            
-            // Skip responses without valid status codes
-            if (statusCode.equals("-") || statusCode.isEmpty()) {
-                return;
-            }
-            
-            // Check if status code looks valid (should be numeric, like "200", "404")
-            try {
-                int code = Integer.parseInt(statusCode.trim());
-                if (code < 100 || code > 599) {
-                    return; // Invalid HTTP status code range
-                }
-            } catch (NumberFormatException e) {
-                return; // Not a numeric status code
-            }
-            
-            // Try to find a pending request to pair with
-            java.util.LinkedList<MatchedHttpPair> pendingRequests = pendingRequestsByConnection.get(connectionId);
-            
-            if (pendingRequests != null && !pendingRequests.isEmpty()) {
-                // Find first request without a response
-                MatchedHttpPair pair = null;
-                for (MatchedHttpPair p : pendingRequests) {
-                    if (!p.hasResponse()) {
-                        pair = p;
-                        break;
-                    }
-                }
-                
-                if (pair != null) {
-                    // Pair this response with the request
-                    pair.setResponse(event);
-                    
-                    // Response paired successfully
-                    
-                    // Notify UI to update
-                    notifyPairListeners(pair);
-                    
-                    // Try to send complete pair to Site Map
-                    sendToSiteMapSafe(pair);
-                } else {
-                    // All requests already have responses, create standalone response
-                    createStandaloneResponse(connectionId, event);
-                }
-            } else {
-                // No pending requests for this connection, create standalone response
-                createStandaloneResponse(connectionId, event);
-            }
         }
-        // Unknown types are silently ignored (binary/unparseable data)
-        
-        // Cleanup old connections periodically
-        cleanupOldConnections();
     }
     
     /**
-     * Create a standalone response entry (no matching request).
-     * Note: We skip standalone responses since they're not useful without requests.
+     * Schedule expiry of an unanswered request after the match timeout.
      */
-    private void createStandaloneResponse(String connectionId, CapturedEvent event) {
-        // Skip standalone responses - they're not useful without matching requests
+    HashedTimerWheel.Timeout scheduleExpiry(Runnable task) {
+        return expiryWheel.schedule(task, matchTimeoutMs, TimeUnit.MILLISECONDS);
     }
     
     /**
-     * Cleanup old connection queues to prevent memory leaks.
+     * Called by a lane (on the expiry thread) when a request timed out without a response.
      */
-    private void cleanupOldConnections() {
-        // Remove connections with all completed pairs (older than 5 minutes)
-        long now = System.currentTimeMillis();
-        pendingRequestsByConnection.entrySet().removeIf(entry -> {
-            java.util.LinkedList<MatchedHttpPair> pairs = entry.getValue();
-            if (pairs.isEmpty()) return true;
-            // Remove if oldest pair is older than 5 minutes and all are complete
-            MatchedHttpPair oldest = pairs.peekFirst();
-            return oldest != null && 
-                   (now - oldest.getCreatedAt() > 5 * 60 * 1000) && 
-                   pairs.stream().allMatch(MatchedHttpPair::isComplete);
-        });
+    void onRequestExpired(MatchedHttpPair pair) {
+        expiredRequests.incrementAndGet();
+        
+        // Notify UI to show it as an orphan
+        notifyPairListeners(pair);
     }
     
     /**
-     * Handle a completed request-response pair.
+     * Called by a lane when a response has been paired with its request.
      */
-    private void completePair(MatchedHttpPair pair) {
-        totalPairsMatched++;
+    void onResponsePaired(MatchedHttpPair pair) {
+        // Notify UI to update
+        notifyPairListeners(pair);
         
-        // Move from pending to completed
-        pendingPairs.remove(pair.getUuid());
-        matchedPairs.add(pair);
-        
-        // Send to Burp Site Map
+        // Try to send complete pair to Site Map
         sendToSiteMapSafe(pair);
-        
-        pair.setSentToProxy(true);
-        
-        // Pair matched
     }
     
     /**
      * Safely send matched pair to Burp Site Map (Target tab).
      * Note: Montoya API doesn't support adding to Proxy History directly.
      */
-    private void sendToSiteMapSafe(MatchedHttpPair pair) {
+    void sendToSiteMapSafe(MatchedHttpPair pair) {
         try {
             CapturedEvent request = pair.getRequest();
             CapturedEvent response = pair.getResponse();
@@ -276,12 +284,12 @@ public class EventManager {
             HttpService httpService = HttpService.httpService(host, port, useHttps);
             
             // Parse and create HTTP request
-            HttpRequest httpRequest = HttpRequest.httpRequest(httpService, new String(request.getPayload()));
+            HttpRequest httpRequest = Http2Messages.toHttpRequest(httpService, request);
             
             // Create response if available
             HttpResponse httpResponse = null;
             if (response != null && response.getPayload() != null) {
-                httpResponse = HttpResponse.httpResponse(new String(response.getPayload()));
+                httpResponse = Http2Messages.toHttpResponse(response);
             }
             
             // Add to site map (only if we have both request and response)
@@ -308,41 +316,27 @@ public class EventManager {
     
     /**
      * Process runtime log from eCapture.
+     * Every line is kept in the runtime log store; repeated lines are collapsed there,
+     * and listeners only get new entries within the forwarding rate limit.
      */
     public void processRuntimeLog(String logMessage) {
-        runtimeLogs.add(logMessage);
-        
-        // Keep only last 1000 logs
-        while (runtimeLogs.size() > 1000) {
-            runtimeLogs.remove(0);
+        RuntimeLogEntry entry = runtimeLogs.append(logMessage, System.currentTimeMillis());
+        if (entry == null) {
+            return; // Repeat of the previous line
         }
         
-        // Notify listeners
-        notifyLogListeners(logMessage);
-    }
-    
-    /**
-     * Clean up old pending pairs that haven't been matched.
-     */
-    private void cleanupOldPairs() {
-        long now = System.currentTimeMillis();
-        List<String> toRemove = new ArrayList<>();
-        
-        for (Map.Entry<String, MatchedHttpPair> entry : pendingPairs.entrySet()) {
-            MatchedHttpPair pair = entry.getValue();
-            if (now - pair.getCreatedAt() > MATCH_TIMEOUT_MS) {
-                toRemove.add(entry.getKey());
-                
-                // Add incomplete pair to display list anyway
-                if (!matchedPairs.contains(pair)) {
-                    matchedPairs.add(pair);
-                }
-            }
+        if (!logRateLimiter.tryAcquire()) {
+            return;
         }
         
-        for (String uuid : toRemove) {
-            pendingPairs.remove(uuid);
+        // Report what was held back since the last forwarded line
+        long suppressed = logRateLimiter.takeSuppressed();
+        if (suppressed > 0) {
+            notifyLogListeners("(" + suppressed + " log lines suppressed, see the Runtime Log tab)");
         }
+        
+        // Notify listeners
+        notifyLogListeners(entry.toString());
     }
     
     /**
@@ -381,17 +375,43 @@ public class EventManager {
     }
     
     /**
-     * Get all matched pairs (for display).
+     * Get a stable snapshot of all matched pairs (for display, search and export).
+     * Nothing is copied; pairs added later are not part of the snapshot.
      */
     public List<MatchedHttpPair> getMatchedPairs() {
-        return new ArrayList<>(matchedPairs);
+        return matchedPairs.snapshot();
     }
     
     /**
-     * Get runtime logs.
+     * Get the pair at a display index, or null if there is none.
      */
-    public List<String> getRuntimeLogs() {
-        return new ArrayList<>(runtimeLogs);
+    public MatchedHttpPair getPair(int index) {
+        return matchedPairs.getOrNull(index);
+    }
+    
+    public int getPairCount() {
+        return matchedPairs.size();
+    }
+    
+    /**
+     * Store that new event payloads are copied into.
+     */
+    public PayloadStore getPayloadStore() {
+        return payloadStore;
+    }
+    
+    /**
+     * Get the runtime log store (for the log viewer).
+     */
+    public RuntimeLogStore getRuntimeLogs() {
+        return runtimeLogs;
+    }
+    
+    /**
+     * Get the decoded body cache (for the detail view and body search).
+     */
+    public DecodedBodyCache getDecodedBodies() {
+        return decodedBodies;
     }
     
     /**
@@ -399,19 +419,35 @@ public class EventManager {
      */
     public void clear() {
         matchedPairs.clear();
-        pendingPairs.clear();
+        payloadStore.clear();
         runtimeLogs.clear();
-        totalEventsReceived = 0;
-        totalPairsMatched = 0;
+        decodedBodies.clear();
+        CapturedEvent.clearUuids();
+        logRateLimiter.reset();
+        for (PairingLane lane : lanes) {
+            lane.clear();
+        }
+        totalEventsReceived.set(0);
+        totalPairsMatched.set(0);
+        expiredRequests.set(0);
+    }
+    
+    /**
+     * Stop background threads (extension unload).
+     */
+    public void shutdown() {
+        expiryWheel.stop();
+        decodedBodies.shutdown();
+        payloadStore.close();
     }
     
     // Getters for stats
     public long getTotalEventsReceived() {
-        return totalEventsReceived;
+        return totalEventsReceived.get();
     }
     
     public long getTotalPairsMatched() {
-        return totalPairsMatched;
+        return totalPairsMatched.get();
     }
     
     public long getLastHeartbeatTime() {
@@ -422,8 +458,48 @@ public class EventManager {
         return heartbeatCount;
     }
     
+    /**
+     * Requests still waiting for a response, across all lanes.
+     */
     public int getPendingPairsCount() {
-        return pendingPairs.size();
+        int count = 0;
+        for (PairingLane lane : lanes) {
+            count += lane.getUnansweredCount();
+        }
+        return count;
+    }
+    
+    /**
+     * Requests that expired without a response since the last clear.
+     */
+    public long getExpiredCount() {
+        return expiredRequests.get();
+    }
+    
+    public long getMatchTimeoutMs() {
+        return matchTimeoutMs;
+    }
+    
+    /**
+     * Set how long a request waits for its response. Applies to new requests.
+     */
+    public void setMatchTimeoutMs(long matchTimeoutMs) {
+        this.matchTimeoutMs = matchTimeoutMs;
+    }
+    
+    public int getLaneCount() {
+        return lanes.length;
+    }
+    
+    /**
+     * Events processed by each lane since start (for throughput display).
+     */
+    public long[] getLaneEventCounts() {
+        long[] counts = new long[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            counts[i] = lanes[i].getEventsProcessed();
+        }
+        return counts;
     }
 }
 
@@ -0,0 +1,159 @@
+package com.ecapture.burp.event;
+
+import com.ecapture.burp.http.HttpMethodTrie;
+import com.ecapture.burp.store.Payload;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Detects whether an event eCapture reports as type 0 (unknown) is a request or a response,
+ * by looking at the first payload bytes. Detectors work on the raw bytes of a short prefix.
+ *
+ * Detection runs a chain of {@link Detector}s; the first one with an answer wins.
+ * Support for more protocols is added with {@link #register(Detector)}.
+ */
+public final class EventTypeDetector {
+
+    /**
+     * One protocol-specific check.
+     */
+    public interface Detector {
+        /**
+         * @param prefix the first {@code length} bytes of the payload (at most {@link #PREFIX_LENGTH}),
+         *               in a buffer reused after the call
+         * @return the detected type, or null if this detector does not recognize the payload
+         */
+        CapturedEvent.EventType detect(byte[] prefix, int length);
+    }
+
+    // How much of the payload detectors get to see
+    public static final int PREFIX_LENGTH = 64;
+
+    // Shortest payload worth looking at
+    private static final int MIN_LENGTH = 4;
+
+    // Text-form HTTP/2 pseudo headers are only looked for this far into the payload
+    private static final int PSEUDO_HEADER_WINDOW = 20;
+
+    private static final byte[] HTTP_VERSION_PREFIX = ascii("HTTP/");
+
+    // Client connection preface (RFC 9113, section 3.4)
+    private static final byte[] HTTP2_PREFACE_BYTES = ascii("PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n");
+
+    private static final byte[][] REQUEST_PSEUDO_HEADERS = {
+            ascii(":method"), ascii(":path"), ascii(":authority")
+    };
+    private static final byte[][] RESPONSE_PSEUDO_HEADERS = {
+            ascii(":status")
+    };
+
+    /**
+     * HTTP/1.x status line.
+     */
+    public static final Detector HTTP1_RESPONSE = (prefix, length) ->
+            startsWith(prefix, length, HTTP_VERSION_PREFIX) ? CapturedEvent.EventType.AUTO_RESPONSE : null;
+
+    /**
+     * HTTP/1.x request line with any known method (see {@link HttpMethodTrie#KNOWN_METHODS}).
+     * WebSocket upgrades are plain GET requests and are covered here.
+     */
+    public static final Detector HTTP1_REQUEST = (prefix, length) ->
+            HttpMethodTrie.getDefault().match(prefix, 0, length) >= 0 ? CapturedEvent.EventType.AUTO_REQUEST : null;
+
+    /**
+     * HTTP/2 client connection preface, which opens the client's side of the connection.
+     * gRPC runs over HTTP/2, so its connections are recognized by the same preface.
+     */
+    public static final Detector HTTP2_PREFACE = (prefix, length) ->
+            startsWith(prefix, length, HTTP2_PREFACE_BYTES) ? CapturedEvent.EventType.AUTO_REQUEST : null;
+
+    /**
+     * HTTP/2 pseudo headers in text form near the start of the payload.
+     */
+    public static final Detector HTTP2_PSEUDO_HEADERS = (prefix, length) -> {
+        int window = Math.min(length, PSEUDO_HEADER_WINDOW);
+        for (byte[] header : REQUEST_PSEUDO_HEADERS) {
+            if (contains(prefix, window, header)) {
+                return CapturedEvent.EventType.AUTO_REQUEST;
+            }
+        }
+        for (byte[] header : RESPONSE_PSEUDO_HEADERS) {
+            if (contains(prefix, window, header)) {
+                return CapturedEvent.EventType.AUTO_RESPONSE;
+            }
+        }
+        return null;
+    };
+
+    private static final EventTypeDetector DEFAULT = new EventTypeDetector();
+
+    // Events are detected on the ingest threads; each reuses its own prefix buffer
+    private static final ThreadLocal<byte[]> PREFIX = ThreadLocal.withInitial(() -> new byte[PREFIX_LENGTH]);
+
+    private final List<Detector> detectors = new CopyOnWriteArrayList<>(List.of(
+            HTTP1_RESPONSE, HTTP1_REQUEST, HTTP2_PREFACE, HTTP2_PSEUDO_HEADERS));
+
+    /**
+     * Detector used for all captured events.
+     */
+    public static EventTypeDetector getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Add a detector, tried after the built-in ones.
+     */
+    public void register(Detector detector) {
+        detectors.add(detector);
+    }
+
+    /**
+     * Auto-detect if payload is HTTP request or response based on content.
+     * Only the first {@link #PREFIX_LENGTH} bytes are read.
+     */
+    public CapturedEvent.EventType detect(Payload payload) {
+        if (payload == null || payload.length() < MIN_LENGTH) {
+            return CapturedEvent.EventType.UNKNOWN;
+        }
+        byte[] prefix = PREFIX.get();
+        int length = payload.prefix(prefix);
+        for (Detector detector : detectors) {
+            CapturedEvent.EventType type = detector.detect(prefix, length);
+            if (type != null) {
+                return type;
+            }
+        }
+        return CapturedEvent.EventType.UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(byte[] data, int length, byte[] needle) {
+        outer:
+        for (int start = 0, last = length - needle.length; start <= last; start++) {
+            for (int i = 0; i < needle.length; i++) {
+                if (data[start + i] != needle[i]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
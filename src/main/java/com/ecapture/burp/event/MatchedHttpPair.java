@@ -11,6 +11,15 @@ public class MatchedHttpPair {
     private final long createdAt;
     private boolean sentToProxy;
     
+    // Set when the request timed out without a response
+    private volatile boolean orphaned;
+    
+    // Position in the pair store (the table row), set when the pair is stored
+    private volatile int index = -1;
+    
+    // Expiry timer while the request is waiting for its response
+    private HashedTimerWheel.Timeout expiryTimeout;
+    
     public MatchedHttpPair(String uuid) {
         this.uuid = uuid;
         this.createdAt = System.currentTimeMillis();
@@ -49,6 +58,40 @@ public class MatchedHttpPair {
         return hasRequest() && hasResponse();
     }
     
+    /**
+     * Whether the request or response body was cut by the retention policy.
+     */
+    public boolean isBodyTruncated() {
+        return (request != null && request.isBodyTruncated()) || (response != null && response.isBodyTruncated());
+    }
+    
+    /**
+     * Index of the pair in the pair store, which is also its table row; -1 until stored.
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public boolean isOrphaned() {
+        return orphaned;
+    }
+    
+    public void setOrphaned(boolean orphaned) {
+        this.orphaned = orphaned;
+    }
+    
+    HashedTimerWheel.Timeout getExpiryTimeout() {
+        return expiryTimeout;
+    }
+    
+    void setExpiryTimeout(HashedTimerWheel.Timeout expiryTimeout) {
+        this.expiryTimeout = expiryTimeout;
+    }
+    
     public long getCreatedAt() {
         return createdAt;
     }
@@ -74,9 +117,21 @@ public class MatchedHttpPair {
         } catch (Exception e) {
             // Timestamp conversion failed
         }
-        // Fallback to current time
-        return java.time.LocalDateTime.now().format(
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        // Fallback to when the pair was created (stable, as table cells are computed on every paint)
+        return java.time.Instant.ofEpochMilli(createdAt).atZone(java.time.ZoneId.systemDefault())
+                .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+    
+    /**
+     * Time of the pair in epoch milliseconds, from the same source as {@link #getTimestamp()} (for sorting)
+     */
+    public long getTimestampMillis() {
+        if (request != null && request.getTimestamp() > 0) {
+            return request.getTimestamp() * 1000;
+        } else if (response != null && response.getTimestamp() > 0) {
+            return response.getTimestamp() * 1000;
+        }
+        return createdAt;
     }
     
     /**
@@ -112,6 +167,13 @@ public class MatchedHttpPair {
         return response != null ? response.getStatusCode() : "-";
     }
     
+    /**
+     * Numeric status code from response, or -1 if there is none (for sorting)
+     */
+    public int getStatus() {
+        return response != null ? response.getHead().getStatusCode() : -1;
+    }
+    
     /**
      * Get request length
      */
@@ -160,8 +222,8 @@ public class MatchedHttpPair {
     
     @Override
     public String toString() {
-        return String.format("MatchedHttpPair[uuid=%s, method=%s, url=%s, status=%s, complete=%s]",
-                uuid, getMethod(), getUrl(), getStatusCode(), isComplete());
+        return String.format("MatchedHttpPair[uuid=%s, method=%s, url=%s, status=%s, complete=%s, orphaned=%s]",
+                uuid, getMethod(), getUrl(), getStatusCode(), isComplete(), orphaned);
     }
 }
 
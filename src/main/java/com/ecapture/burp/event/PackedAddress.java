@@ -0,0 +1,203 @@
+package com.ecapture.burp.event;
+
+/**
+ * Packs IP address literals into two longs (the 128 bits of an IPv6 address;
+ * IPv4 addresses are stored IPv4-mapped, ::ffff:a.b.c.d) and formats them back.
+ *
+ * Parsing is done by hand, so a literal is never sent to a resolver.
+ */
+final class PackedAddress {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    private PackedAddress() {
+    }
+
+    /**
+     * Parse an IPv4 or IPv6 literal.
+     *
+     * @param out receives the high and low 64 bits
+     * @return false if the text is not an IP literal
+     */
+    static boolean parse(String text, long[] out) {
+        if (text == null || text.isEmpty()) {
+            return false;
+        }
+        if (text.indexOf(':') < 0) {
+            long ipv4 = parseIpv4(text, 0, text.length());
+            if (ipv4 < 0) {
+                return false;
+            }
+            out[0] = 0;
+            out[1] = IPV4_MAPPED_PREFIX | ipv4;
+            return true;
+        }
+        return parseIpv6(text, out);
+    }
+
+    static boolean isIpv4(long high, long low) {
+        return high == 0 && (low & 0xFFFF_FFFF_0000_0000L) == IPV4_MAPPED_PREFIX;
+    }
+
+    /**
+     * Format packed bits back into the usual text form (dotted quad for IPv4,
+     * RFC 5952 compressed form for IPv6).
+     */
+    static String format(long high, long low) {
+        if (isIpv4(high, low)) {
+            return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "."
+                    + ((low >>> 8) & 0xFF) + "." + (low & 0xFF);
+        }
+
+        int[] groups = new int[8];
+        for (int i = 0; i < 4; i++) {
+            groups[i] = (int) (high >>> (48 - 16 * i)) & 0xFFFF;
+            groups[i + 4] = (int) (low >>> (48 - 16 * i)) & 0xFFFF;
+        }
+
+        // Longest run of at least two zero groups is written as "::"
+        int bestStart = -1;
+        int bestLength = 1;
+        for (int i = 0; i < 8; ) {
+            if (groups[i] != 0) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < 8 && groups[i] == 0) {
+                i++;
+            }
+            if (i - start > bestLength) {
+                bestStart = start;
+                bestLength = i - start;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == bestStart) {
+                sb.append("::");
+                i += bestLength - 1;
+                continue;
+            }
+            if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':') {
+                sb.append(':');
+            }
+            sb.append(Integer.toHexString(groups[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the address as an unsigned 32-bit value, or -1 if invalid
+     */
+    private static long parseIpv4(String text, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (value < 0 || octets != 3) {
+            return -1;
+        }
+        return (address << 8) | value;
+    }
+
+    private static boolean parseIpv6(String text, long[] out) {
+        int length = text.length();
+        // Zone IDs (fe80::1%eth0) are not kept
+        int zone = text.indexOf('%');
+        if (zone >= 0) {
+            length = zone;
+        }
+
+        int[] groups = new int[8];
+        int count = 0;
+        int compressAt = -1;
+        int i = 0;
+
+        if (length >= 2 && text.charAt(0) == ':' && text.charAt(1) == ':') {
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < length) {
+            if (count == 8) {
+                return false;
+            }
+            int groupStart = i;
+            int value = 0;
+            while (i < length && Character.digit(text.charAt(i), 16) >= 0 && i - groupStart < 4) {
+                value = (value << 4) | Character.digit(text.charAt(i), 16);
+                i++;
+            }
+            if (i < length && text.charAt(i) == '.') {
+                // Embedded IPv4 tail (::ffff:1.2.3.4)
+                long ipv4 = parseIpv4(text, groupStart, length);
+                if (ipv4 < 0 || count > 6) {
+                    return false;
+                }
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xFFFF);
+                i = length;
+                break;
+            }
+            if (i == groupStart) {
+                return false;
+            }
+            groups[count++] = value;
+
+            if (i == length) {
+                break;
+            }
+            if (text.charAt(i) != ':') {
+                return false;
+            }
+            i++;
+            if (i < length && text.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return false;
+                }
+                compressAt = count;
+                i++;
+            } else if (i == length) {
+                return false;
+            }
+        }
+
+        if (compressAt >= 0) {
+            if (count == 8) {
+                return false;
+            }
+            int shift = 8 - count;
+            for (int g = count - 1; g >= compressAt; g--) {
+                groups[g + shift] = groups[g];
+                groups[g] = 0;
+            }
+        } else if (count != 8) {
+            return false;
+        }
+
+        long high = 0;
+        long low = 0;
+        for (int g = 0; g < 4; g++) {
+            high = (high << 16) | groups[g];
+            low = (low << 16) | groups[g + 4];
+        }
+        out[0] = high;
+        out[1] = low;
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.ecapture.burp.event;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Append-only store of matched pairs, made of fixed-size chunks.
+ *
+ * Appends are O(1) amortized: only the small chunk directory is ever copied when it
+ * grows, never the pairs. Reads are lock-free and copy nothing: a reader sees every
+ * index below the published size. {@link #snapshot()} captures the current size and
+ * gives a stable, indexable view that is unaffected by later appends or by {@link #clear()}.
+ */
+public final class PairStore {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CHUNKS = 16;
+
+    /**
+     * Contents since the last clear. Replaced as a whole on clear,
+     * so snapshots of the previous generation stay valid.
+     */
+    private static final class Generation {
+        // Chunks are written once per slot; the directory is replaced (copied) when it grows
+        volatile MatchedHttpPair[][] chunks = new MatchedHttpPair[INITIAL_CHUNKS][];
+
+        // Published size: every index below it is fully written
+        volatile int size;
+    }
+
+    private volatile Generation generation = new Generation();
+
+    /**
+     * Append a pair. Appends are serialized; reads never block.
+     *
+     * @return the index of the pair
+     */
+    public synchronized int add(MatchedHttpPair pair) {
+        Generation gen = generation;
+        int index = gen.size;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+
+        MatchedHttpPair[][] chunks = gen.chunks;
+        if (chunkIndex >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunkIndex] == null) {
+            chunks[chunkIndex] = new MatchedHttpPair[CHUNK_SIZE];
+        }
+        chunks[chunkIndex][index & CHUNK_MASK] = pair;
+
+        // Publish the directory before the size, so readers of the size see the chunk
+        gen.chunks = chunks;
+        gen.size = index + 1;
+        return index;
+    }
+
+    /**
+     * Pair at the given index, without copying.
+     *
+     * @throws IndexOutOfBoundsException if the index is not below {@link #size()}
+     */
+    public MatchedHttpPair get(int index) {
+        return get(generation, index);
+    }
+
+    /**
+     * Pair at the given index, or null if the index is not below {@link #size()}
+     * (e.g. a table row that was cleared meanwhile).
+     */
+    public MatchedHttpPair getOrNull(int index) {
+        Generation gen = generation;
+        if (index < 0 || index >= gen.size) {
+            return null;
+        }
+        return gen.chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private static MatchedHttpPair get(Generation gen, int index) {
+        int size = gen.size;
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return gen.chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    public int size() {
+        return generation.size;
+    }
+
+    /**
+     * Stable view of the pairs stored right now. Later appends and clears are not visible.
+     */
+    public Snapshot snapshot() {
+        Generation gen = generation;
+        return new Snapshot(gen, gen.size);
+    }
+
+    /**
+     * Drop all pairs. Existing snapshots keep their contents.
+     */
+    public synchronized void clear() {
+        generation = new Generation();
+    }
+
+    /**
+     * Read-only list view of a fixed prefix of the store.
+     */
+    public static final class Snapshot extends AbstractList<MatchedHttpPair> implements RandomAccess {
+        private final Generation generation;
+        private final int size;
+
+        private Snapshot(Generation generation, int size) {
+            this.generation = generation;
+            this.size = size;
+        }
+
+        @Override
+        public MatchedHttpPair get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return PairStore.get(generation, index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.ecapture.burp.event;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One shard of the request/response pairing state.
+ * Connections are hashed onto lanes by {@link EventManager#laneIndex(String)}, so every
+ * event of a connection is handled by the same lane, in order. Lanes share no pairing
+ * state, so different lanes pair in parallel; the lane monitor is uncontended when each
+ * lane is fed by its own ingest consumer.
+ *
+ * Every event that does not end up in a pair gives its payload back to the store.
+ */
+class PairingLane {
+
+    private final EventManager eventManager;
+
+    // ID of placeholders for requests that are not displayed (e.g. not GET/POST). A placeholder
+    // still takes its place in the connection's FIFO so its response doesn't pair with a later
+    // request; it has no request event, so it is never shown.
+    private static final String IGNORED_REQUEST_ID = "ignored";
+
+    // Per-connection FIFO of requests still waiting for a response
+    // Key: connection UUID prefix (e.g., "sock:12345_67890_processname")
+    // Value: unanswered requests in send order (HTTP/1.1 answers in order, even when pipelined)
+    // A connection's deque is removed as soon as its last request is answered.
+    private final Map<String, ArrayDeque<MatchedHttpPair>> unansweredByConnection = new HashMap<>();
+
+    // HTTP/2 requests waiting for a response, by stream (see streamKey). Streams of a
+    // socket are answered in any order, so they pair by stream ID instead of a FIFO.
+    private final Map<String, MatchedHttpPair> unansweredByStream = new HashMap<>();
+
+    // HTTP/2 responses that were decoded before their request (a server may answer
+    // before the request body ends), held as a pair with only the response until it comes
+    private final Map<String, MatchedHttpPair> earlyResponsesByStream = new HashMap<>();
+
+    // Stats
+    private final AtomicLong eventsProcessed = new AtomicLong();
+    private volatile int unansweredCount;
+
+    PairingLane(EventManager eventManager) {
+        this.eventManager = eventManager;
+    }
+
+    /**
+     * Process a captured event for a connection owned by this lane.
+     * Requests and responses are paired by connection (UUID prefix) in order.
+     */
+    synchronized void process(CapturedEvent event) {
+        eventsProcessed.incrementAndGet();
+
+        // Connection ID (UUID prefix), shared by all events of the socket
+        String connectionId = event.getConnectionId();
+
+        if (event.getStreamId() > 0) {
+            processStream(event, streamKey(event, event.getStreamId()));
+            return;
+        }
+
+        if (event.isRequest()) {
+            if (!isDisplayedRequest(event)) {
+                // Still expect a response for it on this connection
+                enqueueUnanswered(connectionId, new MatchedHttpPair(IGNORED_REQUEST_ID));
+                discard(event);
+                return;
+            }
+
+            // Create a new pair for this request (pipelined requests can share a millisecond,
+            // so the ID carries a sequence number rather than the time)
+            String pairId = connectionId + "_req_" + eventManager.nextPairSequence();
+            MatchedHttpPair pair = new MatchedHttpPair(pairId);
+            pair.setRequest(event);
+
+            // Wait for the response on this connection
+            enqueueUnanswered(connectionId, pair);
+
+            // Add to display list and notify UI
+            eventManager.addPair(pair);
+
+        } else if (event.isResponse()) {
+            // Filter: only keep valid HTTP responses (must have a numeric status code)
+            int code = event.getHead().getStatusCode();
+            if (code < 100 || code > 599) {
+                discard(event);
+                return; // Missing or invalid HTTP status code
+            }
+
+            // Interim responses (100 Continue, 103 Early Hints) precede the final
+            // response to the same request, so they must not consume it
+            if (code < 200 && code != 101) {
+                discard(event);
+                return;
+            }
+
+            // The oldest unanswered request on this connection owns this response
+            MatchedHttpPair pair = pollUnanswered(connectionId);
+
+            if (pair == null) {
+                // No pending requests for this connection, create standalone response
+                createStandaloneResponse(connectionId, event);
+            } else if (pair.hasRequest()) {
+                // Pair this response with the request, update UI and Site Map
+                pair.setResponse(event);
+                eventManager.onResponsePaired(pair);
+            } else {
+                discard(event); // Response to a request that is not displayed
+            }
+        } else {
+            // Unknown types are silently ignored (binary/unparseable data)
+            discard(event);
+        }
+    }
+
+    /**
+     * Give back the payload of an event that is not kept.
+     */
+    private void discard(CapturedEvent event) {
+        eventManager.getPayloadStore().release(event.getPayload());
+    }
+
+    /**
+     * Key of an HTTP/2 stream. Stream IDs are only unique per socket, and a thread can
+     * have several sockets open, so the key is the socket (the UUID without its direction)
+     * rather than the connection ID.
+     */
+    private static String streamKey(CapturedEvent event, int streamId) {
+        return EventManager.extractSocketId(event.getUuid()) + "#" + streamId;
+    }
+
+    /**
+     * Pair a decoded HTTP/2 message with the other message of its stream.
+     */
+    private void processStream(CapturedEvent event, String streamKey) {
+        if (event.isRequest()) {
+            if (!isDisplayedRequest(event)) {
+                discard(event);
+                return;
+            }
+            MatchedHttpPair pair = new MatchedHttpPair(streamKey + "_req_" + eventManager.nextPairSequence());
+            pair.setRequest(event);
+            eventManager.addPair(pair);
+
+            MatchedHttpPair early = earlyResponsesByStream.remove(streamKey);
+            if (early != null) {
+                early.getExpiryTimeout().cancel();
+                pair.setResponse(early.getResponse());
+                eventManager.onResponsePaired(pair);
+                return;
+            }
+            unansweredByStream.put(streamKey, pair);
+            unansweredCount++;
+            pair.setExpiryTimeout(eventManager.scheduleExpiry(() -> expireStream(streamKey, pair)));
+
+        } else if (event.isResponse()) {
+            int code = event.getHead().getStatusCode();
+            if (code < 200 || code > 599) {
+                discard(event);
+                return; // Invalid, or interim (the frame reader already skips those)
+            }
+
+            MatchedHttpPair pair = unansweredByStream.remove(streamKey);
+            if (pair != null) {
+                unansweredCount--;
+                pair.getExpiryTimeout().cancel();
+                pair.setResponse(event);
+                eventManager.onResponsePaired(pair);
+                return;
+            }
+
+            MatchedHttpPair early = new MatchedHttpPair(streamKey);
+            early.setResponse(event);
+            MatchedHttpPair previous = earlyResponsesByStream.put(streamKey, early);
+            if (previous != null) {
+                previous.getExpiryTimeout().cancel();
+                discard(previous.getResponse());
+            }
+            early.setExpiryTimeout(eventManager.scheduleExpiry(() -> expireStream(streamKey, early)));
+        }
+    }
+
+    /**
+     * Called on the expiry wheel thread when an HTTP/2 request or early response has
+     * waited too long for the other half of its stream.
+     */
+    private synchronized void expireStream(String streamKey, MatchedHttpPair pair) {
+        if (earlyResponsesByStream.remove(streamKey, pair)) {
+            // Response to a request that is not displayed, or was never captured
+            discard(pair.getResponse());
+            return;
+        }
+        if (!unansweredByStream.remove(streamKey, pair)) {
+            return; // Answered or cleared meanwhile
+        }
+        unansweredCount--;
+        pair.setOrphaned(true);
+        eventManager.onRequestExpired(pair);
+    }
+
+    /**
+     * Filter: only keep GET and POST requests with valid data.
+     */
+    private static boolean isDisplayedRequest(CapturedEvent event) {
+        String method = event.getHttpMethod();
+        String url = event.getUrl();
+        String host = event.getHost();
+
+        // Accept GET and POST (case-insensitive)
+        if (!method.equalsIgnoreCase("GET") && !method.equalsIgnoreCase("POST")) {
+            return false; // Skip non-GET/POST
+        }
+
+        // Skip requests with invalid/missing data
+        if (url.equals("-") || url.isEmpty()) {
+            return false; // Skip requests without URL
+        }
+        if (host.equals("-") || host.isEmpty() || host.equals("0.0.0.0")) {
+            return false; // Skip requests without valid host
+        }
+        return true;
+    }
+
+    private void enqueueUnanswered(String connectionId, MatchedHttpPair pair) {
+        unansweredByConnection
+                .computeIfAbsent(connectionId, k -> new ArrayDeque<>(4))
+                .addLast(pair);
+        unansweredCount++;
+
+        // Give up on the response after the match timeout
+        pair.setExpiryTimeout(eventManager.scheduleExpiry(() -> expire(connectionId, pair)));
+    }
+
+    /**
+     * Remove and return the oldest unanswered request of a connection, or null.
+     */
+    private MatchedHttpPair pollUnanswered(String connectionId) {
+        ArrayDeque<MatchedHttpPair> unanswered = unansweredByConnection.get(connectionId);
+        if (unanswered == null) {
+            return null;
+        }
+        MatchedHttpPair pair = unanswered.pollFirst();
+        if (unanswered.isEmpty()) {
+            unansweredByConnection.remove(connectionId);
+        }
+        if (pair != null) {
+            unansweredCount--;
+            pair.getExpiryTimeout().cancel();
+        }
+        return pair;
+    }
+
+    /**
+     * Called on the expiry wheel thread when a request has waited too long.
+     * Drops it from the connection's FIFO and marks it as an orphan.
+     */
+    private synchronized void expire(String connectionId, MatchedHttpPair pair) {
+        ArrayDeque<MatchedHttpPair> unanswered = unansweredByConnection.get(connectionId);
+        if (unanswered == null || !unanswered.removeFirstOccurrence(pair)) {
+            return; // Answered or cleared meanwhile
+        }
+        if (unanswered.isEmpty()) {
+            unansweredByConnection.remove(connectionId);
+        }
+        unansweredCount--;
+
+        if (pair.hasRequest()) {
+            pair.setOrphaned(true);
+            eventManager.onRequestExpired(pair);
+        }
+    }
+
+    /**
+     * Create a standalone response entry (no matching request).
+     * Note: We skip standalone responses since they're not useful without requests.
+     */
+    private void createStandaloneResponse(String connectionId, CapturedEvent event) {
+        // Skip standalone responses - they're not useful without matching requests
+        discard(event);
+    }
+
+    synchronized void clear() {
+        for (ArrayDeque<MatchedHttpPair> unanswered : unansweredByConnection.values()) {
+            for (MatchedHttpPair pair : unanswered) {
+                pair.getExpiryTimeout().cancel();
+            }
+        }
+        unansweredByConnection.clear();
+        for (MatchedHttpPair pair : unansweredByStream.values()) {
+            pair.getExpiryTimeout().cancel();
+        }
+        unansweredByStream.clear();
+        for (MatchedHttpPair pair : earlyResponsesByStream.values()) {
+            pair.getExpiryTimeout().cancel();
+        }
+        earlyResponsesByStream.clear();
+        unansweredCount = 0;
+    }
+
+    long getEventsProcessed() {
+        return eventsProcessed.get();
+    }
+
+    /**
+     * Requests on this lane still waiting for a response.
+     */
+    int getUnansweredCount() {
+        return unansweredCount;
+    }
+}
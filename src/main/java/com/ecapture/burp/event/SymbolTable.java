@@ -0,0 +1,67 @@
+package com.ecapture.burp.event;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns strings that repeat across many events (process names) as small integer IDs,
+ * so each distinct string is stored once.
+ *
+ * Interning an already known string is a single concurrent map lookup; looking up
+ * an ID is a lock-free array read. Symbols are never removed: the table grows with
+ * the number of distinct values, so only low-cardinality values should be interned.
+ */
+public final class SymbolTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // Replaced (copied) when full; an ID is only handed out after its slot is written
+    private volatile String[] symbols = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * ID of the string, assigning a new one if it has not been seen before.
+     * Null is interned as the empty string.
+     */
+    public int intern(String symbol) {
+        if (symbol == null) {
+            symbol = "";
+        }
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        return add(symbol);
+    }
+
+    private synchronized int add(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id; // Added by another thread meanwhile
+        }
+
+        String[] current = symbols;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = symbol;
+        symbols = current;
+
+        int newId = size++;
+        ids.put(symbol, newId);
+        return newId;
+    }
+
+    /**
+     * String for an ID returned by {@link #intern(String)}.
+     */
+    public String get(int id) {
+        return symbols[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecapture.burp.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one UUID string, and the connection ID cut from it, among all events of a
+ * socket; the decoder hands over a new string for every event.
+ *
+ * Unlike a {@link SymbolTable}, the pool can be emptied at any time: events refer to the
+ * entry itself rather than to an ID, so an event created before {@link #clear()} keeps
+ * its strings and only stops sharing them with later events. It is emptied on Clear and
+ * whenever it grows past {@code maxSize} sockets, so it never outgrows the capture.
+ */
+final class UuidPool {
+
+    /**
+     * UUID of a socket and direction, with its connection ID.
+     */
+    static final class Entry {
+        final String uuid;
+        final String connectionId;
+
+        private Entry(String uuid) {
+            this.uuid = uuid;
+            this.connectionId = EventManager.extractConnectionId(uuid);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    UuidPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Shared entry for the UUID. Null is pooled as the empty string.
+     */
+    Entry get(String uuid) {
+        if (uuid == null) {
+            uuid = "";
+        }
+        Entry entry = entries.get(uuid);
+        if (entry != null) {
+            return entry;
+        }
+        if (entries.size() >= maxSize) {
+            entries.clear();
+        }
+        entry = new Entry(uuid);
+        Entry raced = entries.putIfAbsent(uuid, entry);
+        return raced != null ? raced : entry;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
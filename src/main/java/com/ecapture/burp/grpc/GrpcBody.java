@@ -0,0 +1,107 @@
+package com.ecapture.burp.grpc;
+
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.http.HttpHead;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * The gRPC messages of one captured request or response, decoded a page at a time.
+ *
+ * Nothing is decoded at capture time: a body is indexed when it is first viewed, and
+ * each page decompresses and dumps only its own messages.
+ */
+public final class GrpcBody {
+
+    // Dump size per message, so one huge message cannot stall the page
+    private static final int MAX_MESSAGE_CHARS = 64 * 1024;
+
+    private final GrpcMessageIndex index;
+    private final String encoding;
+    private final String status;
+
+    private GrpcBody(GrpcMessageIndex index, String encoding, String status) {
+        this.index = index;
+        this.encoding = encoding;
+        this.status = status;
+    }
+
+    /**
+     * Whether the head is of a gRPC request or response (by its content type).
+     */
+    private static boolean isGrpc(HttpHead head) {
+        String contentType = head.getHeader("content-type");
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/grpc");
+    }
+
+    /**
+     * Index the event's body, or return null if the event is not gRPC.
+     */
+    public static GrpcBody of(CapturedEvent event) {
+        HttpHead head = event.readHead();
+        if (!isGrpc(head)) {
+            return null;
+        }
+        int length = event.getPayload().length();
+        int bodyOffset = head.getBodyOffset() >= 0 ? Math.min(head.getBodyOffset(), length) : length;
+        ByteBuffer body = event.getPayload().bufferFrom(bodyOffset);
+        // Trailers of decoded HTTP/2 streams are merged into the headers
+        return new GrpcBody(GrpcMessageIndex.build(body),
+                head.getHeader("grpc-encoding"), head.getHeader("grpc-status"));
+    }
+
+    /**
+     * Number of messages (the last one may be cut off, see {@link #isTruncated()}).
+     */
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isTruncated() {
+        return index.isTruncated();
+    }
+
+    /**
+     * Value of the grpc-status trailer, or null.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Dump messages {@code [first, first + count)} as text.
+     *
+     * @param schema loaded definitions, or null
+     * @param type   message type of the method's request or response, or null for schema-less dumps
+     */
+    public String renderPage(int first, int count, ProtoSchema schema, ProtoSchema.MessageType type) {
+        ProtobufDumper dumper = new ProtobufDumper(schema, MAX_MESSAGE_CHARS);
+        StringBuilder out = new StringBuilder();
+        int end = Math.min(index.size(), first + count);
+        for (int i = Math.max(0, first); i < end; i++) {
+            out.append("#").append(i + 1).append("  ").append(index.length(i)).append(" bytes");
+            ByteBuffer message = index.message(i);
+            if (index.isCompressed(i)) {
+                out.append(", ").append(encoding != null ? encoding : "compressed");
+                try {
+                    message = ByteBuffer.wrap(GrpcCompression.decompress(message, encoding,
+                            GrpcCompression.MAX_DECOMPRESSED_SIZE));
+                    out.append(" (").append(message.remaining()).append(" bytes)");
+                } catch (IOException e) {
+                    out.append("\n(").append(e.getMessage()).append(")\n\n");
+                    continue;
+                }
+            }
+            if (i == index.size() - 1 && index.isTruncated()) {
+                out.append(", cut off");
+            }
+            if (type != null) {
+                out.append(", ").append(type.getFullName());
+            }
+            out.append('\n').append(dumper.dump(message, type)).append('\n');
+        }
+        return out.toString();
+    }
+}
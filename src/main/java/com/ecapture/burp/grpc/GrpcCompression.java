@@ -0,0 +1,87 @@
+package com.ecapture.burp.grpc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decompression of gRPC messages with the compressed flag set, per the stream's
+ * grpc-encoding header. Only the encodings the JDK can read are supported.
+ */
+public final class GrpcCompression {
+
+    // Decompressed size above which a message is refused (compression bombs)
+    public static final int MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+    private GrpcCompression() {
+    }
+
+    /**
+     * Decompress the buffer's remaining bytes. The buffer's position is not changed.
+     *
+     * @param encoding value of the grpc-encoding header (null counts as identity)
+     * @throws IOException for unsupported encodings, corrupt data, or output over {@code maxSize}
+     */
+    public static byte[] decompress(ByteBuffer data, String encoding, int maxSize) throws IOException {
+        String name = encoding != null ? encoding.trim().toLowerCase(Locale.ROOT) : "identity";
+        InputStream in;
+        switch (name) {
+            case "gzip":
+                in = new GZIPInputStream(new ByteBufferInputStream(data.duplicate()));
+                break;
+            case "deflate":
+                in = new InflaterInputStream(new ByteBufferInputStream(data.duplicate()));
+                break;
+            case "identity":
+                // Compressed flag without an encoding is a protocol error; show the bytes as they are
+                byte[] copy = new byte[data.remaining()];
+                data.get(data.position(), copy);
+                return copy;
+            default:
+                throw new IOException("Unsupported grpc-encoding: " + encoding);
+        }
+
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxSize, data.remaining() * 4));
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = stream.read(chunk)) > 0) {
+                if (out.size() + n > maxSize) {
+                    throw new IOException("Decompressed message exceeds " + maxSize + " bytes");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Reads a buffer without copying it first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.ecapture.burp.grpc;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Positions of the length-prefixed messages in a gRPC body.
+ *
+ * Each message is a 1-byte compressed flag and a 4-byte big-endian length, followed by
+ * the message bytes. Building the index only jumps from prefix to prefix, so a streaming
+ * RPC with thousands of messages is indexed without touching their content; messages
+ * are sliced out (and decompressed) one page at a time.
+ */
+public final class GrpcMessageIndex {
+
+    static final int PREFIX_LENGTH = 5;
+
+    private final ByteBuffer body;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private byte[] flags = new byte[16];
+    private int size;
+    private boolean truncated;
+
+    private GrpcMessageIndex(ByteBuffer body) {
+        this.body = body;
+    }
+
+    /**
+     * Index the buffer's remaining bytes. The buffer is kept (not copied) and its
+     * position is not changed.
+     */
+    public static GrpcMessageIndex build(ByteBuffer body) {
+        GrpcMessageIndex index = new GrpcMessageIndex(body);
+        int pos = body.position();
+        int end = body.limit();
+        while (pos < end) {
+            if (end - pos < PREFIX_LENGTH) {
+                index.truncated = true;
+                break;
+            }
+            int flag = body.get(pos) & 0xFF;
+            long length = body.getInt(pos + 1) & 0xFFFFFFFFL;
+            if (flag > 1) {
+                // Not a message prefix; the body is not (or no longer) gRPC framed
+                index.truncated = true;
+                break;
+            }
+            int start = pos + PREFIX_LENGTH;
+            int available = (int) Math.min(length, end - start);
+            index.add(start, available, flag);
+            if (available < length) {
+                index.truncated = true;
+                break;
+            }
+            pos = start + available;
+        }
+        return index;
+    }
+
+    private void add(int offset, int length, int flag) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            flags = Arrays.copyOf(flags, size * 2);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        flags[size] = (byte) flag;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Whether the body ended inside a message, or held bytes that are not a message prefix.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Whether message {@code i} is compressed with the stream's grpc-encoding.
+     */
+    public boolean isCompressed(int i) {
+        return flags[i] != 0;
+    }
+
+    /**
+     * Bytes of message {@code i} present in the body (less than announced if it was cut off).
+     */
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * The (possibly compressed) bytes of message {@code i}, without copying.
+     */
+    public ByteBuffer message(int i) {
+        return body.slice(offsets[i], lengths[i]);
+    }
+}
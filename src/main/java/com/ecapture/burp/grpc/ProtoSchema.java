@@ -0,0 +1,338 @@
+package com.ecapture.burp.grpc;
+
+import com.ecapture.burp.proto.WireFormatException;
+import com.ecapture.burp.proto.WireReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Message and method definitions loaded from compiled descriptor sets
+ * ({@code protoc --include_imports --descriptor_set_out=api.pb api.proto}), used to put
+ * field names and types on the schema-less dumps.
+ *
+ * A descriptor set is itself protobuf, so it is read with the same {@link WireReader};
+ * only names, numbers and types are kept. Loading replaces the lookup maps as a whole,
+ * so dumps on other threads see either the old or the new definitions.
+ */
+public final class ProtoSchema {
+
+    // FieldDescriptorProto.Type values that are read differently from their wire type
+    public static final int TYPE_DOUBLE = 1;
+    public static final int TYPE_FLOAT = 2;
+    public static final int TYPE_INT64 = 3;
+    public static final int TYPE_INT32 = 5;
+    public static final int TYPE_BOOL = 8;
+    public static final int TYPE_STRING = 9;
+    public static final int TYPE_GROUP = 10;
+    public static final int TYPE_MESSAGE = 11;
+    public static final int TYPE_BYTES = 12;
+    public static final int TYPE_ENUM = 14;
+    public static final int TYPE_SFIXED32 = 15;
+    public static final int TYPE_SFIXED64 = 16;
+    public static final int TYPE_SINT32 = 17;
+    public static final int TYPE_SINT64 = 18;
+
+    /**
+     * A message type: its fields by number.
+     */
+    public static final class MessageType {
+        private final String fullName;
+        private final Map<Integer, Field> fields = new HashMap<>();
+
+        MessageType(String fullName) {
+            this.fullName = fullName;
+        }
+
+        public String getFullName() {
+            return fullName;
+        }
+
+        public Field getField(int number) {
+            return fields.get(number);
+        }
+    }
+
+    /**
+     * A field: name, declared type, and the referenced message or enum for those types.
+     */
+    public static final class Field {
+        private final String name;
+        private final int type;
+        private final String typeName;
+
+        Field(String name, int type, String typeName) {
+            this.name = name;
+            this.type = type;
+            this.typeName = typeName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * Fully qualified message or enum name (without the leading dot), or null.
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+    }
+
+    private volatile Map<String, MessageType> messages = new HashMap<>();
+    private volatile Map<String, Map<Integer, String>> enums = new HashMap<>();
+
+    // Method path ("/package.Service/Method") to input and output type names
+    private volatile Map<String, String[]> methods = new HashMap<>();
+
+    /**
+     * Add the definitions of a descriptor set file to those already loaded.
+     *
+     * @return the number of message types added
+     */
+    public synchronized int load(Path descriptorSet) throws IOException {
+        Map<String, MessageType> newMessages = new HashMap<>(messages);
+        Map<String, Map<Integer, String>> newEnums = new HashMap<>(enums);
+        Map<String, String[]> newMethods = new HashMap<>(methods);
+        int before = newMessages.size();
+
+        WireReader reader = new WireReader(Files.readAllBytes(descriptorSet));
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readFile(reader, newMessages, newEnums, newMethods);
+                reader.popLimit(oldLimit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+
+        messages = newMessages;
+        enums = newEnums;
+        methods = newMethods;
+        return newMessages.size() - before;
+    }
+
+    public synchronized void clear() {
+        messages = new HashMap<>();
+        enums = new HashMap<>();
+        methods = new HashMap<>();
+    }
+
+    public boolean isEmpty() {
+        return messages.isEmpty();
+    }
+
+    public MessageType getMessage(String fullName) {
+        return fullName != null ? messages.get(fullName) : null;
+    }
+
+    /**
+     * Name of an enum value, or null if the enum or value is unknown.
+     */
+    public String getEnumValue(String enumName, int number) {
+        Map<Integer, String> values = enums.get(enumName);
+        return values != null ? values.get(number) : null;
+    }
+
+    /**
+     * Request or response message type of a method, by request path ("/package.Service/Method").
+     */
+    public MessageType getMethodType(String path, boolean request) {
+        String[] types = path != null ? methods.get(path) : null;
+        return types != null ? getMessage(types[request ? 0 : 1]) : null;
+    }
+
+    private static int tag(int field, int wireType) {
+        return field << 3 | wireType;
+    }
+
+    // FileDescriptorProto: package = 2, message_type = 4, enum_type = 5, service = 6
+    private static void readFile(WireReader reader, Map<String, MessageType> messages,
+                                 Map<String, Map<Integer, String>> enums,
+                                 Map<String, String[]> methods) throws WireFormatException {
+        String pkg = "";
+        // Messages and services may come before the package field; read it first
+        int start = reader.position();
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(2, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                pkg = reader.readString();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+        reader.seek(start);
+
+        String prefix = pkg.isEmpty() ? "" : pkg + ".";
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(4, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readMessage(reader, prefix, messages, enums);
+                reader.popLimit(oldLimit);
+            } else if (tag == tag(5, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readEnum(reader, prefix, enums);
+                reader.popLimit(oldLimit);
+            } else if (tag == tag(6, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readService(reader, prefix, methods);
+                reader.popLimit(oldLimit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    // DescriptorProto: name = 1, field = 2, nested_type = 3, enum_type = 4
+    private static void readMessage(WireReader reader, String prefix, Map<String, MessageType> messages,
+                                    Map<String, Map<Integer, String>> enums) throws WireFormatException {
+        // The name comes first in protoc output, but nested types need it, so look it up first
+        int start = reader.position();
+        String name = "";
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                name = reader.readString();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+        reader.seek(start);
+
+        MessageType type = new MessageType(prefix + name);
+        messages.put(type.fullName, type);
+        String nestedPrefix = type.fullName + ".";
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(2, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readField(reader, type);
+                reader.popLimit(oldLimit);
+            } else if (tag == tag(3, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readMessage(reader, nestedPrefix, messages, enums);
+                reader.popLimit(oldLimit);
+            } else if (tag == tag(4, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                readEnum(reader, nestedPrefix, enums);
+                reader.popLimit(oldLimit);
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    // FieldDescriptorProto: name = 1, number = 3, type = 5, type_name = 6
+    private static void readField(WireReader reader, MessageType message) throws WireFormatException {
+        String name = null;
+        int number = 0;
+        int type = 0;
+        String typeName = null;
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                name = reader.readString();
+            } else if (tag == tag(3, WireReader.WIRETYPE_VARINT)) {
+                number = reader.readUInt32();
+            } else if (tag == tag(5, WireReader.WIRETYPE_VARINT)) {
+                type = reader.readEnum();
+            } else if (tag == tag(6, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                typeName = stripDot(reader.readString());
+            } else {
+                reader.skipField(tag);
+            }
+        }
+        if (name != null && number > 0) {
+            message.fields.put(number, new Field(name, type, typeName));
+        }
+    }
+
+    // EnumDescriptorProto: name = 1, value = 2 (EnumValueDescriptorProto: name = 1, number = 2)
+    private static void readEnum(WireReader reader, String prefix,
+                                 Map<String, Map<Integer, String>> enums) throws WireFormatException {
+        String name = "";
+        Map<Integer, String> values = new HashMap<>();
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                name = reader.readString();
+            } else if (tag == tag(2, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                String valueName = null;
+                int number = 0;
+                int valueTag;
+                while ((valueTag = reader.readTag()) != 0) {
+                    if (valueTag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                        valueName = reader.readString();
+                    } else if (valueTag == tag(2, WireReader.WIRETYPE_VARINT)) {
+                        number = reader.readUInt32();
+                    } else {
+                        reader.skipField(valueTag);
+                    }
+                }
+                reader.popLimit(oldLimit);
+                if (valueName != null) {
+                    values.put(number, valueName);
+                }
+            } else {
+                reader.skipField(tag);
+            }
+        }
+        enums.put(prefix + name, values);
+    }
+
+    // ServiceDescriptorProto: name = 1, method = 2 (MethodDescriptorProto: name = 1,
+    // input_type = 2, output_type = 3)
+    private static void readService(WireReader reader, String prefix,
+                                    Map<String, String[]> methods) throws WireFormatException {
+        int start = reader.position();
+        String name = "";
+        int tag;
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                name = reader.readString();
+            } else {
+                reader.skipField(tag);
+            }
+        }
+        reader.seek(start);
+
+        while ((tag = reader.readTag()) != 0) {
+            if (tag == tag(2, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                int oldLimit = reader.pushLimit(reader.readLength());
+                String methodName = null;
+                String[] types = new String[2];
+                int methodTag;
+                while ((methodTag = reader.readTag()) != 0) {
+                    if (methodTag == tag(1, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                        methodName = reader.readString();
+                    } else if (methodTag == tag(2, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                        types[0] = stripDot(reader.readString());
+                    } else if (methodTag == tag(3, WireReader.WIRETYPE_LENGTH_DELIMITED)) {
+                        types[1] = stripDot(reader.readString());
+                    } else {
+                        reader.skipField(methodTag);
+                    }
+                }
+                reader.popLimit(oldLimit);
+                if (methodName != null) {
+                    methods.put("/" + prefix + name + "/" + methodName, types);
+                }
+            } else {
+                reader.skipField(tag);
+            }
+        }
+    }
+
+    private static String stripDot(String typeName) {
+        return typeName.startsWith(".") ? typeName.substring(1) : typeName;
+    }
+}
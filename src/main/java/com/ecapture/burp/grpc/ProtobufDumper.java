@@ -0,0 +1,366 @@
+package com.ecapture.burp.grpc;
+
+import com.ecapture.burp.proto.WireFormatException;
+import com.ecapture.burp.proto.WireReader;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text dump of a protobuf message as a tree of fields, with or without its schema.
+ *
+ * Without a schema, only wire types are known: varints are shown as integers, fixed
+ * fields in hex with their floating-point reading, and a length-delimited field as a
+ * string if it is printable UTF-8, else as a nested message if it parses as one, else
+ * as hex. With a {@link ProtoSchema.MessageType}, field names and declared types are
+ * used instead, and fields the schema does not know fall back to the schema-less form.
+ *
+ * <pre>
+ * 1: "alice"
+ * 2 {
+ *   1: 150
+ * }
+ * </pre>
+ */
+public final class ProtobufDumper {
+
+    // Nesting deeper than this is shown as bytes
+    private static final int MAX_DEPTH = 32;
+
+    // Bytes shown for a bytes field or unparsed data
+    private static final int MAX_HEX_BYTES = 64;
+
+    private final ProtoSchema schema;
+    private final int maxChars;
+    private final StringBuilder out = new StringBuilder();
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    /**
+     * @param schema   loaded definitions, or null for schema-less dumps only
+     * @param maxChars output size after which the dump is cut short
+     */
+    public ProtobufDumper(ProtoSchema schema, int maxChars) {
+        this.schema = schema;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Dump a message (the buffer's remaining bytes) and return the text.
+     * The buffer's position is not changed.
+     *
+     * @param type message type from the schema, or null
+     */
+    public String dump(ByteBuffer message, ProtoSchema.MessageType type) {
+        out.setLength(0);
+        if (!writeMessage(message, type, 0)) {
+            out.setLength(0);
+            out.append("(not protobuf) ");
+            appendHex(message);
+            out.append('\n');
+        }
+        if (out.length() > maxChars) {
+            out.setLength(maxChars);
+            out.append("\n... (cut)\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Append the fields of a message, or return false (appending nothing) if the bytes
+     * are not a well-formed message.
+     */
+    private boolean writeMessage(ByteBuffer message, ProtoSchema.MessageType type, int depth) {
+        if (depth > 0 && !message.hasRemaining()) {
+            return false; // Ambiguous; shown as an empty string or bytes instead
+        }
+        if (!isMessage(message)) {
+            return false;
+        }
+        WireReader reader = new WireReader().reset(message);
+        try {
+            int tag;
+            while ((tag = reader.readTag()) != 0 && out.length() <= maxChars) {
+                writeField(reader, message, tag, type, depth);
+            }
+        } catch (WireFormatException e) {
+            // Not expected once isMessage() accepted the bytes; shown rather than thrown
+            indent(depth).append("(").append(e.getMessage()).append(")\n");
+        }
+        return true;
+    }
+
+    private void writeField(WireReader reader, ByteBuffer message, int tag, ProtoSchema.MessageType type,
+                            int depth) throws WireFormatException {
+        int number = tag >>> 3;
+        ProtoSchema.Field field = type != null ? type.getField(number) : null;
+        String label = field != null ? field.getName() : Integer.toString(number);
+        int declared = field != null ? field.getType() : 0;
+
+        switch (tag & 7) {
+            case WireReader.WIRETYPE_VARINT: {
+                long value = reader.readVarint64();
+                indent(depth).append(label).append(": ").append(formatVarint(value, field)).append('\n');
+                break;
+            }
+            case WireReader.WIRETYPE_FIXED64: {
+                long value = reader.readFixed64();
+                indent(depth).append(label).append(": ");
+                if (declared == ProtoSchema.TYPE_DOUBLE) {
+                    out.append(Double.longBitsToDouble(value));
+                } else if (declared != 0) {
+                    out.append(value);
+                } else {
+                    out.append(String.format("0x%016x (%s)", value, Double.longBitsToDouble(value)));
+                }
+                out.append('\n');
+                break;
+            }
+            case WireReader.WIRETYPE_FIXED32: {
+                int value = reader.readFixed32();
+                indent(depth).append(label).append(": ");
+                if (declared == ProtoSchema.TYPE_FLOAT) {
+                    out.append(Float.intBitsToFloat(value));
+                } else if (declared == ProtoSchema.TYPE_SFIXED32) {
+                    out.append(value);
+                } else if (declared != 0) {
+                    out.append(value & 0xFFFFFFFFL);
+                } else {
+                    out.append(String.format("0x%08x (%s)", value, Float.intBitsToFloat(value)));
+                }
+                out.append('\n');
+                break;
+            }
+            case WireReader.WIRETYPE_LENGTH_DELIMITED: {
+                int length = reader.readLength();
+                ByteBuffer value = message.slice(reader.position(), length);
+                reader.skipRawBytes(length);
+                writeLengthDelimited(label, value, field, depth);
+                break;
+            }
+            case WireReader.WIRETYPE_START_GROUP:
+            case WireReader.WIRETYPE_END_GROUP:
+                // Deprecated groups: listed without their content
+                indent(depth).append(label).append(": (group)\n");
+                if ((tag & 7) == WireReader.WIRETYPE_START_GROUP) {
+                    reader.skipField(tag);
+                }
+                break;
+            default:
+                throw new WireFormatException("Invalid wire type in tag: " + tag);
+        }
+    }
+
+    private void writeLengthDelimited(String label, ByteBuffer value, ProtoSchema.Field field, int depth) {
+        int declared = field != null ? field.getType() : 0;
+        if (declared == ProtoSchema.TYPE_STRING) {
+            indent(depth).append(label).append(": ");
+            appendQuoted(new String(toArray(value), StandardCharsets.UTF_8));
+            out.append('\n');
+            return;
+        }
+        if (declared == ProtoSchema.TYPE_BYTES) {
+            indent(depth).append(label).append(": ");
+            appendHex(value);
+            out.append('\n');
+            return;
+        }
+
+        // Short text often also parses as fields, so printable text is taken as a string first
+        String text = declared == 0 ? printableUtf8(value) : null;
+        if (text != null) {
+            indent(depth).append(label).append(": ");
+            appendQuoted(text);
+            out.append('\n');
+            return;
+        }
+
+        ProtoSchema.MessageType nested = null;
+        if (declared == ProtoSchema.TYPE_MESSAGE && schema != null) {
+            nested = schema.getMessage(field.getTypeName());
+        }
+        if ((declared == 0 || declared == ProtoSchema.TYPE_MESSAGE) && depth < MAX_DEPTH) {
+            int mark = out.length();
+            indent(depth).append(label).append(" {\n");
+            if (writeMessage(value, nested, depth + 1)) {
+                indent(depth).append("}\n");
+                return;
+            }
+            out.setLength(mark);
+        }
+
+        indent(depth).append(label).append(": ");
+        if (declared != 0 && declared != ProtoSchema.TYPE_MESSAGE) {
+            // Packed repeated scalars
+            appendPacked(value, field);
+        } else {
+            appendHex(value);
+        }
+        out.append('\n');
+    }
+
+    private void appendPacked(ByteBuffer value, ProtoSchema.Field field) {
+        WireReader reader = new WireReader().reset(value);
+        out.append('[');
+        try {
+            boolean first = true;
+            while (!reader.isAtEnd()) {
+                if (!first) {
+                    out.append(", ");
+                }
+                first = false;
+                switch (field.getType()) {
+                    case ProtoSchema.TYPE_DOUBLE:
+                        out.append(Double.longBitsToDouble(reader.readFixed64()));
+                        break;
+                    case ProtoSchema.TYPE_FLOAT:
+                        out.append(Float.intBitsToFloat(reader.readFixed32()));
+                        break;
+                    case 6: // fixed64
+                    case ProtoSchema.TYPE_SFIXED64:
+                        out.append(reader.readFixed64());
+                        break;
+                    case 7: // fixed32
+                        out.append(reader.readFixed32() & 0xFFFFFFFFL);
+                        break;
+                    case ProtoSchema.TYPE_SFIXED32:
+                        out.append(reader.readFixed32());
+                        break;
+                    default:
+                        out.append(formatVarint(reader.readVarint64(), field));
+                        break;
+                }
+            }
+        } catch (WireFormatException e) {
+            out.append("...");
+        }
+        out.append(']');
+    }
+
+    private String formatVarint(long value, ProtoSchema.Field field) {
+        int declared = field != null ? field.getType() : 0;
+        switch (declared) {
+            case ProtoSchema.TYPE_BOOL:
+                return value != 0 ? "true" : "false";
+            case ProtoSchema.TYPE_SINT32:
+            case ProtoSchema.TYPE_SINT64:
+                return Long.toString((value >>> 1) ^ -(value & 1));
+            case ProtoSchema.TYPE_INT32:
+                return Integer.toString((int) value);
+            case ProtoSchema.TYPE_INT64:
+                return Long.toString(value);
+            case ProtoSchema.TYPE_ENUM: {
+                String name = schema != null ? schema.getEnumValue(field.getTypeName(), (int) value) : null;
+                return name != null ? name + " (" + value + ")" : Long.toString(value);
+            }
+            case 0:
+                // Unknown: unsigned, plus the signed reading of negative int32/int64 values
+                return value < 0 ? Long.toUnsignedString(value) + " (" + value + ")" : Long.toString(value);
+            default:
+                return Long.toUnsignedString(value);
+        }
+    }
+
+    /**
+     * Whether the bytes parse completely as a sequence of well-formed fields.
+     */
+    private static boolean isMessage(ByteBuffer message) {
+        WireReader reader = new WireReader().reset(message);
+        try {
+            int tag;
+            while ((tag = reader.readTag()) != 0) {
+                int wireType = tag & 7;
+                if (wireType == WireReader.WIRETYPE_END_GROUP || wireType > WireReader.WIRETYPE_FIXED32) {
+                    return false;
+                }
+                reader.skipField(tag);
+            }
+            return true;
+        } catch (WireFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The bytes as a string, if they are valid UTF-8 without control characters
+     * (other than line breaks and tabs); null otherwise.
+     */
+    private String printableUtf8(ByteBuffer value) {
+        CharBuffer chars;
+        try {
+            chars = utf8.reset().decode(value.duplicate());
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c < ' ' && c != '\n' && c != '\r' && c != '\t' || c == 0x7F) {
+                return null;
+            }
+        }
+        return chars.toString();
+    }
+
+    private void appendQuoted(String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < ' ') {
+                        out.append(String.format("\\x%02x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private void appendHex(ByteBuffer value) {
+        int length = value.remaining();
+        int shown = Math.min(length, MAX_HEX_BYTES);
+        int pos = value.position();
+        for (int i = 0; i < shown; i++) {
+            int b = value.get(pos + i) & 0xFF;
+            out.append(Character.forDigit(b >>> 4, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        if (shown < length) {
+            out.append("...");
+        }
+        out.append(" (").append(length).append(length == 1 ? " byte)" : " bytes)");
+    }
+
+    private StringBuilder indent(int depth) {
+        for (int i = 0; i < depth; i++) {
+            out.append("  ");
+        }
+        return out;
+    }
+
+    private static byte[] toArray(ByteBuffer value) {
+        byte[] bytes = new byte[value.remaining()];
+        value.get(value.position(), bytes);
+        return bytes;
+    }
+}
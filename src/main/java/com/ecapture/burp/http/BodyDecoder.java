@@ -0,0 +1,281 @@
+package com.ecapture.burp.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Undoes the transfer and content codings of a captured HTTP/1.x message (chunked,
+ * gzip, deflate) so its body can be read and searched.
+ *
+ * Decompression output is capped at {@link #MAX_RATIO} times the compressed size (with
+ * a floor of {@link #MIN_LIMIT}) and at {@link #MAX_SIZE}, so a decompression bomb
+ * stops early instead of filling the heap. Decoding problems never throw: the body is
+ * decoded as far as possible and the problem is reported with the result.
+ */
+public final class BodyDecoder {
+
+    public static final int MAX_RATIO = 100;
+    public static final int MIN_LIMIT = 1024 * 1024;
+    public static final int MAX_SIZE = 64 * 1024 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes();
+
+    private BodyDecoder() {
+    }
+
+    /**
+     * Decode the buffer's remaining bytes (one message). The buffer's position is not changed.
+     */
+    public static DecodedBody decode(ByteBuffer message) {
+        HttpHead head = HttpHead.parse(message);
+        int length = message.remaining();
+        int bodyOffset = head.getBodyOffset();
+        if (head.getKind() == HttpHead.Kind.NONE || bodyOffset < 0 || bodyOffset > length) {
+            byte[] raw = new byte[length];
+            message.get(message.position(), raw);
+            return new DecodedBody(raw, length, Collections.emptyList(), null);
+        }
+        int base = message.position();
+        return decode(message.slice(base, bodyOffset), head, message.slice(base + bodyOffset, length - bodyOffset));
+    }
+
+    /**
+     * Decode a message kept as its head and its body (e.g. the two parts of a stored
+     * payload), without joining them first. The buffers' positions are not changed.
+     */
+    public static DecodedBody decode(ByteBuffer headBytes, ByteBuffer body) {
+        HttpHead head = HttpHead.parse(headBytes);
+        if (head.getKind() == HttpHead.Kind.NONE || head.getBodyOffset() != headBytes.remaining()) {
+            // Not split where the head ends
+            return decode(join(headBytes, body));
+        }
+        return decode(headBytes, head, body);
+    }
+
+    /**
+     * @param headBytes the head through the blank line, as parsed into {@code head}
+     */
+    private static DecodedBody decode(ByteBuffer headBytes, HttpHead head, ByteBuffer encoded) {
+        int bodyOffset = headBytes.remaining();
+        byte[] body = new byte[encoded.remaining()];
+        encoded.get(encoded.position(), body);
+        List<String> codings = new ArrayList<>(2);
+        String problem = null;
+
+        String transferEncoding = head.getHeader("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            byte[] dechunked = dechunk(body);
+            if (dechunked == null) {
+                problem = "Malformed chunked body";
+            } else {
+                body = dechunked;
+                codings.add("chunked");
+            }
+        }
+
+        // Content codings are listed in the order they were applied
+        String contentEncoding = head.getHeader("content-encoding");
+        if (problem == null && contentEncoding != null) {
+            String[] applied = contentEncoding.split(",");
+            String[] stopped = new String[1];
+            for (int i = applied.length - 1; i >= 0 && problem == null; i--) {
+                String coding = applied[i].trim().toLowerCase(Locale.ROOT);
+                if (coding.isEmpty() || coding.equals("identity")) {
+                    continue;
+                }
+                try {
+                    // Output up to a cut-off or the expansion limit is kept
+                    body = decompress(body, coding, stopped);
+                    codings.add(coding);
+                    problem = stopped[0];
+                } catch (IOException e) {
+                    problem = e.getMessage();
+                }
+            }
+        }
+
+        if (codings.isEmpty()) {
+            return new DecodedBody(join(headBytes, encoded).array(), bodyOffset, codings, problem);
+        }
+        byte[] newHead = rewriteHead(headBytes, head, body.length);
+        byte[] decoded = Arrays.copyOf(newHead, newHead.length + body.length);
+        System.arraycopy(body, 0, decoded, newHead.length, body.length);
+        return new DecodedBody(decoded, newHead.length, codings, problem);
+    }
+
+    /**
+     * Copy two buffers' remaining bytes into one heap buffer.
+     */
+    private static ByteBuffer join(ByteBuffer first, ByteBuffer second) {
+        byte[] bytes = new byte[first.remaining() + second.remaining()];
+        first.get(first.position(), bytes, 0, first.remaining());
+        second.get(second.position(), bytes, first.remaining(), second.remaining());
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Join the chunks of a chunked body, or return null if it is malformed. A body cut off
+     * inside a chunk gives the data up to the cut.
+     */
+    static byte[] dechunk(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+        int pos = 0;
+        while (pos < body.length) {
+            int lineEnd = indexOf(body, (byte) '\n', pos);
+            if (lineEnd < 0) {
+                break; // Cut off in a size line
+            }
+            long size = 0;
+            int digits = 0;
+            for (int i = pos; i < lineEnd; i++) {
+                int digit = Character.digit(body[i], 16);
+                if (digit < 0) {
+                    break; // Extension, CR, or whitespace
+                }
+                size = size * 16 + digit;
+                if (++digits > 15) {
+                    return null;
+                }
+            }
+            if (digits == 0) {
+                return null;
+            }
+            if (size == 0) {
+                break; // Last chunk; trailers are not kept
+            }
+            int start = lineEnd + 1;
+            int n = (int) Math.min(size, body.length - start);
+            out.write(body, start, n);
+            pos = start + n;
+            // CRLF after the chunk data
+            if (pos < body.length && body[pos] == '\r') {
+                pos++;
+            }
+            if (pos < body.length && body[pos] == '\n') {
+                pos++;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompress a body. Output before a cut-off or the expansion limit is returned,
+     * with the reason stored in {@code stopped[0]}.
+     *
+     * @throws IOException if the coding is unsupported or the data is not in that format
+     */
+    private static byte[] decompress(byte[] data, String coding, String[] stopped) throws IOException {
+        int limit = (int) Math.min(MAX_SIZE, Math.max(MIN_LIMIT, (long) data.length * MAX_RATIO));
+        switch (coding) {
+            case "gzip":
+            case "x-gzip":
+                return readLimited(new GZIPInputStream(new ByteArrayInputStream(data)), limit, stopped);
+            case "deflate":
+                // Meant to be zlib-wrapped, but some servers send raw deflate
+                try {
+                    return readLimited(new InflaterInputStream(new ByteArrayInputStream(data)), limit, stopped);
+                } catch (ZipException e) {
+                    return readLimited(new InflaterInputStream(new ByteArrayInputStream(data),
+                            new Inflater(true)), limit, stopped);
+                }
+            default:
+                throw new IOException("Unsupported content coding: " + coding);
+        }
+    }
+
+    private static byte[] readLimited(InputStream in, int limit, String[] stopped) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = in) {
+            byte[] chunk = new byte[8192];
+            int n;
+            while ((n = stream.read(chunk)) > 0) {
+                if (out.size() + n > limit) {
+                    out.write(chunk, 0, limit - out.size());
+                    stopped[0] = "Decompressed body cut at " + limit + " bytes (expansion limit)";
+                    break;
+                }
+                out.write(chunk, 0, n);
+            }
+        } catch (EOFException e) {
+            stopped[0] = "Compressed body is cut off";
+        } catch (ZipException e) {
+            if (out.size() == 0) {
+                throw e;
+            }
+            stopped[0] = "Corrupt compressed data: " + e.getMessage();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The head without Transfer-Encoding, Content-Encoding and Content-Length, and with
+     * the decoded body's Content-Length before the blank line.
+     */
+    private static byte[] rewriteHead(ByteBuffer message, HttpHead head, int bodyLength) {
+        int base = message.position();
+        int bodyOffset = head.getBodyOffset();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bodyOffset + 32);
+
+        // Blank line: "\r\n" or "\n" just before the body
+        int blankLine = bodyOffset - 1;
+        if (blankLine > 0 && message.get(base + blankLine - 1) == '\r') {
+            blankLine--;
+        }
+
+        int copied = 0;
+        for (int i = 0; i < head.getHeaderCount(); i++) {
+            String name = head.getHeaderName(i).toLowerCase(Locale.ROOT);
+            if (!name.equals("transfer-encoding") && !name.equals("content-encoding")
+                    && !name.equals("content-length")) {
+                continue;
+            }
+            int lineStart = head.getHeaderNameStart(i);
+            int lineEnd = head.getHeaderValueEnd(i);
+            while (lineEnd < blankLine && message.get(base + lineEnd) != '\n') {
+                lineEnd++;
+            }
+            copy(message, base + copied, lineStart - copied, out);
+            copied = Math.min(lineEnd + 1, blankLine);
+        }
+        copy(message, base + copied, blankLine - copied, out);
+
+        out.write(CONTENT_LENGTH, 0, CONTENT_LENGTH.length);
+        byte[] value = Integer.toString(bodyLength).getBytes();
+        out.write(value, 0, value.length);
+        out.write('\r');
+        out.write('\n');
+        copy(message, base + blankLine, bodyOffset - blankLine, out);
+        return out.toByteArray();
+    }
+
+    private static void copy(ByteBuffer message, int from, int length, ByteArrayOutputStream out) {
+        if (length <= 0) {
+            return;
+        }
+        byte[] bytes = new byte[length];
+        message.get(from, bytes);
+        out.write(bytes, 0, length);
+    }
+
+    private static int indexOf(byte[] data, byte b, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ecapture.burp.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A message with its body decoded by {@link BodyDecoder}: the head rewritten for the
+ * decoded body (no Transfer-Encoding or Content-Encoding, Content-Length of the decoded
+ * body) followed by the body.
+ */
+public final class DecodedBody {
+
+    private final byte[] message;
+    private final int bodyOffset;
+    private final List<String> codings;
+    private final String problem;
+
+    DecodedBody(byte[] message, int bodyOffset, List<String> codings, String problem) {
+        this.message = message;
+        this.bodyOffset = bodyOffset;
+        this.codings = codings;
+        this.problem = problem;
+    }
+
+    /**
+     * Head and decoded body. Not copied; must not be modified.
+     */
+    public byte[] getMessage() {
+        return message;
+    }
+
+    public int getBodyLength() {
+        return message.length - bodyOffset;
+    }
+
+    /**
+     * Codings that were removed, in the order they were undone (e.g. "chunked", "gzip").
+     */
+    public List<String> getCodings() {
+        return codings;
+    }
+
+    /**
+     * Whether the body differs from the captured one.
+     */
+    public boolean isDecoded() {
+        return !codings.isEmpty();
+    }
+
+    /**
+     * Why decoding stopped early (unsupported coding, corrupt data, expansion limit), or null.
+     */
+    public String getProblem() {
+        return problem;
+    }
+
+    /**
+     * Size held in memory, for cache accounting.
+     */
+    public int size() {
+        return message.length;
+    }
+
+    /**
+     * Whether the message contains the text, ignoring ASCII case. The text is matched
+     * as UTF-8, so non-ASCII text is found in UTF-8 bodies.
+     */
+    public boolean contains(String text) {
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        if (needle.length == 0) {
+            return true;
+        }
+        for (int i = 0; i < needle.length; i++) {
+            needle[i] = lower(needle[i]);
+        }
+        byte first = needle[0];
+        int last = message.length - needle.length;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            if (lower(message[i]) != first) {
+                continue;
+            }
+            for (int j = 1; j < needle.length; j++) {
+                if (lower(message[i + j]) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
@@ -0,0 +1,505 @@
+package com.ecapture.burp.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable parsed view of an HTTP/1.x message head (start line and header block).
+ *
+ * Built by one pass over the payload bytes that stops at the blank line ending the
+ * header block, so the body is never scanned or decoded. Start-line fields and the
+ * Host header are decoded once by the parser; other headers are kept as offsets into
+ * a copy of the head bytes (never the body) and decoded only on request.
+ *
+ * A head kept for a long time should drop that copy with {@link #withoutHeaderBytes()};
+ * its offsets still index the message it was parsed from.
+ */
+public final class HttpHead {
+
+    /**
+     * What the start line looks like.
+     */
+    public enum Kind {
+        REQUEST,
+        RESPONSE,
+        NONE
+    }
+
+    // Heads larger than this are treated as unparsable rather than scanned further
+    public static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    // Longest request method accepted on the start line
+    private static final int MAX_METHOD_LENGTH = 16;
+
+    private static final int[] NO_HEADERS = new int[0];
+
+    public static final HttpHead EMPTY = new HttpHead(null, Kind.NONE, null, null, null, -1, null,
+            NO_HEADERS, 0, -1, -1);
+
+    private final byte[] data;
+    private final Kind kind;
+    private final String method;
+    private final String target;
+    private final String version;
+    private final int statusCode;
+    private final String host;
+
+    // Four entries per header: name start, name end, value start, value end (absolute offsets)
+    private final int[] headerOffsets;
+    private final int headerCount;
+
+    private final long contentLength;
+    private final int bodyOffset;
+
+    private HttpHead(byte[] data, Kind kind, String method, String target, String version,
+                     int statusCode, String host, int[] headerOffsets, int headerCount,
+                     long contentLength, int bodyOffset) {
+        this.data = data;
+        this.kind = kind;
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.statusCode = statusCode;
+        this.host = host;
+        this.headerOffsets = headerOffsets;
+        this.headerCount = headerCount;
+        this.contentLength = contentLength;
+        this.bodyOffset = bodyOffset;
+    }
+
+    /**
+     * Parse the head of a message. Never throws; anything that is not an HTTP/1.x
+     * start line gives a head of kind NONE.
+     */
+    public static HttpHead parse(byte[] data) {
+        return data == null ? EMPTY : parse(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Parse the head of the buffer's remaining bytes (heap or direct, e.g. a mapped payload).
+     * Only the head bytes are copied; the buffer's position is not changed.
+     */
+    public static HttpHead parse(ByteBuffer buffer) {
+        int base = buffer.position();
+        int available = Math.min(buffer.remaining(), MAX_HEAD_SIZE);
+        if (!looksLikeStartLine(buffer, base, available)) {
+            return EMPTY;
+        }
+        byte[] head = new byte[headLength(buffer, base, available)];
+        buffer.get(base, head);
+        return parseHead(head);
+    }
+
+    /**
+     * Offset of the body in the buffer's remaining bytes, found without copying anything.
+     *
+     * @return length of the head through the blank line, or -1 if the buffer does not
+     *         start with a complete HTTP/1.x head
+     */
+    public static int findBodyOffset(ByteBuffer buffer) {
+        int base = buffer.position();
+        int available = Math.min(buffer.remaining(), MAX_HEAD_SIZE);
+        if (!looksLikeStartLine(buffer, base, available)) {
+            return -1;
+        }
+        int length = headLength(buffer, base, available);
+        if (length < 2 || buffer.get(base + length - 1) != '\n') {
+            return -1;
+        }
+        byte before = buffer.get(base + length - 2);
+        if (before == '\n' || (before == '\r' && length >= 3 && buffer.get(base + length - 3) == '\n')) {
+            return length;
+        }
+        return -1;
+    }
+
+    /**
+     * Cheap check of the first bytes, so payloads that are not HTTP/1.x are never copied.
+     */
+    private static boolean looksLikeStartLine(ByteBuffer buffer, int base, int available) {
+        int end = Math.min(available, MAX_METHOD_LENGTH + 1);
+        for (int i = 0; i < end; i++) {
+            byte b = buffer.get(base + i);
+            if (b == ' ') {
+                return i > 0;
+            }
+            if (b <= ' ' || b >= 0x7F) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Length of the head: through the blank line ending the header block, or everything available.
+     */
+    private static int headLength(ByteBuffer buffer, int base, int available) {
+        for (int i = 0; i < available; i++) {
+            if (buffer.get(base + i) != '\n') {
+                continue;
+            }
+            if (i + 1 < available && buffer.get(base + i + 1) == '\n') {
+                return i + 2;
+            }
+            if (i + 2 < available && buffer.get(base + i + 1) == '\r' && buffer.get(base + i + 2) == '\n') {
+                return i + 3;
+            }
+        }
+        return available;
+    }
+
+    private static HttpHead parseHead(byte[] data) {
+        int end = data.length;
+
+        // Start line
+        int lineEnd = indexOf(data, (byte) '\n', 0, end);
+        int startLineEnd = lineEnd >= 0 ? trimCr(data, 0, lineEnd) : end;
+        int firstSpace = indexOf(data, (byte) ' ', 0, startLineEnd);
+        if (firstSpace <= 0) {
+            return EMPTY;
+        }
+        int secondSpace = indexOf(data, (byte) ' ', firstSpace + 1, startLineEnd);
+
+        Kind kind;
+        String method = null;
+        String target = null;
+        String version;
+        int statusCode = -1;
+
+        if (startsWith(data, 0, startLineEnd, "HTTP/")) {
+            // HTTP/1.1 200 OK (the reason phrase may be empty or missing)
+            kind = Kind.RESPONSE;
+            version = ascii(data, 0, firstSpace);
+            int codeEnd = secondSpace > 0 ? secondSpace : startLineEnd;
+            statusCode = parseStatusCode(data, firstSpace + 1, codeEnd);
+        } else {
+            // GET /path HTTP/1.1
+            if (firstSpace > MAX_METHOD_LENGTH || secondSpace < 0 || !isToken(data, 0, firstSpace)) {
+                return EMPTY;
+            }
+            kind = Kind.REQUEST;
+            int known = HttpMethodTrie.getDefault().match(data, 0, firstSpace + 1);
+            method = known >= 0 ? HttpMethodTrie.getDefault().getMethod(known) : ascii(data, 0, firstSpace);
+            target = utf8(data, firstSpace + 1, secondSpace);
+            version = ascii(data, secondSpace + 1, startLineEnd);
+        }
+
+        // Header block: name ":" OWS value OWS, up to the first empty line
+        int[] offsets = NO_HEADERS;
+        int headerCount = 0;
+        String host = null;
+        long contentLength = -1;
+        int bodyOffset = -1;
+
+        int pos = lineEnd + 1;
+        while (lineEnd >= 0 && pos < end) {
+            lineEnd = indexOf(data, (byte) '\n', pos, end);
+            if (lineEnd < 0) {
+                break; // Header block is truncated
+            }
+            int contentEnd = trimCr(data, pos, lineEnd);
+            if (contentEnd == pos) {
+                bodyOffset = lineEnd + 1;
+                break;
+            }
+
+            int colon = indexOf(data, (byte) ':', pos, contentEnd);
+            if (colon > pos) {
+                int valueStart = colon + 1;
+                while (valueStart < contentEnd && isWhitespace(data[valueStart])) {
+                    valueStart++;
+                }
+                int valueEnd = contentEnd;
+                while (valueEnd > valueStart && isWhitespace(data[valueEnd - 1])) {
+                    valueEnd--;
+                }
+
+                if (offsets.length < (headerCount + 1) * 4) {
+                    offsets = Arrays.copyOf(offsets, Math.max(32, offsets.length * 2));
+                }
+                int base = headerCount * 4;
+                offsets[base] = pos;
+                offsets[base + 1] = colon;
+                offsets[base + 2] = valueStart;
+                offsets[base + 3] = valueEnd;
+                headerCount++;
+
+                if (host == null && equalsIgnoreCase(data, pos, colon, "host")) {
+                    host = utf8(data, valueStart, valueEnd);
+                } else if (contentLength < 0 && equalsIgnoreCase(data, pos, colon, "content-length")) {
+                    contentLength = parseLong(data, valueStart, valueEnd);
+                }
+            }
+            pos = lineEnd + 1;
+        }
+
+        return new HttpHead(data, kind, method, target, version, statusCode, host,
+                offsets, headerCount, contentLength, bodyOffset);
+    }
+
+    /**
+     * The same head without its copy of the header bytes: start-line fields, Host,
+     * Content-Length and offsets remain, header names and values must be read from
+     * a fresh parse of the message.
+     */
+    public HttpHead withoutHeaderBytes() {
+        if (data == null) {
+            return this;
+        }
+        return new HttpHead(null, kind, method, target, version, statusCode, host,
+                headerOffsets, headerCount, contentLength, bodyOffset);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Request method, or null if this is not a request.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Request target (path or absolute URL), or null if this is not a request.
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Protocol version from the start line (e.g. "HTTP/1.1"), or null.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Response status code, or -1 if this is not a response or the code is malformed.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Value of the first Host header, or null.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Value of Content-Length, or -1 if absent or malformed.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Offset of the first body byte, or -1 if the header block is incomplete.
+     */
+    public int getBodyOffset() {
+        return bodyOffset;
+    }
+
+    public boolean isHeadComplete() {
+        return bodyOffset >= 0;
+    }
+
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    public int getHeaderNameStart(int index) {
+        return headerOffsets[checkIndex(index) * 4];
+    }
+
+    public int getHeaderNameEnd(int index) {
+        return headerOffsets[checkIndex(index) * 4 + 1];
+    }
+
+    public int getHeaderValueStart(int index) {
+        return headerOffsets[checkIndex(index) * 4 + 2];
+    }
+
+    public int getHeaderValueEnd(int index) {
+        return headerOffsets[checkIndex(index) * 4 + 3];
+    }
+
+    /**
+     * Decode a header name (allocates).
+     */
+    public String getHeaderName(int index) {
+        return ascii(headerBytes(), getHeaderNameStart(index), getHeaderNameEnd(index));
+    }
+
+    /**
+     * Decode a header value (allocates).
+     */
+    public String getHeaderValue(int index) {
+        return utf8(headerBytes(), getHeaderValueStart(index), getHeaderValueEnd(index));
+    }
+
+    /**
+     * Decode a header value byte for byte (ISO-8859-1), the way HPACK and Burp treat
+     * header bytes, so it can be written back unchanged (allocates).
+     */
+    public String getRawHeaderValue(int index) {
+        return ascii(headerBytes(), getHeaderValueStart(index), getHeaderValueEnd(index));
+    }
+
+    /**
+     * Request target decoded byte for byte (ISO-8859-1), or null if this is not a request.
+     * Needs the header bytes, like the header accessors.
+     */
+    public String getRawTarget() {
+        if (kind != Kind.REQUEST) {
+            return null;
+        }
+        byte[] bytes = headerBytes();
+        int end = headerCount > 0 ? headerOffsets[0] : bytes.length;
+        int from = indexOf(bytes, (byte) ' ', 0, end) + 1;
+        return ascii(bytes, from, indexOf(bytes, (byte) ' ', from, end));
+    }
+
+    /**
+     * Index of the first header with the given name (case-insensitive), or -1.
+     */
+    public int indexOfHeader(String name) {
+        for (int i = 0; i < headerCount; i++) {
+            int base = i * 4;
+            if (equalsIgnoreCase(headerBytes(), headerOffsets[base], headerOffsets[base + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Value of the first header with the given name (case-insensitive), or null.
+     */
+    public String getHeader(String name) {
+        int index = indexOfHeader(name);
+        return index >= 0 ? getHeaderValue(index) : null;
+    }
+
+    private byte[] headerBytes() {
+        if (data == null) {
+            throw new IllegalStateException("Header bytes were dropped; parse the message again");
+        }
+        return data;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= headerCount) {
+            throw new IndexOutOfBoundsException("Header index: " + index + ", count: " + headerCount);
+        }
+        return index;
+    }
+
+    // --- byte helpers ---
+
+    private static int indexOf(byte[] data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * End of a line's content, excluding a trailing CR before the LF at {@code lineEnd}.
+     */
+    private static int trimCr(byte[] data, int lineStart, int lineEnd) {
+        return lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isToken(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b <= ' ' || b >= 0x7F || b == ':' || b == '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] data, int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[from + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare bytes to a lower- or mixed-case ASCII string, ignoring case.
+     */
+    private static boolean equalsIgnoreCase(byte[] data, int from, int to, String s) {
+        if (to - from != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            int a = data[from + i];
+            int b = s.charAt(i);
+            if (a == b) {
+                continue;
+            }
+            // Only ASCII letters may differ, and only in case
+            int lower = a | 0x20;
+            if (lower != (b | 0x20) || lower < 'a' || lower > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseStatusCode(byte[] data, int from, int to) {
+        if (to - from != 3) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            code = code * 10 + (b - '0');
+        }
+        return code;
+    }
+
+    private static long parseLong(byte[] data, int from, int to) {
+        if (from >= to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static String ascii(byte[] data, int from, int to) {
+        return new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String utf8(byte[] data, int from, int to) {
+        return new String(data, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,158 @@
+package com.ecapture.burp.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix trie of HTTP request methods, matched directly against payload bytes.
+ *
+ * Nodes are stored in compressed-row form: node {@code n} owns the edges
+ * {@code edgeStart[n] .. edgeStart[n + 1]}, each a byte label and a target node.
+ * Nodes have few children, so a short linear scan per byte beats a hash lookup
+ * and the whole trie fits in a few hundred bytes.
+ */
+public final class HttpMethodTrie {
+
+    /**
+     * RFC 9110 methods, PATCH, WebDAV (RFC 4918, 3253, 3648, 3744, 4437, 4791, 5323, 5842)
+     * and other registered or commonly seen extension methods.
+     */
+    public static final String[] KNOWN_METHODS = {
+            // RFC 9110
+            "GET", "HEAD", "POST", "PUT", "DELETE", "CONNECT", "OPTIONS", "TRACE",
+            // RFC 5789
+            "PATCH",
+            // WebDAV and extensions
+            "PROPFIND", "PROPPATCH", "MKCOL", "COPY", "MOVE", "LOCK", "UNLOCK",
+            "VERSION-CONTROL", "REPORT", "CHECKOUT", "CHECKIN", "UNCHECKOUT", "MKWORKSPACE",
+            "UPDATE", "LABEL", "MERGE", "BASELINE-CONTROL", "MKACTIVITY", "ORDERPATCH",
+            "ACL", "MKREDIRECTREF", "UPDATEREDIRECTREF", "MKCALENDAR", "SEARCH",
+            "BIND", "UNBIND", "REBIND",
+            // Other registered or common extension methods
+            "LINK", "UNLINK", "PURGE", "QUERY", "SOURCE",
+            "NOTIFY", "SUBSCRIBE", "UNSUBSCRIBE", "M-SEARCH"
+    };
+
+    private static final HttpMethodTrie DEFAULT = new HttpMethodTrie(KNOWN_METHODS);
+
+    private final String[] methods;
+
+    // CSR layout: edges of node n are at [edgeStart[n], edgeStart[n + 1])
+    private final int[] edgeStart;
+    private final byte[] edgeLabels;
+    private final int[] edgeTargets;
+
+    // Method index ending at each node, or -1
+    private final int[] terminal;
+
+    private final int maxLength;
+
+    public HttpMethodTrie(String... methods) {
+        this.methods = methods.clone();
+
+        // Build a pointer trie first, then flatten it breadth-first
+        List<List<int[]>> children = new ArrayList<>();
+        List<Integer> terminals = new ArrayList<>();
+        children.add(new ArrayList<>());
+        terminals.add(-1);
+
+        int longest = 0;
+        for (int m = 0; m < methods.length; m++) {
+            String method = methods[m];
+            longest = Math.max(longest, method.length());
+            int node = 0;
+            for (int i = 0; i < method.length(); i++) {
+                char c = method.charAt(i);
+                if (c <= ' ' || c >= 0x7F) {
+                    throw new IllegalArgumentException("Invalid method: " + method);
+                }
+                int next = -1;
+                for (int[] edge : children.get(node)) {
+                    if (edge[0] == c) {
+                        next = edge[1];
+                        break;
+                    }
+                }
+                if (next < 0) {
+                    next = children.size();
+                    children.add(new ArrayList<>());
+                    terminals.add(-1);
+                    children.get(node).add(new int[]{c, next});
+                }
+                node = next;
+            }
+            terminals.set(node, m);
+        }
+        this.maxLength = longest;
+
+        int nodeCount = children.size();
+        this.edgeStart = new int[nodeCount + 1];
+        this.edgeLabels = new byte[nodeCount - 1];
+        this.edgeTargets = new int[nodeCount - 1];
+        this.terminal = new int[nodeCount];
+
+        int edge = 0;
+        for (int n = 0; n < nodeCount; n++) {
+            edgeStart[n] = edge;
+            terminal[n] = terminals.get(n);
+            for (int[] child : children.get(n)) {
+                edgeLabels[edge] = (byte) child[0];
+                edgeTargets[edge] = child[1];
+                edge++;
+            }
+        }
+        edgeStart[nodeCount] = edge;
+    }
+
+    /**
+     * Trie of {@link #KNOWN_METHODS}.
+     */
+    public static HttpMethodTrie getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Match a method followed by a space at the start of {@code data[offset .. limit)}.
+     *
+     * @return the method index (see {@link #getMethod(int)}), or -1
+     */
+    public int match(byte[] data, int offset, int limit) {
+        int end = Math.min(limit, offset + maxLength + 1);
+        int node = 0;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == ' ') {
+                return terminal[node];
+            }
+            int next = -1;
+            for (int e = edgeStart[node], last = edgeStart[node + 1]; e < last; e++) {
+                if (edgeLabels[e] == b) {
+                    next = edgeTargets[e];
+                    break;
+                }
+            }
+            if (next < 0) {
+                return -1;
+            }
+            node = next;
+        }
+        return -1;
+    }
+
+    /**
+     * The method string for an index returned by {@link #match}; always the same instance.
+     */
+    public String getMethod(int index) {
+        return methods[index];
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpMethodTrie" + Arrays.toString(methods);
+    }
+}
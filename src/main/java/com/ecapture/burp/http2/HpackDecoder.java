@@ -0,0 +1,265 @@
+package com.ecapture.burp.http2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * HPACK header block decoder (RFC 7541) for one direction of one connection.
+ *
+ * The dynamic table is part of the connection state: every header block of the
+ * direction must be decoded, in order, for later blocks to decode correctly.
+ * Names and values are kept one char per byte (ISO-8859-1).
+ */
+final class HpackDecoder {
+
+    static final int DEFAULT_TABLE_SIZE = 4096;
+
+    // Table size updates above this are refused (the peer's SETTINGS are not tracked)
+    private static final int MAX_TABLE_SIZE = 1024 * 1024;
+
+    // Decoded header list size (RFC 7541 entry sizes) above which a block is refused
+    private static final int MAX_HEADER_LIST_SIZE = 1024 * 1024;
+
+    // Per-entry overhead counted against the table size
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    // Dynamic table as a ring of entries; the newest entry has dynamic index 0
+    private String[] names = new String[16];
+    private String[] values = new String[16];
+    private int first;
+    private int count;
+    private int size;
+    private int maxSize = DEFAULT_TABLE_SIZE;
+
+    // Read position within the block being decoded
+    private byte[] block;
+    private int pos;
+    private int end;
+
+    /**
+     * Decode a complete header block, appending name and value of each header to {@code out}.
+     */
+    void decode(byte[] data, int offset, int length, List<String> out) throws Http2FormatException {
+        block = data;
+        pos = offset;
+        end = offset + length;
+        int listSize = 0;
+        try {
+            while (pos < end) {
+                int b = block[pos] & 0xFF;
+                String name;
+                String value;
+                if ((b & 0x80) != 0) {
+                    // Indexed header field
+                    int index = readInteger(7);
+                    name = nameAt(index);
+                    value = valueAt(index);
+                } else if ((b & 0xC0) == 0x40) {
+                    // Literal with incremental indexing
+                    int index = readInteger(6);
+                    name = index == 0 ? readString() : nameAt(index);
+                    value = readString();
+                    add(name, value);
+                } else if ((b & 0xE0) == 0x20) {
+                    // Dynamic table size update
+                    int newSize = readInteger(5);
+                    if (newSize > MAX_TABLE_SIZE) {
+                        throw new Http2FormatException("Table size update too large: " + newSize);
+                    }
+                    maxSize = newSize;
+                    evict(maxSize);
+                    continue;
+                } else {
+                    // Literal without indexing, or never indexed
+                    int index = readInteger(4);
+                    name = index == 0 ? readString() : nameAt(index);
+                    value = readString();
+                }
+
+                listSize += name.length() + value.length() + ENTRY_OVERHEAD;
+                if (listSize > MAX_HEADER_LIST_SIZE) {
+                    throw new Http2FormatException("Header list too large");
+                }
+                out.add(name);
+                out.add(value);
+            }
+        } finally {
+            block = null;
+        }
+    }
+
+    private int readInteger(int prefixBits) throws Http2FormatException {
+        int mask = (1 << prefixBits) - 1;
+        int value = block[pos++] & mask;
+        if (value < mask) {
+            return value;
+        }
+        int shift = 0;
+        while (true) {
+            if (pos >= end) {
+                throw new Http2FormatException("Truncated integer");
+            }
+            int b = block[pos++] & 0xFF;
+            value += (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+            if (shift > 21) {
+                throw new Http2FormatException("Integer too large");
+            }
+        }
+        return value;
+    }
+
+    private String readString() throws Http2FormatException {
+        if (pos >= end) {
+            throw new Http2FormatException("Truncated string");
+        }
+        boolean huffman = (block[pos] & 0x80) != 0;
+        int length = readInteger(7);
+        if (length > end - pos) {
+            throw new Http2FormatException("Truncated string");
+        }
+        String s = huffman
+                ? Huffman.decode(block, pos, length)
+                : new String(block, pos, length, StandardCharsets.ISO_8859_1);
+        pos += length;
+        return s;
+    }
+
+    private String nameAt(int index) throws Http2FormatException {
+        return entryAt(index, true);
+    }
+
+    private String valueAt(int index) throws Http2FormatException {
+        return entryAt(index, false);
+    }
+
+    private String entryAt(int index, boolean name) throws Http2FormatException {
+        if (index <= 0) {
+            throw new Http2FormatException("Invalid header index 0");
+        }
+        if (index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1][name ? 0 : 1];
+        }
+        int dynamic = index - STATIC_TABLE.length - 1;
+        if (dynamic >= count) {
+            // Typically a capture that started mid-connection
+            throw new Http2FormatException("Unknown header index " + index);
+        }
+        int slot = (first + count - 1 - dynamic) & (names.length - 1);
+        return name ? names[slot] : values[slot];
+    }
+
+    private void add(String name, String value) {
+        int entrySize = name.length() + value.length() + ENTRY_OVERHEAD;
+        if (entrySize > maxSize) {
+            // An entry larger than the table empties it and is not added
+            evict(0);
+            return;
+        }
+        evict(maxSize - entrySize);
+
+        if (count == names.length) {
+            grow();
+        }
+        int slot = (first + count) & (names.length - 1);
+        names[slot] = name;
+        values[slot] = value;
+        count++;
+        size += entrySize;
+    }
+
+    /**
+     * Drop the oldest entries until the table size is at most {@code target}.
+     */
+    private void evict(int target) {
+        while (size > target && count > 0) {
+            int slot = first;
+            size -= names[slot].length() + values[slot].length() + ENTRY_OVERHEAD;
+            names[slot] = null;
+            values[slot] = null;
+            first = (first + 1) & (names.length - 1);
+            count--;
+        }
+    }
+
+    private void grow() {
+        int capacity = names.length * 2;
+        String[] newNames = new String[capacity];
+        String[] newValues = new String[capacity];
+        for (int i = 0; i < count; i++) {
+            int slot = (first + i) & (names.length - 1);
+            newNames[i] = names[slot];
+            newValues[i] = values[slot];
+        }
+        names = newNames;
+        values = newValues;
+        first = 0;
+    }
+}
@@ -0,0 +1,241 @@
+package com.ecapture.burp.http2;
+
+import com.ecapture.burp.event.CapturedEvent;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Splits captured HTTP/2 connections into their request and response messages.
+ *
+ * eCapture reports the plaintext of each direction of a connection as a byte stream
+ * (one UUID per direction). A direction is recognised by the client connection
+ * preface, by eCapture typing its data as HTTP/2, or by a SETTINGS frame on stream 0
+ * at the start of an event; from then on all of its data goes through a
+ * {@link Http2FrameReader} with its own HPACK table. A direction whose frames fail to
+ * parse (usually a capture that started mid-connection, with an HPACK table that
+ * cannot be rebuilt) is dropped and its later data is left to the HTTP/1.x path.
+ *
+ * Not thread-safe: the WebSocket client calls it under its stream lock.
+ */
+public class Http2Demuxer {
+
+    /**
+     * Receives decoded messages, on the thread calling the demuxer.
+     */
+    public interface Listener {
+        /**
+         * @param source   event the message started in; its metadata applies to the message
+         * @param streamId HTTP/2 stream ID, pairing the request and response of an exchange
+         * @param request  true for a request, false for a response
+         * @param message  the message in HTTP/1-style text form, only valid during the call;
+         *                 cut short if the stream did not end (idle connection or size limit)
+         */
+        void onMessage(CapturedEvent source, int streamId, boolean request, ByteBuffer message);
+    }
+
+    public static final int DEFAULT_MAX_BODY_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_MAX_OPEN_STREAMS = 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    // Bytes of the client preface that identify it ("PRI * HTTP/2")
+    private static final int MIN_PREFACE_PREFIX = 12;
+
+    // Idle connections are looked for at most this often
+    private static final long SWEEP_INTERVAL_MILLIS = 1_000;
+
+    /**
+     * Frame reader and activity time of one direction.
+     */
+    private static final class Direction {
+        final Http2FrameReader reader;
+        long lastActivity;
+
+        Direction(Http2FrameReader reader) {
+            this.reader = reader;
+        }
+    }
+
+    private final Listener listener;
+    private final int maxBodySize;
+    private final int maxOpenStreams;
+    private final long idleTimeoutMillis;
+    private final Http2FrameReader.Sink sink = this::deliver;
+
+    // HTTP/2 directions by event UUID
+    private final Map<String, Direction> directions = new HashMap<>();
+    private long lastSweep;
+
+    // Stats
+    private final AtomicLong messagesDecoded = new AtomicLong();
+    private final AtomicLong incompleteMessages = new AtomicLong();
+    private final AtomicLong decodeErrors = new AtomicLong();
+    private volatile int connections;
+
+    public Http2Demuxer(Listener listener) {
+        this(listener, DEFAULT_MAX_BODY_SIZE, DEFAULT_MAX_OPEN_STREAMS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public Http2Demuxer(Listener listener, int maxBodySize, int maxOpenStreams, long idleTimeoutMillis) {
+        this.listener = listener;
+        this.maxBodySize = maxBodySize;
+        this.maxOpenStreams = maxOpenStreams;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Feed the payload of one event if it belongs to an HTTP/2 connection. Messages
+     * completed by it are delivered before this returns. The fragment's position is not changed.
+     *
+     * @return false if the event is not HTTP/2 and should take the HTTP/1.x path
+     */
+    public boolean accept(CapturedEvent event, ByteBuffer fragment) {
+        long now = System.currentTimeMillis();
+        String key = event.getUuid();
+        Direction direction = directions.get(key);
+        if (direction == null) {
+            boolean preface = startsWithPreface(fragment);
+            if (!preface && !startsWithFrame(event, fragment)) {
+                return false;
+            }
+            direction = new Direction(new Http2FrameReader(preface, maxBodySize, maxOpenStreams));
+            directions.put(key, direction);
+        }
+        direction.lastActivity = now;
+
+        try {
+            direction.reader.feed(event, fragment, sink);
+        } catch (Http2FormatException e) {
+            directions.remove(key);
+            decodeErrors.incrementAndGet();
+        }
+        connections = directions.size();
+
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+            flushIdle(now);
+        }
+        return true;
+    }
+
+    /**
+     * Deliver the open streams of directions idle for the timeout as incomplete, and
+     * forget the directions. Called on every event and heartbeat.
+     */
+    public void flushIdle(long now) {
+        lastSweep = now;
+        Iterator<Direction> it = directions.values().iterator();
+        while (it.hasNext()) {
+            Direction direction = it.next();
+            if (now - direction.lastActivity >= idleTimeoutMillis) {
+                it.remove();
+                direction.reader.drain(sink);
+            }
+        }
+        connections = directions.size();
+    }
+
+    /**
+     * Deliver all open streams as incomplete and forget all connections
+     * (the WebSocket connection is gone).
+     */
+    public void flushAll() {
+        for (Direction direction : directions.values()) {
+            direction.reader.drain(sink);
+        }
+        directions.clear();
+        connections = 0;
+    }
+
+    /**
+     * Forget all connections without delivering their open streams
+     * (the captured traffic was cleared).
+     */
+    public void clear() {
+        directions.clear();
+        connections = 0;
+    }
+
+    private void deliver(Http2Message message) {
+        if (message.isComplete()) {
+            messagesDecoded.incrementAndGet();
+        } else {
+            incompleteMessages.incrementAndGet();
+        }
+        listener.onMessage(message.getSource(), message.getStreamId(), message.isRequest(),
+                ByteBuffer.wrap(message.render()));
+    }
+
+    /**
+     * Whether the fragment starts with the client preface, or with enough of it
+     * (the rest is checked by the frame reader).
+     */
+    private static boolean startsWithPreface(ByteBuffer fragment) {
+        byte[] preface = Http2FrameReader.PREFACE;
+        int length = Math.min(fragment.remaining(), preface.length);
+        if (length < MIN_PREFACE_PREFIX) {
+            return false;
+        }
+        int pos = fragment.position();
+        for (int i = 0; i < length; i++) {
+            if (fragment.get(pos + i) != preface[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the fragment starts with a plausible frame header: a SETTINGS frame on
+     * stream 0 (every connection starts with one), or any known frame type when eCapture
+     * already typed the data as HTTP/2.
+     */
+    private static boolean startsWithFrame(CapturedEvent event, ByteBuffer fragment) {
+        if (fragment.remaining() < Http2FrameReader.FRAME_HEADER_LENGTH) {
+            return false;
+        }
+        int pos = fragment.position();
+        int length = (fragment.get(pos) & 0xFF) << 16 | (fragment.get(pos + 1) & 0xFF) << 8
+                | (fragment.get(pos + 2) & 0xFF);
+        int type = fragment.get(pos + 3) & 0xFF;
+        int streamId = fragment.getInt(pos + 5);
+        if (type == Http2FrameReader.TYPE_SETTINGS) {
+            return streamId == 0 && length % 6 == 0;
+        }
+        CapturedEvent.EventType eventType = event.getEventType();
+        boolean typedHttp2 = eventType == CapturedEvent.EventType.HTTP2_REQUEST
+                || eventType == CapturedEvent.EventType.HTTP2_RESPONSE;
+        return typedHttp2 && type <= Http2FrameReader.TYPE_CONTINUATION && streamId >= 0;
+    }
+
+    // Getters for stats
+    /**
+     * Messages decoded from streams that ended.
+     */
+    public long getMessagesDecoded() {
+        return messagesDecoded.get();
+    }
+
+    /**
+     * Messages delivered before their stream ended.
+     */
+    public long getIncompleteMessages() {
+        return incompleteMessages.get();
+    }
+
+    /**
+     * Connection directions dropped because their frames or headers did not decode.
+     */
+    public long getDecodeErrors() {
+        return decodeErrors.get();
+    }
+
+    /**
+     * Connection directions currently followed.
+     */
+    public int getConnections() {
+        return connections;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecapture.burp.http2;
+
+import java.io.IOException;
+
+/**
+ * Thrown when bytes are not a valid HTTP/2 frame sequence or HPACK header block.
+ */
+public class Http2FormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public Http2FormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,297 @@
+package com.ecapture.burp.http2;
+
+import com.ecapture.burp.event.CapturedEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frame parser for one direction of one HTTP/2 connection.
+ *
+ * Captured bytes arrive in arbitrary fragments; they are buffered until a whole frame
+ * is available. Header blocks (HEADERS plus CONTINUATION) are decoded as soon as they
+ * end, including those of pushed and reset streams, since every block updates the
+ * HPACK table. Messages are handed to the sink when their stream ends.
+ */
+final class Http2FrameReader {
+
+    interface Sink {
+        void onMessage(Http2Message message);
+    }
+
+    static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    static final int FRAME_HEADER_LENGTH = 9;
+
+    static final int TYPE_DATA = 0x0;
+    static final int TYPE_HEADERS = 0x1;
+    static final int TYPE_RST_STREAM = 0x3;
+    static final int TYPE_SETTINGS = 0x4;
+    static final int TYPE_PUSH_PROMISE = 0x5;
+    static final int TYPE_CONTINUATION = 0x9;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    // Largest frame a peer may be allowed to send (SETTINGS_MAX_FRAME_SIZE upper bound)
+    private static final int MAX_FRAME_LENGTH = (1 << 24) - 1;
+
+    // Header blocks above this are refused
+    private static final int MAX_HEADER_BLOCK = 1024 * 1024;
+
+    private final HpackDecoder hpack = new HpackDecoder();
+    private final int maxBodySize;
+    private final int maxOpenStreams;
+
+    // Bytes received but not yet parsed (at most one partial frame)
+    private byte[] input = new byte[16 * 1024];
+    private int inputLength;
+    private int prefaceRemaining;
+
+    private final Map<Integer, Http2Message> open = new HashMap<>();
+
+    // Header block being collected; headerStreamId is 0 when none is open
+    private byte[] headerBlock = new byte[4 * 1024];
+    private int headerBlockLength;
+    private int headerStreamId;
+    private boolean headerEndStream;
+    private boolean headerPushPromise;
+    private CapturedEvent headerSource;
+
+    private long streamsDropped;
+
+    Http2FrameReader(boolean expectPreface, int maxBodySize, int maxOpenStreams) {
+        this.prefaceRemaining = expectPreface ? PREFACE.length : 0;
+        this.maxBodySize = maxBodySize;
+        this.maxOpenStreams = maxOpenStreams;
+    }
+
+    /**
+     * Parse a fragment's remaining bytes. The buffer's position is not changed.
+     *
+     * @param source event the fragment came from, recorded as the source of messages it starts
+     */
+    void feed(CapturedEvent source, ByteBuffer fragment, Sink sink) throws Http2FormatException {
+        append(fragment);
+
+        int pos = 0;
+        if (prefaceRemaining > 0) {
+            int n = Math.min(prefaceRemaining, inputLength);
+            int prefaceOffset = PREFACE.length - prefaceRemaining;
+            if (!Arrays.equals(input, 0, n, PREFACE, prefaceOffset, prefaceOffset + n)) {
+                throw new Http2FormatException("Invalid connection preface");
+            }
+            prefaceRemaining -= n;
+            pos = n;
+        }
+
+        while (inputLength - pos >= FRAME_HEADER_LENGTH) {
+            int length = (input[pos] & 0xFF) << 16 | (input[pos + 1] & 0xFF) << 8 | (input[pos + 2] & 0xFF);
+            if (inputLength - pos - FRAME_HEADER_LENGTH < length) {
+                break;
+            }
+            int type = input[pos + 3] & 0xFF;
+            int flags = input[pos + 4] & 0xFF;
+            int streamId = ((input[pos + 5] & 0x7F) << 24 | (input[pos + 6] & 0xFF) << 16
+                    | (input[pos + 7] & 0xFF) << 8 | (input[pos + 8] & 0xFF));
+            handleFrame(type, flags, streamId, pos + FRAME_HEADER_LENGTH, length, source, sink);
+            pos += FRAME_HEADER_LENGTH + length;
+        }
+
+        System.arraycopy(input, pos, input, 0, inputLength - pos);
+        inputLength -= pos;
+    }
+
+    private void append(ByteBuffer fragment) {
+        int length = fragment.remaining();
+        if (inputLength + length > input.length) {
+            input = Arrays.copyOf(input, Math.max(input.length * 2, inputLength + length));
+        }
+        fragment.get(fragment.position(), input, inputLength, length);
+        inputLength += length;
+    }
+
+    private void handleFrame(int type, int flags, int streamId, int offset, int length,
+                             CapturedEvent source, Sink sink) throws Http2FormatException {
+        if (length > MAX_FRAME_LENGTH) {
+            throw new Http2FormatException("Frame too large: " + length);
+        }
+        if (headerStreamId != 0 && type != TYPE_CONTINUATION) {
+            throw new Http2FormatException("Expected CONTINUATION for stream " + headerStreamId);
+        }
+
+        switch (type) {
+            case TYPE_DATA: {
+                requireStream(streamId, type);
+                int padding = 0;
+                if ((flags & FLAG_PADDED) != 0) {
+                    padding = paddingLength(offset, length);
+                    offset++;
+                    length--;
+                }
+                Http2Message message = open.get(streamId);
+                if (message != null) {
+                    message.appendBody(input, offset, length - padding, maxBodySize);
+                    if ((flags & FLAG_END_STREAM) != 0) {
+                        open.remove(streamId);
+                        message.setComplete(true);
+                        sink.onMessage(message);
+                    }
+                }
+                break;
+            }
+            case TYPE_HEADERS: {
+                requireStream(streamId, type);
+                int padding = 0;
+                if ((flags & FLAG_PADDED) != 0) {
+                    padding = paddingLength(offset, length);
+                    offset++;
+                    length--;
+                }
+                if ((flags & FLAG_PRIORITY) != 0) {
+                    if (length < 5) {
+                        throw new Http2FormatException("HEADERS frame too short for priority");
+                    }
+                    offset += 5;
+                    length -= 5;
+                }
+                startHeaderBlock(streamId, (flags & FLAG_END_STREAM) != 0, false, source);
+                appendHeaderBlock(offset, length - padding, flags, sink);
+                break;
+            }
+            case TYPE_PUSH_PROMISE: {
+                requireStream(streamId, type);
+                int padding = 0;
+                if ((flags & FLAG_PADDED) != 0) {
+                    padding = paddingLength(offset, length);
+                    offset++;
+                    length--;
+                }
+                if (length < 4) {
+                    throw new Http2FormatException("PUSH_PROMISE frame too short");
+                }
+                startHeaderBlock(streamId, false, true, source);
+                appendHeaderBlock(offset + 4, length - 4 - padding, flags, sink);
+                break;
+            }
+            case TYPE_CONTINUATION: {
+                if (headerStreamId == 0 || streamId != headerStreamId) {
+                    throw new Http2FormatException("Unexpected CONTINUATION on stream " + streamId);
+                }
+                appendHeaderBlock(offset, length, flags, sink);
+                break;
+            }
+            case TYPE_RST_STREAM:
+                open.remove(streamId);
+                break;
+            default:
+                // SETTINGS, PING, GOAWAY, WINDOW_UPDATE, PRIORITY and extensions carry no message data
+                break;
+        }
+    }
+
+    private static void requireStream(int streamId, int type) throws Http2FormatException {
+        if (streamId == 0) {
+            throw new Http2FormatException("Frame type " + type + " on stream 0");
+        }
+    }
+
+    private int paddingLength(int offset, int length) throws Http2FormatException {
+        if (length < 1) {
+            throw new Http2FormatException("Padded frame without pad length");
+        }
+        int padding = input[offset] & 0xFF;
+        if (padding > length - 1) {
+            throw new Http2FormatException("Padding exceeds frame");
+        }
+        return padding;
+    }
+
+    private void startHeaderBlock(int streamId, boolean endStream, boolean pushPromise, CapturedEvent source) {
+        headerStreamId = streamId;
+        headerEndStream = endStream;
+        headerPushPromise = pushPromise;
+        headerSource = source;
+        headerBlockLength = 0;
+    }
+
+    private void appendHeaderBlock(int offset, int length, int flags, Sink sink) throws Http2FormatException {
+        if (length < 0) {
+            throw new Http2FormatException("Negative header block fragment");
+        }
+        if (headerBlockLength + length > MAX_HEADER_BLOCK) {
+            throw new Http2FormatException("Header block too large");
+        }
+        if (headerBlockLength + length > headerBlock.length) {
+            headerBlock = Arrays.copyOf(headerBlock, Math.max(headerBlock.length * 2, headerBlockLength + length));
+        }
+        System.arraycopy(input, offset, headerBlock, headerBlockLength, length);
+        headerBlockLength += length;
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            endHeaderBlock(sink);
+        }
+    }
+
+    private void endHeaderBlock(Sink sink) throws Http2FormatException {
+        int streamId = headerStreamId;
+        CapturedEvent source = headerSource;
+        headerStreamId = 0;
+        headerSource = null;
+
+        List<String> headers = new ArrayList<>();
+        hpack.decode(headerBlock, 0, headerBlockLength, headers);
+        if (headerPushPromise) {
+            // Decoded only to keep the HPACK table in step; the pushed stream is not followed
+            return;
+        }
+
+        Http2Message message = open.get(streamId);
+        if (message == null) {
+            message = new Http2Message(streamId, source, headers);
+            if (message.isInformational()) {
+                // 100 Continue and the like; the final response follows on the same stream
+                return;
+            }
+            if (!headerEndStream) {
+                if (open.size() >= maxOpenStreams) {
+                    streamsDropped++;
+                    return;
+                }
+                open.put(streamId, message);
+                return;
+            }
+        } else {
+            // Trailers
+            message.addTrailers(headers);
+            open.remove(streamId);
+        }
+        message.setComplete(true);
+        sink.onMessage(message);
+    }
+
+    /**
+     * Hand over all streams that have not ended, as incomplete messages.
+     */
+    void drain(Sink sink) {
+        List<Http2Message> pending = new ArrayList<>(open.values());
+        open.clear();
+        for (Http2Message message : pending) {
+            sink.onMessage(message);
+        }
+    }
+
+    int openStreams() {
+        return open.size();
+    }
+
+    long streamsDropped() {
+        return streamsDropped;
+    }
+}
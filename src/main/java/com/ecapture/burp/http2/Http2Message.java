@@ -0,0 +1,130 @@
+package com.ecapture.burp.http2;
+
+import com.ecapture.burp.event.CapturedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One HTTP/2 request or response put together from its HEADERS, CONTINUATION and DATA
+ * frames (and trailers, which are merged into the headers).
+ */
+public final class Http2Message {
+
+    private final int streamId;
+    private final CapturedEvent source;
+    private final List<String> headers;
+    private byte[] body = new byte[0];
+    private int bodyLength;
+    private boolean truncated;
+    private boolean complete;
+
+    Http2Message(int streamId, CapturedEvent source, List<String> headers) {
+        this.streamId = streamId;
+        this.source = source;
+        this.headers = headers;
+    }
+
+    /**
+     * Append DATA frame payload, keeping at most {@code maxBodySize} bytes.
+     */
+    void appendBody(byte[] data, int offset, int length, int maxBodySize) {
+        int room = maxBodySize - bodyLength;
+        if (length > room) {
+            length = Math.max(0, room);
+            truncated = true;
+        }
+        if (bodyLength + length > body.length) {
+            body = Arrays.copyOf(body, Math.max(bodyLength + length, Math.min(maxBodySize, body.length * 2)));
+        }
+        System.arraycopy(data, offset, body, bodyLength, length);
+        bodyLength += length;
+    }
+
+    void addTrailers(List<String> trailers) {
+        headers.addAll(trailers);
+    }
+
+    void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Event whose payload held the start of the message.
+     */
+    public CapturedEvent getSource() {
+        return source;
+    }
+
+    public boolean isRequest() {
+        return getHeader(":method") != null;
+    }
+
+    /**
+     * Whether the stream ended (END_STREAM) with the whole body kept.
+     */
+    public boolean isComplete() {
+        return complete && !truncated;
+    }
+
+    /**
+     * First value of a header (names are lowercase in HTTP/2), or null.
+     */
+    public String getHeader(String name) {
+        for (int i = 0; i < headers.size(); i += 2) {
+            if (headers.get(i).equals(name)) {
+                return headers.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether this is an interim (1xx) response, which precedes the final one.
+     */
+    boolean isInformational() {
+        String status = getHeader(":status");
+        return status != null && status.length() == 3 && status.charAt(0) == '1';
+    }
+
+    /**
+     * The message in the HTTP/1-style text form Burp also uses for HTTP/2: a request
+     * or status line with version "HTTP/2", the regular headers (with the authority as
+     * Host), a blank line and the body.
+     */
+    public byte[] render() {
+        StringBuilder head = new StringBuilder(256);
+        if (isRequest()) {
+            String method = getHeader(":method");
+            String authority = getHeader(":authority");
+            String path = getHeader(":path");
+            if (path == null) {
+                path = authority != null ? authority : "/"; // CONNECT
+            }
+            head.append(method).append(' ').append(path).append(" HTTP/2\r\n");
+            if (authority != null && getHeader("host") == null) {
+                head.append("host: ").append(authority).append("\r\n");
+            }
+        } else {
+            String status = getHeader(":status");
+            head.append("HTTP/2 ").append(status != null ? status : "000").append("\r\n");
+        }
+        for (int i = 0; i < headers.size(); i += 2) {
+            String name = headers.get(i);
+            if (!name.startsWith(":")) {
+                head.append(name).append(": ").append(headers.get(i + 1)).append("\r\n");
+            }
+        }
+        head.append("\r\n");
+
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        byte[] message = Arrays.copyOf(headBytes, headBytes.length + bodyLength);
+        System.arraycopy(body, 0, message, headBytes.length, bodyLength);
+        return message;
+    }
+}
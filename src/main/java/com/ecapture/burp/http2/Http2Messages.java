@@ -0,0 +1,78 @@
+package com.ecapture.burp.http2;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.http.HttpHead;
+import com.ecapture.burp.store.Payload;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands captured messages to Burp, requests as HTTP/2 requests when they were decoded
+ * from an HTTP/2 connection, so Repeater and the Site Map keep the protocol.
+ *
+ * Messages go over as {@link ByteArray}s of the stored bytes, never through a String,
+ * so binary bodies arrive byte for byte.
+ */
+public final class Http2Messages {
+
+    private Http2Messages() {
+    }
+
+    /**
+     * Payload bytes for Burp; heap payloads are handed over without an extra copy.
+     */
+    public static ByteArray toByteArray(Payload payload) {
+        return ByteArray.byteArray(payload.heapBytes());
+    }
+
+    /**
+     * Build the Burp response for a captured response event.
+     */
+    public static HttpResponse toHttpResponse(CapturedEvent response) {
+        return HttpResponse.httpResponse(toByteArray(response.getPayload()));
+    }
+
+    /**
+     * Build the Burp request for a captured request event.
+     */
+    public static HttpRequest toHttpRequest(HttpService service, CapturedEvent request) {
+        if (request.getStreamId() <= 0) {
+            return HttpRequest.httpRequest(service, toByteArray(request.getPayload()));
+        }
+
+        // Stored in HTTP/1-style text form (see Http2Message#render()); turn the request
+        // line and Host back into pseudo headers. render() wrote ISO-8859-1, as HPACK
+        // decoded it, so values are read back the same way to keep their bytes.
+        HttpHead head = request.readHead();
+        List<HttpHeader> headers = new ArrayList<>(head.getHeaderCount() + 4);
+        headers.add(HttpHeader.httpHeader(":method", head.getMethod()));
+        headers.add(HttpHeader.httpHeader(":scheme", service.secure() ? "https" : "http"));
+        int host = head.indexOfHeader("host");
+        if (host >= 0) {
+            headers.add(HttpHeader.httpHeader(":authority", head.getRawHeaderValue(host)));
+        }
+        headers.add(HttpHeader.httpHeader(":path", head.getRawTarget()));
+        for (int i = 0; i < head.getHeaderCount(); i++) {
+            String name = head.getHeaderName(i);
+            if (!name.equalsIgnoreCase("host")) {
+                headers.add(HttpHeader.httpHeader(name, head.getRawHeaderValue(i)));
+            }
+        }
+
+        // Only the body is copied out of the payload
+        Payload payload = request.getPayload();
+        int length = payload.length();
+        int bodyOffset = head.getBodyOffset() >= 0 ? Math.min(head.getBodyOffset(), length) : length;
+        ByteBuffer raw = payload.bufferFrom(bodyOffset);
+        byte[] body = new byte[raw.remaining()];
+        raw.get(body);
+        return HttpRequest.http2Request(service, headers, ByteArray.byteArray(body));
+    }
+}
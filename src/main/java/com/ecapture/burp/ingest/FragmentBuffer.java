@@ -0,0 +1,104 @@
+package com.ecapture.burp.ingest;
+
+import com.ecapture.burp.store.Payload;
+import com.ecapture.burp.store.PayloadStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bytes of a message still being reassembled, kept as the list of fragments that
+ * arrived (appending never copies earlier fragments again).
+ *
+ * The first {@code spillThreshold} bytes stay on the heap; later fragments are
+ * spilled into the {@link PayloadStore} arena and released once the message is done.
+ */
+final class FragmentBuffer {
+
+    private final PayloadStore spillStore;
+    private final int spillThreshold;
+
+    private final List<Payload> parts = new ArrayList<>();
+    private long size;
+    private long heapBytes;
+
+    FragmentBuffer(PayloadStore spillStore, int spillThreshold) {
+        this.spillStore = spillStore;
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Copy the buffer's remaining bytes. The buffer's position is not changed.
+     */
+    void append(ByteBuffer fragment) {
+        int length = fragment.remaining();
+        if (length == 0) {
+            return;
+        }
+        if (heapBytes + length <= spillThreshold) {
+            byte[] copy = new byte[length];
+            fragment.get(fragment.position(), copy);
+            parts.add(Payload.of(copy));
+            heapBytes += length;
+        } else {
+            parts.add(spillStore.storeRaw(fragment));
+        }
+        size += length;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long heapBytes() {
+        return heapBytes;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Views of the buffered fragments in order, followed by {@code tail} if it has bytes
+     * left: the whole message, without joining it. Valid until {@link #clear()}.
+     */
+    ByteBuffer[] gather(ByteBuffer tail) {
+        int count = parts.size();
+        ByteBuffer[] views = new ByteBuffer[tail != null && tail.hasRemaining() ? count + 1 : count];
+        for (int i = 0; i < count; i++) {
+            views[i] = parts.get(i).buffer();
+        }
+        if (views.length > count) {
+            views[count] = tail;
+        }
+        return views;
+    }
+
+    /**
+     * Copy all buffered bytes into {@code out}, starting at {@code offset}.
+     *
+     * @return the offset after the copied bytes
+     */
+    int copyTo(byte[] out, int offset) {
+        for (Payload part : parts) {
+            ByteBuffer bytes = part.buffer();
+            int length = bytes.remaining();
+            bytes.get(out, offset, length);
+            offset += length;
+        }
+        return offset;
+    }
+
+    /**
+     * Drop all bytes, returning spilled fragments to the store.
+     */
+    void clear() {
+        for (Payload part : parts) {
+            spillStore.release(part);
+        }
+        parts.clear();
+        size = 0;
+        heapBytes = 0;
+    }
+}
@@ -0,0 +1,604 @@
+package com.ecapture.burp.ingest;
+
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.http.HttpHead;
+import com.ecapture.burp.http.HttpMethodTrie;
+import com.ecapture.burp.store.PayloadStore;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming reassembly of HTTP/1.x messages from eCapture events.
+ *
+ * eCapture hands over data as it was read or written, so a large message arrives as
+ * several events of the same stream (UUID) and only the first one starts with the start
+ * line, while one event can also carry several pipelined messages. Each stream is run
+ * through a small parser that follows the message framing (Content-Length, chunked
+ * encoding, or the end of the connection for responses without either) and hands
+ * every complete message to the listener, as the fragments it arrived in.
+ *
+ * The {@link RetentionPolicy} decides how much of the body to keep as soon as the head
+ * is complete; body bytes past that are only run through the framing parser, never
+ * buffered, and reported to the listener as omitted.
+ *
+ * Fragments are only buffered while a message is incomplete; an event holding whole
+ * messages is split without copying. Per stream, at most {@code maxMessageSize} bytes
+ * are buffered (longer messages are delivered truncated) and bytes beyond
+ * {@code spillThreshold} are spilled into the payload arena.
+ *
+ * eCapture does not report connection close, so a stream that stays idle for
+ * {@code idleTimeoutMillis} is treated as closed: a close-delimited response is then
+ * complete, and anything else still buffered is delivered as incomplete.
+ *
+ * Data that is not HTTP/1.x (TLS records, upgraded connections, heads over the size
+ * limit) is never copied or stored; the listener only learns which event it came in.
+ *
+ * Not thread-safe: the WebSocket client calls it under its stream lock.
+ */
+public class Http1Reassembler {
+
+    /**
+     * Receives reassembled messages, on the thread calling the reassembler.
+     */
+    public interface Listener {
+        /**
+         * @param source  event the message started in; its metadata applies to the message
+         * @param message message bytes in consecutive parts (a single one for a message
+         *                that came in one event), only valid during the call; may have
+         *                been cut short (idle stream or size limit)
+         * @param omitted body bytes left out by the retention policy
+         */
+        void onMessage(CapturedEvent source, ByteBuffer[] message, int omitted);
+
+        /**
+         * An event (or the message it started) turned out not to be HTTP/1.x; its bytes are dropped.
+         */
+        void onPassthrough(CapturedEvent source);
+    }
+
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 3_000;
+
+    // Idle streams are looked for at most this often
+    private static final long SWEEP_INTERVAL_MILLIS = 1_000;
+
+    // Start line prefix handed to the method trie
+    private static final int START_LINE_PREFIX = 24;
+
+    // Longest chunk size accepted (15 hex digits cannot overflow a long, as in BodyDecoder)
+    private static final int MAX_CHUNK_SIZE_DIGITS = 15;
+
+    private static final int NEED_MORE = -1;
+    private static final int NOT_HTTP = -2;
+
+    private enum Phase {
+        IDLE,
+        HEAD,
+        BODY_LENGTH,
+        BODY_CHUNKED,
+        BODY_UNTIL_CLOSE
+    }
+
+    private enum ChunkState {
+        SIZE,
+        EXTENSION,
+        DATA,
+        DATA_END,
+        TRAILER
+    }
+
+    /**
+     * Parser state and buffered bytes of one stream.
+     */
+    private final class Stream {
+        final FragmentBuffer buffer = new FragmentBuffer(spillStore, spillThreshold);
+        CapturedEvent source;
+        Phase phase = Phase.IDLE;
+        long lastActivity;
+
+        // HEAD: bytes of the head so far, and whether the current line is still blank
+        int headLength;
+        boolean blankLine;
+
+        // BODY_LENGTH / BODY_CHUNKED
+        long remaining;
+        long bodyReceived;
+        ChunkState chunkState;
+        long chunkSize;
+        int chunkSizeDigits;
+        int lineLength;
+
+        // Body bytes the retention policy keeps, how many of them are still to come, and
+        // body bytes skipped past them
+        int bodyLimit;
+        long bodyKept;
+        long omitted;
+
+        // Set once the message outgrew the size limit; the rest of it is skipped
+        boolean truncated;
+
+        void begin(CapturedEvent event, long now) {
+            source = event;
+            phase = Phase.HEAD;
+            lastActivity = now;
+            headLength = 0;
+            blankLine = false;
+            remaining = 0;
+            bodyReceived = 0;
+            chunkSize = 0;
+            chunkSizeDigits = 0;
+            lineLength = 0;
+            bodyLimit = RetentionPolicy.KEEP_ALL;
+            bodyKept = Long.MAX_VALUE;
+            omitted = 0;
+            truncated = false;
+        }
+
+        void reset() {
+            bufferedBytes.addAndGet(-buffer.size());
+            buffer.clear();
+            source = null;
+            phase = Phase.IDLE;
+        }
+    }
+
+    private final Listener listener;
+    private final PayloadStore spillStore;
+    private final RetentionPolicy retentionPolicy;
+    private final int maxMessageSize;
+    private final int spillThreshold;
+    private final long idleTimeoutMillis;
+    private final HttpMethodTrie methods = HttpMethodTrie.getDefault();
+    private final byte[] startLine = new byte[START_LINE_PREFIX];
+
+    // Streams with a message in progress, by event UUID (one direction of a connection)
+    private final Map<String, Stream> streams = new HashMap<>();
+
+    // Parses events that start and end with whole messages; moved into the map when not
+    private Stream scratch;
+    private long lastSweep;
+
+    // Where the body starts in the range last fed (its end while the head is incomplete)
+    private int bodyStart;
+
+    // Stats
+    private final AtomicLong messagesReassembled = new AtomicLong();
+    private final AtomicLong messagesSplit = new AtomicLong();
+    private final AtomicLong incompleteMessages = new AtomicLong();
+    private final AtomicLong truncatedMessages = new AtomicLong();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private volatile int pendingStreams;
+
+    public Http1Reassembler(Listener listener, PayloadStore spillStore, RetentionPolicy retentionPolicy) {
+        this(listener, spillStore, retentionPolicy, DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_SPILL_THRESHOLD,
+                DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    public Http1Reassembler(Listener listener, PayloadStore spillStore, RetentionPolicy retentionPolicy,
+                            int maxMessageSize, int spillThreshold, long idleTimeoutMillis) {
+        this.listener = listener;
+        this.spillStore = spillStore;
+        this.retentionPolicy = retentionPolicy;
+        this.maxMessageSize = maxMessageSize;
+        this.spillThreshold = spillThreshold;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.scratch = new Stream();
+    }
+
+    /**
+     * Feed the payload of one event. Complete messages found in it (or completed by it)
+     * are delivered before this returns. The fragment's position is not changed.
+     */
+    public void accept(CapturedEvent event, ByteBuffer fragment) {
+        long now = System.currentTimeMillis();
+        String key = event.getUuid();
+        Stream stream = streams.get(key);
+        if (stream == null) {
+            stream = scratch;
+        }
+
+        int pos = fragment.position();
+        int end = fragment.limit();
+        while (pos < end) {
+            if (stream.phase == Phase.IDLE) {
+                if (!startsMessage(fragment, pos, end)) {
+                    // Not HTTP/1.x (TLS records, an upgraded connection); trailing bytes
+                    // after a message are dropped quietly
+                    if (pos == fragment.position()) {
+                        listener.onPassthrough(event);
+                    }
+                    break;
+                }
+                stream.begin(event, now);
+            } else if (pos == fragment.position() && endedWithoutBody(stream, fragment, pos, end)) {
+                // A new message starts where the previous one's body was expected
+                // (a response to HEAD, or a close-delimited response cut short)
+                finish(stream, null, 0, 0, stream.phase == Phase.BODY_UNTIL_CLOSE || stream.bodyReceived == 0);
+                continue;
+            }
+            stream.lastActivity = now;
+
+            int stop = feed(stream, fragment, pos, end);
+            if (stop == NOT_HTTP) {
+                // Head never ended or the chunk framing is broken; not a message after all
+                CapturedEvent source = stream.source;
+                boolean delivered = stream.truncated;
+                stream.reset();
+                if (!delivered) {
+                    listener.onPassthrough(source);
+                }
+                break;
+            }
+            if (stop == NEED_MORE) {
+                append(stream, fragment, pos, keptEnd(stream, end));
+                break;
+            }
+            finish(stream, fragment, pos, keptEnd(stream, stop), true);
+            pos = stop;
+            if (pos < end) {
+                messagesSplit.incrementAndGet();
+            }
+        }
+
+        if (stream.phase == Phase.IDLE) {
+            if (stream != scratch) {
+                streams.remove(key);
+            }
+        } else if (stream == scratch) {
+            streams.put(key, stream);
+            scratch = new Stream();
+        }
+        pendingStreams = streams.size();
+
+        if (now - lastSweep >= SWEEP_INTERVAL_MILLIS) {
+            flushIdle(now);
+        }
+    }
+
+    /**
+     * Treat streams without activity for the idle timeout as closed.
+     * Called on every event and heartbeat, so streams are flushed even when traffic stops.
+     */
+    public void flushIdle(long now) {
+        lastSweep = now;
+        Iterator<Stream> it = streams.values().iterator();
+        while (it.hasNext()) {
+            Stream stream = it.next();
+            if (now - stream.lastActivity >= idleTimeoutMillis) {
+                it.remove();
+                flush(stream);
+            }
+        }
+        pendingStreams = streams.size();
+    }
+
+    /**
+     * Treat all streams as closed (the WebSocket connection is gone).
+     */
+    public void flushAll() {
+        for (Stream stream : streams.values()) {
+            flush(stream);
+        }
+        streams.clear();
+        pendingStreams = 0;
+    }
+
+    /**
+     * Drop all buffered messages without delivering them (the captured traffic was cleared).
+     */
+    public void clear() {
+        for (Stream stream : streams.values()) {
+            stream.reset();
+        }
+        streams.clear();
+        pendingStreams = 0;
+    }
+
+    private void flush(Stream stream) {
+        if (stream.truncated || stream.buffer.isEmpty()) {
+            stream.reset();
+            return;
+        }
+        finish(stream, null, 0, 0, stream.phase == Phase.BODY_UNTIL_CLOSE);
+    }
+
+    /**
+     * Deliver the stream's message: the buffered bytes followed by {@code fragment[from, to)}.
+     */
+    private void finish(Stream stream, ByteBuffer fragment, int from, int to, boolean complete) {
+        if (stream.truncated) {
+            // The part that fit was delivered when the limit was hit
+            stream.reset();
+            return;
+        }
+        if (!complete) {
+            incompleteMessages.incrementAndGet();
+        }
+        int omitted = (int) Math.min(stream.omitted, Integer.MAX_VALUE - stream.buffer.size() - (to - from));
+        if (omitted > 0) {
+            retentionPolicy.countCut(stream.bodyLimit, stream.omitted);
+        }
+
+        ByteBuffer tail = to > from ? fragment.slice(from, to - from) : null;
+        if (stream.buffer.isEmpty()) {
+            if (tail != null) {
+                listener.onMessage(stream.source, new ByteBuffer[] {tail}, omitted);
+            }
+        } else {
+            // The fragments are handed over as they are; the store copies them one by one
+            messagesReassembled.incrementAndGet();
+            listener.onMessage(stream.source, stream.buffer.gather(tail), omitted);
+        }
+        stream.reset();
+    }
+
+    /**
+     * Buffer {@code fragment[from, to)} until the rest of the message arrives.
+     */
+    private void append(Stream stream, ByteBuffer fragment, int from, int to) {
+        if (stream.truncated) {
+            return;
+        }
+        int length = to - from;
+        if (stream.buffer.size() + length <= maxMessageSize) {
+            stream.buffer.append(fragment.slice(from, length));
+            bufferedBytes.addAndGet(length);
+            return;
+        }
+
+        // Deliver what fits, then skip the rest of the message
+        Phase phase = stream.phase;
+        int fits = (int) (maxMessageSize - stream.buffer.size());
+        truncatedMessages.incrementAndGet();
+        finish(stream, fragment, from, from + fits, false);
+        stream.phase = phase;
+        stream.truncated = true;
+    }
+
+    /**
+     * End of the part of the range last fed that is kept: the head, and the body up to the
+     * retention limit. Body bytes past the limit up to {@code to} are counted as omitted.
+     */
+    private int keptEnd(Stream stream, int to) {
+        long body = to - bodyStart;
+        long kept = Math.min(body, stream.bodyKept);
+        stream.bodyKept -= kept;
+        stream.omitted += body - kept;
+        return bodyStart + (int) kept;
+    }
+
+    /**
+     * Whether the stream was waiting for a body that cannot come, because the
+     * fragment starts a new message.
+     */
+    private boolean endedWithoutBody(Stream stream, ByteBuffer fragment, int pos, int end) {
+        boolean waitingForBody = (stream.phase == Phase.BODY_LENGTH && stream.bodyReceived == 0)
+                || stream.phase == Phase.BODY_UNTIL_CLOSE;
+        return waitingForBody && startsMessage(fragment, pos, end);
+    }
+
+    /**
+     * Run the parser over {@code fragment[from, end)}.
+     *
+     * @return index just after the end of the message, {@link #NEED_MORE} if the message
+     *         continues past the fragment, or {@link #NOT_HTTP} if the head is too long or
+     *         a chunk size is malformed
+     */
+    private int feed(Stream stream, ByteBuffer fragment, int from, int end) {
+        int i = from;
+        if (stream.phase == Phase.HEAD) {
+            i = scanHead(stream, fragment, from, end);
+            if (i < 0) {
+                bodyStart = end;
+                return i;
+            }
+            startBody(stream, fragment, from, i, end);
+        }
+        bodyStart = i;
+        if (stream.phase == Phase.IDLE) {
+            return i;
+        }
+
+        switch (stream.phase) {
+            case BODY_LENGTH: {
+                long n = Math.min(stream.remaining, end - i);
+                stream.remaining -= n;
+                stream.bodyReceived += n;
+                return stream.remaining == 0 ? i + (int) n : NEED_MORE;
+            }
+            case BODY_CHUNKED:
+                return scanChunks(stream, fragment, i, end);
+            case BODY_UNTIL_CLOSE:
+            default:
+                stream.bodyReceived += end - i;
+                return NEED_MORE;
+        }
+    }
+
+    /**
+     * @return index just after the blank line ending the head, or NEED_MORE / NOT_HTTP
+     */
+    private int scanHead(Stream stream, ByteBuffer fragment, int from, int end) {
+        for (int i = from; i < end; i++) {
+            byte b = fragment.get(i);
+            if (++stream.headLength > HttpHead.MAX_HEAD_SIZE) {
+                return NOT_HTTP;
+            }
+            if (b == '\n') {
+                if (stream.blankLine) {
+                    return i + 1;
+                }
+                stream.blankLine = true;
+            } else if (b != '\r') {
+                stream.blankLine = false;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * Parse the complete head, ask the retention policy how much of the body to keep, and
+     * choose how the body is framed (RFC 9112, section 6.3). The head is the buffered bytes
+     * plus {@code fragment[from, headEnd)}; the body starts at {@code headEnd}.
+     */
+    private void startBody(Stream stream, ByteBuffer fragment, int from, int headEnd, int end) {
+        HttpHead head;
+        if (stream.buffer.isEmpty()) {
+            head = HttpHead.parse(fragment.slice(from, headEnd - from));
+        } else {
+            byte[] bytes = new byte[(int) stream.buffer.size() + headEnd - from];
+            int offset = stream.buffer.copyTo(bytes, 0);
+            fragment.get(from, bytes, offset, headEnd - from);
+            head = HttpHead.parse(bytes);
+        }
+        stream.bodyLimit = retentionPolicy.bodyLimit(stream.source, head, fragment.slice(headEnd, end - headEnd));
+        stream.bodyKept = stream.bodyLimit == RetentionPolicy.KEEP_ALL ? Long.MAX_VALUE : stream.bodyLimit;
+
+        boolean response = head.getKind() == HttpHead.Kind.RESPONSE;
+        int status = head.getStatusCode();
+        if (response && (status < 200 || status == 204 || status == 304)) {
+            stream.phase = Phase.IDLE;
+            return;
+        }
+
+        String transferEncoding = head.getHeader("Transfer-Encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            stream.phase = Phase.BODY_CHUNKED;
+            stream.chunkState = ChunkState.SIZE;
+        } else if (head.getContentLength() > 0) {
+            stream.phase = Phase.BODY_LENGTH;
+            stream.remaining = head.getContentLength();
+        } else if (head.getContentLength() < 0 && response) {
+            stream.phase = Phase.BODY_UNTIL_CLOSE;
+        } else {
+            stream.phase = Phase.IDLE;
+        }
+    }
+
+    /**
+     * @return index just after the last chunk's trailer section, NEED_MORE, or NOT_HTTP
+     *         if a chunk size has more than {@link #MAX_CHUNK_SIZE_DIGITS} digits
+     */
+    private int scanChunks(Stream stream, ByteBuffer fragment, int from, int end) {
+        int i = from;
+        while (i < end) {
+            switch (stream.chunkState) {
+                case DATA: {
+                    long n = Math.min(stream.remaining, end - i);
+                    i += (int) n;
+                    stream.remaining -= n;
+                    stream.bodyReceived += n;
+                    if (stream.remaining == 0) {
+                        stream.chunkState = ChunkState.DATA_END;
+                    }
+                    continue;
+                }
+                case DATA_END:
+                    // CRLF after the chunk data
+                    if (fragment.get(i++) == '\n') {
+                        stream.chunkState = ChunkState.SIZE;
+                        stream.chunkSize = 0;
+                        stream.chunkSizeDigits = 0;
+                    }
+                    continue;
+                case TRAILER: {
+                    byte b = fragment.get(i++);
+                    if (b == '\n') {
+                        if (stream.lineLength == 0) {
+                            return i;
+                        }
+                        stream.lineLength = 0;
+                    } else if (b != '\r') {
+                        stream.lineLength++;
+                    }
+                    continue;
+                }
+                default: {
+                    // SIZE or EXTENSION: hex size, then optional ";ext" up to the LF
+                    byte b = fragment.get(i++);
+                    int digit = Character.digit(b, 16);
+                    stream.bodyReceived++;
+                    if (stream.chunkState == ChunkState.SIZE && digit >= 0) {
+                        if (++stream.chunkSizeDigits > MAX_CHUNK_SIZE_DIGITS) {
+                            return NOT_HTTP;
+                        }
+                        stream.chunkSize = (stream.chunkSize << 4) | digit;
+                    } else if (b == '\n') {
+                        if (stream.chunkSize == 0) {
+                            stream.chunkState = ChunkState.TRAILER;
+                            stream.lineLength = 0;
+                        } else {
+                            stream.chunkState = ChunkState.DATA;
+                            stream.remaining = stream.chunkSize;
+                        }
+                    } else {
+                        stream.chunkState = ChunkState.EXTENSION;
+                    }
+                }
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * Whether {@code fragment[pos, end)} starts with an HTTP/1.x request or status line.
+     */
+    private boolean startsMessage(ByteBuffer fragment, int pos, int end) {
+        int length = Math.min(end - pos, START_LINE_PREFIX);
+        fragment.get(pos, startLine, 0, length);
+        if (length >= 7 && startLine[0] == 'H' && startLine[1] == 'T' && startLine[2] == 'T'
+                && startLine[3] == 'P' && startLine[4] == '/' && startLine[5] == '1' && startLine[6] == '.') {
+            return true;
+        }
+        return methods.match(startLine, 0, length) >= 0;
+    }
+
+    // Getters for stats
+    /**
+     * Messages put together from more than one event.
+     */
+    public long getMessagesReassembled() {
+        return messagesReassembled.get();
+    }
+
+    /**
+     * Events that held more than one message (pipelining).
+     */
+    public long getMessagesSplit() {
+        return messagesSplit.get();
+    }
+
+    /**
+     * Messages delivered before their end was seen (idle stream, or over the size limit).
+     */
+    public long getIncompleteMessages() {
+        return incompleteMessages.get();
+    }
+
+    /**
+     * Messages cut at the size limit.
+     */
+    public long getTruncatedMessages() {
+        return truncatedMessages.get();
+    }
+
+    /**
+     * Bytes currently buffered for incomplete messages.
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * Streams currently holding an incomplete message.
+     */
+    public int getPendingStreams() {
+        return pendingStreams;
+    }
+}
@@ -0,0 +1,283 @@
+package com.ecapture.burp.ingest;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.logging.Logging;
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.event.EventManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples the WebSocket read thread from event processing.
+ * The read thread only decodes and publishes into preallocated ring buffers;
+ * consumer threads drain them into the EventManager (pairing, Site Map, UI listeners).
+ *
+ * There is one ring and one consumer thread per EventManager pairing lane. In parallel
+ * mode each event is published to the ring of the lane owning its connection, so
+ * connections pair concurrently while each connection stays in order. In single-lane
+ * mode every event goes through ring 0, giving one deterministic processing order.
+ *
+ * Parallel mode is the default. Events of one connection are still handled in capture
+ * order, but events of different connections are not: pairs, Site Map entries and
+ * listener calls from different connections can come out in a different order than
+ * the traffic was captured, and vary between runs. Single-lane mode (one consumer)
+ * keeps the capture order across connections.
+ */
+public class IngestPipeline {
+
+    /**
+     * What the producer does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        BLOCK("Block"),
+        DROP("Drop"),
+        SAMPLE("Sample");
+
+        private final String displayName;
+
+        OverflowPolicy(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // With SAMPLE, one in this many events is kept (blocking) while the buffer is full
+    public static final int DEFAULT_SAMPLE_RATE = 10;
+
+    // Idle consumer backoff: spin, then yield, then park
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    /**
+     * A ring buffer with its own consumer thread.
+     */
+    private final class Lane {
+        final RingBuffer<CapturedEvent> ringBuffer;
+        final Thread consumer;
+
+        // Written by the producer / the consumer respectively
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+
+        Lane(int index, int capacity) {
+            this.ringBuffer = new RingBuffer<>(capacity);
+            this.consumer = new Thread(this::consumeLoop, "eCapture-Ingest-" + index);
+            this.consumer.setDaemon(true);
+        }
+
+        boolean offer(CapturedEvent event) {
+            if (ringBuffer.offer(event)) {
+                published.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        boolean isDrained() {
+            return processed.get() == published.get();
+        }
+
+        private void consumeLoop() {
+            int idle = 0;
+            while (running) {
+                CapturedEvent event = ringBuffer.poll();
+                if (event == null) {
+                    idle = backoff(idle);
+                    continue;
+                }
+                idle = 0;
+
+                try {
+                    eventManager.processEvent(event);
+                } catch (Exception e) {
+                    logging.logToError("Error processing event: " + e.getMessage());
+                }
+                processed.incrementAndGet();
+            }
+        }
+    }
+
+    private final Logging logging;
+    private final EventManager eventManager;
+    private final Lane[] lanes;
+
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile boolean running;
+    private final int sampleRate;
+    private long sampleCounter;
+
+    // Requested by the UI, applied by the producer once in-flight events are drained
+    private volatile boolean parallelRequested;
+    private volatile boolean parallel;
+
+    // Stats
+    private final AtomicLong droppedCount;
+
+    /**
+     * Pipeline in parallel mode (see the class comment for what that means for ordering).
+     */
+    public IngestPipeline(MontoyaApi api, EventManager eventManager) {
+        this(api, eventManager, DEFAULT_CAPACITY, true, OverflowPolicy.BLOCK);
+    }
+
+    public IngestPipeline(MontoyaApi api, EventManager eventManager, int capacity,
+                          boolean parallel, OverflowPolicy overflowPolicy) {
+        this.logging = api.logging();
+        this.eventManager = eventManager;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = DEFAULT_SAMPLE_RATE;
+        this.droppedCount = new AtomicLong(0);
+        this.parallel = parallel;
+        this.parallelRequested = parallel;
+        this.running = true;
+
+        this.lanes = new Lane[eventManager.getLaneCount()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, capacity);
+        }
+        for (Lane lane : lanes) {
+            lane.consumer.start();
+        }
+    }
+
+    /**
+     * Publish an event from the WebSocket read thread.
+     * Never processes the event itself; applies the overflow policy when full.
+     */
+    public void publish(CapturedEvent event) {
+        if (parallelRequested != parallel) {
+            switchMode();
+        }
+
+        Lane lane = parallel ? lanes[eventManager.laneIndex(event.getUuid())] : lanes[0];
+        if (lane.offer(event)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case DROP:
+                drop(event);
+                return;
+
+            case SAMPLE:
+                if (++sampleCounter % sampleRate != 0) {
+                    drop(event);
+                    return;
+                }
+                blockingPublish(lane, event);
+                return;
+
+            case BLOCK:
+            default:
+                blockingPublish(lane, event);
+        }
+    }
+
+    private void blockingPublish(Lane lane, CapturedEvent event) {
+        int idle = 0;
+        while (running) {
+            if (lane.offer(event)) {
+                return;
+            }
+            idle = backoff(idle);
+        }
+        // Shutting down, nobody will consume it
+        drop(event);
+    }
+
+    private void drop(CapturedEvent event) {
+        droppedCount.incrementAndGet();
+        // Give back its payload (and its share of a deduplicated body)
+        eventManager.getPayloadStore().release(event.getPayload());
+    }
+
+    /**
+     * Switch between single-lane and parallel mode on the producer thread.
+     * Waits until every published event has been processed, so no connection
+     * can have events in flight on two rings at once.
+     */
+    private void switchMode() {
+        int idle = 0;
+        for (Lane lane : lanes) {
+            while (running && !lane.isDrained()) {
+                idle = backoff(idle);
+            }
+        }
+        parallel = parallelRequested;
+    }
+
+    private static int backoff(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (idle < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            long parkNanos = Math.min(MAX_PARK_NANOS, 1000L << Math.min(idle - YIELD_TRIES, 10));
+            LockSupport.parkNanos(parkNanos);
+        }
+        return idle + 1;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public boolean isParallel() {
+        return parallelRequested;
+    }
+
+    /**
+     * Request parallel (one consumer per lane) or single-lane deterministic processing.
+     * Takes effect with the next published event.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallelRequested = parallel;
+    }
+
+    /**
+     * Reset the drop counters (used when the UI is cleared).
+     */
+    public void resetCounters() {
+        droppedCount.set(0);
+    }
+
+    /**
+     * Stop the consumer threads. Events still in the buffers are discarded.
+     */
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.consumer);
+        }
+    }
+
+    // Getters for stats
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.ringBuffer.size();
+        }
+        return depth;
+    }
+
+    public int getCapacity() {
+        int activeLanes = parallel ? lanes.length : 1;
+        return activeLanes * lanes[0].ringBuffer.capacity();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
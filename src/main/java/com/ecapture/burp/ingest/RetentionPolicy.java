@@ -0,0 +1,374 @@
+package com.ecapture.burp.ingest;
+
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.http.HttpHead;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how much of each message is kept, before it is copied into the payload store.
+ *
+ * The head is always kept. Bodies of images, video, audio and fonts (by Content-Type or
+ * by their leading magic bytes) are dropped, and other bodies are cut at the maximum
+ * body size. Per-host overrides replace both rules for a host: keep everything, keep
+ * headers only, or cut at another size. Responses carry no Host header, so the host of
+ * the last request seen on the connection is used for them.
+ *
+ * Settings may be changed from any thread; {@link #retainedLength} and {@link #bodyLimit}
+ * are called from the WebSocket read thread only.
+ */
+public class RetentionPolicy {
+
+    public static final int DEFAULT_MAX_BODY_SIZE = 8 * 1024 * 1024;
+
+    // Override value meaning "keep the whole body"
+    public static final int KEEP_ALL = -1;
+
+    // Connections whose request host is remembered for their responses
+    private static final int MAX_TRACKED_CONNECTIONS = 4096;
+
+    // Body bytes looked at for magic numbers
+    private static final int SNIFF_LENGTH = 16;
+
+    private volatile int maxBodySize;
+    private volatile boolean mediaHeadersOnly;
+
+    // Host (or ".suffix" for a domain and its subdomains) to body bytes kept, or KEEP_ALL
+    private volatile Map<String, Integer> hostOverrides = Collections.emptyMap();
+
+    // Connection ID to the Host of its last request; read thread only
+    private final Map<String, String> connectionHosts =
+            new LinkedHashMap<String, String>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_TRACKED_CONNECTIONS;
+                }
+            };
+
+    private final byte[] sniffed = new byte[SNIFF_LENGTH];
+
+    // Stats
+    private final AtomicLong truncatedBodies = new AtomicLong();
+    private final AtomicLong headerOnlyBodies = new AtomicLong();
+    private final AtomicLong bytesDropped = new AtomicLong();
+
+    public RetentionPolicy() {
+        this(DEFAULT_MAX_BODY_SIZE, true);
+    }
+
+    public RetentionPolicy(int maxBodySize, boolean mediaHeadersOnly) {
+        this.maxBodySize = maxBodySize;
+        this.mediaHeadersOnly = mediaHeadersOnly;
+    }
+
+    /**
+     * Number of leading bytes of {@code message} to keep: all of them, or the head and
+     * the part of the body the policy allows. Messages that are not HTTP count as body
+     * without a head. Used for messages that arrive whole (HTTP/2); the HTTP/1.x
+     * reassembler asks {@link #bodyLimit} as soon as a head is complete instead.
+     */
+    public int retainedLength(CapturedEvent source, ByteBuffer message) {
+        int length = message.remaining();
+        HttpHead head = HttpHead.parse(message);
+
+        int bodyOffset;
+        if (head.getKind() == HttpHead.Kind.NONE) {
+            bodyOffset = 0;
+        } else if (!head.isHeadComplete()) {
+            hostOf(source, head);
+            return length; // Cut off inside the head
+        } else {
+            bodyOffset = Math.min(head.getBodyOffset(), length);
+        }
+        int bodyLength = length - bodyOffset;
+        int limit = bodyLimit(source, head, message.slice(message.position() + bodyOffset, bodyLength));
+        if (limit == KEEP_ALL || bodyLength <= limit) {
+            return length;
+        }
+        countCut(limit, bodyLength - limit);
+        return bodyOffset + limit;
+    }
+
+    /**
+     * Body bytes to keep for a message with this head, or {@link #KEEP_ALL}. Looked up
+     * even for messages without a body, so requests leave their host for the responses.
+     *
+     * @param bodyStart as much of the body as is at hand, only looked at for magic bytes;
+     *                  a media body without a specific type whose first bytes are not at
+     *                  hand is kept up to the maximum size
+     */
+    public int bodyLimit(CapturedEvent source, HttpHead head, ByteBuffer bodyStart) {
+        String host = hostOf(source, head);
+        int limit = limitFor(host, source);
+        if (limit != Integer.MIN_VALUE) {
+            return limit;
+        }
+        // No override: media bodies are dropped, others cut at the maximum size
+        return mediaHeadersOnly && head.getKind() != HttpHead.Kind.NONE
+                && isMedia(head, bodyStart) ? 0 : maxBodySize;
+    }
+
+    /**
+     * Count a body cut at {@code limit} bytes, {@code dropped} bytes short.
+     */
+    void countCut(int limit, long dropped) {
+        if (limit == 0) {
+            headerOnlyBodies.incrementAndGet();
+        } else {
+            truncatedBodies.incrementAndGet();
+        }
+        bytesDropped.addAndGet(dropped);
+    }
+
+    /**
+     * Host the message belongs to, remembering request hosts for the connection's responses.
+     */
+    private String hostOf(CapturedEvent source, HttpHead head) {
+        String host = head.getHost();
+        if (host != null) {
+            host = stripPort(host).toLowerCase(Locale.ROOT);
+            connectionHosts.put(source.getConnectionId(), host);
+            return host;
+        }
+        return connectionHosts.get(source.getConnectionId());
+    }
+
+    /**
+     * Override for the host or either address of the event, or Integer.MIN_VALUE if none.
+     */
+    private int limitFor(String host, CapturedEvent source) {
+        Map<String, Integer> overrides = hostOverrides;
+        if (overrides.isEmpty()) {
+            return Integer.MIN_VALUE;
+        }
+        if (host != null) {
+            Integer limit = overrides.get(host);
+            // ".example.com" matches example.com and its subdomains
+            if (limit == null) {
+                limit = overrides.get("." + host);
+            }
+            for (int dot = host.indexOf('.'); limit == null && dot >= 0; dot = host.indexOf('.', dot + 1)) {
+                limit = overrides.get(host.substring(dot));
+            }
+            if (limit != null) {
+                return limit;
+            }
+        }
+        Integer limit = overrides.get(source.getDstIp());
+        if (limit == null) {
+            limit = overrides.get(source.getSrcIp());
+        }
+        return limit != null ? limit : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Whether the body is an image, video, audio or font, by Content-Type or, for bodies
+     * without a specific type, by magic bytes.
+     */
+    private boolean isMedia(HttpHead head, ByteBuffer body) {
+        String contentType = head.getHeader("content-type");
+        if (contentType != null) {
+            String type = contentType.trim().toLowerCase(Locale.ROOT);
+            if (type.startsWith("image/")) {
+                return !type.startsWith("image/svg"); // SVG is XML text
+            }
+            if (type.startsWith("video/") || type.startsWith("audio/") || type.startsWith("font/")
+                    || type.startsWith("application/font") || type.startsWith("application/x-font")
+                    || type.startsWith("application/vnd.ms-fontobject")) {
+                return true;
+            }
+            // Typed bodies are taken at their word (gRPC frames can look like an icon header)
+            if (!type.isEmpty() && !type.startsWith("application/octet-stream")
+                    && !type.startsWith("binary/octet-stream")) {
+                return false;
+            }
+        }
+
+        // Compressed bodies cannot be sniffed
+        String contentEncoding = head.getHeader("content-encoding");
+        if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+            return false;
+        }
+        int start = body.position();
+        int end = body.limit();
+        String transferEncoding = head.getHeader("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            // Skip the first chunk-size line
+            while (start < end && body.get(start) != '\n') {
+                start++;
+            }
+            start++;
+        }
+        int n = Math.min(SNIFF_LENGTH, end - start);
+        if (n < 4) {
+            return false;
+        }
+        body.get(start, sniffed, 0, n);
+        return hasMediaMagic(sniffed, n);
+    }
+
+    static boolean hasMediaMagic(byte[] b, int n) {
+        // Images
+        if (startsWith(b, n, 0x89, 'P', 'N', 'G')
+                || startsWith(b, n, 0xFF, 0xD8, 0xFF)
+                || startsWith(b, n, 'G', 'I', 'F', '8')
+                || startsWith(b, n, 0x00, 0x00, 0x01, 0x00)
+                || (startsWith(b, n, 'R', 'I', 'F', 'F') && n >= 12
+                        && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P')) {
+            return true;
+        }
+        // Video and audio: ISO base media (MP4, MOV, AVIF, HEIC), Matroska/WebM, Ogg, MP3, FLAC
+        if ((n >= 8 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p')
+                || startsWith(b, n, 0x1A, 0x45, 0xDF, 0xA3)
+                || startsWith(b, n, 'O', 'g', 'g', 'S')
+                || startsWith(b, n, 'I', 'D', '3')
+                || startsWith(b, n, 'f', 'L', 'a', 'C')) {
+            return true;
+        }
+        // Fonts: WOFF, WOFF2, OpenType, TrueType
+        return startsWith(b, n, 'w', 'O', 'F', 'F')
+                || startsWith(b, n, 'w', 'O', 'F', '2')
+                || startsWith(b, n, 'O', 'T', 'T', 'O')
+                || startsWith(b, n, 0x00, 0x01, 0x00, 0x00);
+    }
+
+    private static boolean startsWith(byte[] b, int n, int... magic) {
+        if (n < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((b[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripPort(String host) {
+        if (host.startsWith("[")) {
+            // IPv6 literal, with or without a port
+            int close = host.indexOf(']');
+            return close > 0 ? host.substring(0, close + 1) : host;
+        }
+        int colon = host.indexOf(':');
+        return colon >= 0 && colon == host.lastIndexOf(':') ? host.substring(0, colon) : host;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public boolean isMediaHeadersOnly() {
+        return mediaHeadersOnly;
+    }
+
+    public void setMediaHeadersOnly(boolean mediaHeadersOnly) {
+        this.mediaHeadersOnly = mediaHeadersOnly;
+    }
+
+    /**
+     * Per-host overrides as text, see {@link #setHostOverrides(String)}.
+     */
+    public String getHostOverrides() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : hostOverrides.entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            int limit = entry.getValue();
+            text.append(entry.getKey()).append('=')
+                    .append(limit == KEEP_ALL ? "all" : limit == 0 ? "headers" : Integer.toString(limit));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Set per-host overrides from text like
+     * {@code "api.example.com=all, .cdn.example.com=headers, 10.0.0.5=65536"}: a host, a
+     * domain with its subdomains (leading dot), or an IP address, and either "all",
+     * "headers", or a body size in bytes (with an optional k or m suffix).
+     *
+     * @throws IllegalArgumentException if an entry cannot be parsed; the overrides are then unchanged
+     */
+    public void setHostOverrides(String text) {
+        Map<String, Integer> overrides = new LinkedHashMap<>();
+        for (String entry : text.split("[,;\\s]+")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int eq = entry.indexOf('=');
+            if (eq <= 0 || eq == entry.length() - 1) {
+                throw new IllegalArgumentException("Expected host=all|headers|size: " + entry);
+            }
+            String host = entry.substring(0, eq).toLowerCase(Locale.ROOT);
+            if (host.startsWith("*.")) {
+                host = host.substring(1);
+            }
+            overrides.put(host, parseLimit(entry.substring(eq + 1).toLowerCase(Locale.ROOT)));
+        }
+        hostOverrides = overrides.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(overrides);
+    }
+
+    private static int parseLimit(String value) {
+        switch (value) {
+            case "all":
+                return KEEP_ALL;
+            case "headers":
+                return 0;
+            default:
+                long scale = 1;
+                if (value.endsWith("k")) {
+                    scale = 1024;
+                } else if (value.endsWith("m")) {
+                    scale = 1024 * 1024;
+                }
+                String digits = scale == 1 ? value : value.substring(0, value.length() - 1);
+                try {
+                    long limit = Long.parseLong(digits) * scale;
+                    if (limit < 0 || limit > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Size out of range: " + value);
+                    }
+                    return (int) limit;
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not all, headers, or a size: " + value);
+                }
+        }
+    }
+
+    public void resetCounters() {
+        truncatedBodies.set(0);
+        headerOnlyBodies.set(0);
+        bytesDropped.set(0);
+    }
+
+    // Getters for stats
+    /**
+     * Bodies cut at the maximum size (or a host's size).
+     */
+    public long getTruncatedBodies() {
+        return truncatedBodies.get();
+    }
+
+    /**
+     * Bodies dropped entirely (media, or hosts set to headers only).
+     */
+    public long getHeaderOnlyBodies() {
+        return headerOnlyBodies.get();
+    }
+
+    /**
+     * Body bytes not kept.
+     */
+    public long getBytesDropped() {
+        return bytesDropped.get();
+    }
+}
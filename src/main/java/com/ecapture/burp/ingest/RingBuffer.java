@@ -0,0 +1,107 @@
+package com.ecapture.burp.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated, bounded ring buffer with a single producer and any number of consumers.
+ *
+ * Every slot carries its own sequence number (disruptor style), so the producer and
+ * the consumers never share a lock: the producer only writes a slot once the previous
+ * lap has been consumed, and consumers claim slots with a CAS on the shared read cursor.
+ * Nothing is allocated after construction.
+ */
+public final class RingBuffer<E> {
+
+    private final Object[] entries;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // Next sequence to write (single producer) and next sequence to claim (consumers)
+    private volatile long producerCursor;
+    private final AtomicLong consumerCursor;
+
+    public RingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.entries = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.producerCursor = 0;
+        this.consumerCursor = new AtomicLong(0);
+
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publish an entry without waiting.
+     * Must only be called from the single producer thread.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(E entry) {
+        long sequence = producerCursor;
+        int index = (int) (sequence & mask);
+
+        // Slot is free once the consumer of the previous lap has released it
+        if (sequences.get(index) != sequence) {
+            return false;
+        }
+
+        entries[index] = entry;
+        sequences.set(index, sequence + 1);
+        producerCursor = sequence + 1;
+        return true;
+    }
+
+    /**
+     * Claim the next published entry without waiting.
+     * Safe to call from any number of consumer threads.
+     *
+     * @return the entry, or null if nothing has been published
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        while (true) {
+            long sequence = consumerCursor.get();
+            int index = (int) (sequence & mask);
+            long slotSequence = sequences.get(index);
+
+            if (slotSequence == sequence + 1) {
+                if (consumerCursor.compareAndSet(sequence, sequence + 1)) {
+                    E entry = (E) entries[index];
+                    entries[index] = null;
+                    // Hand the slot back to the producer for the next lap
+                    sequences.set(index, sequence + entries.length);
+                    return entry;
+                }
+            } else if (slotSequence < sequence + 1) {
+                // Not yet published
+                return null;
+            }
+            // Another consumer claimed this sequence first, retry with the new cursor
+        }
+    }
+
+    /**
+     * Number of published entries not yet claimed by a consumer.
+     */
+    public int size() {
+        long size = producerCursor - consumerCursor.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, entries.length);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+}
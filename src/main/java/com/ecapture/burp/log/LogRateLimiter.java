@@ -0,0 +1,57 @@
+package com.ecapture.burp.log;
+
+/**
+ * Token bucket limiting how many runtime log lines are forwarded to Burp's Output.
+ * Lines over the limit are only counted, so the caller can report how many were held back.
+ */
+public class LogRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private long suppressed;
+
+    /**
+     * @param linesPerSecond sustained rate
+     * @param burst          lines allowed at once after a quiet period
+     */
+    public LogRateLimiter(int linesPerSecond, int burst) {
+        this.permitsPerNano = linesPerSecond / 1_000_000_000.0;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take a permit for one line, or count the line as suppressed.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        suppressed++;
+        return false;
+    }
+
+    /**
+     * Lines suppressed since the last call; resets the count.
+     */
+    public synchronized long takeSuppressed() {
+        long count = suppressed;
+        suppressed = 0;
+        return count;
+    }
+
+    public synchronized void reset() {
+        tokens = burst;
+        suppressed = 0;
+        lastRefillNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,118 @@
+package com.ecapture.burp.log;
+
+import java.util.Locale;
+
+/**
+ * One runtime log line from eCapture, with its parsed severity.
+ * Consecutive identical lines are collapsed into one entry with a repeat count.
+ */
+public class RuntimeLogEntry {
+
+    /**
+     * Log severity, parsed from the zerolog level eCapture prints (e.g. "INF", "level=warn").
+     */
+    public enum Severity {
+        TRACE("TRC"),
+        DEBUG("DBG"),
+        INFO("INF"),
+        WARN("WRN"),
+        ERROR("ERR"),
+        FATAL("FTL");
+
+        private final String shortName;
+
+        Severity(String shortName) {
+            this.shortName = shortName;
+        }
+
+        public String getShortName() {
+            return shortName;
+        }
+
+        /**
+         * Parse a level token ("INF", "info", "warning", ...), or null if it is not one.
+         */
+        public static Severity fromToken(String token) {
+            switch (token.toLowerCase(Locale.ROOT)) {
+                case "trc":
+                case "trace":
+                    return TRACE;
+                case "dbg":
+                case "debug":
+                    return DEBUG;
+                case "inf":
+                case "info":
+                    return INFO;
+                case "wrn":
+                case "warn":
+                case "warning":
+                    return WARN;
+                case "err":
+                case "error":
+                    return ERROR;
+                case "ftl":
+                case "fatal":
+                case "pnc":
+                case "panic":
+                    return FATAL;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Severity severity;
+    private final String message;
+
+    // Updated when identical lines follow this one
+    private volatile int repeatCount;
+    private volatile long lastTimestamp;
+
+    public RuntimeLogEntry(long sequence, long timestamp, Severity severity, String message) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.severity = severity;
+        this.message = message;
+        this.repeatCount = 1;
+        this.lastTimestamp = timestamp;
+    }
+
+    /**
+     * Position of this entry in the store since the last clear (0 = first entry).
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getRepeatCount() {
+        return repeatCount;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    void repeat(long timestamp) {
+        this.lastTimestamp = timestamp;
+        this.repeatCount++;
+    }
+
+    @Override
+    public String toString() {
+        return severity.getShortName() + " " + message + (repeatCount > 1 ? " (x" + repeatCount + ")" : "");
+    }
+}
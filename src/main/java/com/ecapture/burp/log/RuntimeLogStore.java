@@ -0,0 +1,157 @@
+package com.ecapture.burp.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fixed-capacity ring buffer of eCapture runtime log entries.
+ *
+ * Appending never copies: once full, each new entry overwrites the oldest one.
+ * A line identical to the previous one only bumps that entry's repeat count.
+ * Entries are numbered by sequence, so a viewer can page through the retained
+ * window even while old entries are being evicted.
+ */
+public class RuntimeLogStore {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    // A level token is only looked for among the first few words (after the timestamp)
+    private static final int MAX_LEVEL_TOKEN_INDEX = 3;
+
+    private static final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[0-9;]*m");
+    private static final Pattern JSON_LEVEL = Pattern.compile("\"level\"\\s*:\\s*\"(\\w+)\"");
+
+    private final RuntimeLogEntry[] entries;
+
+    // Sequence of the next entry; entries [nextSequence - size, nextSequence) are retained
+    private long nextSequence;
+    private int size;
+
+    public RuntimeLogStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RuntimeLogStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.entries = new RuntimeLogEntry[capacity];
+    }
+
+    /**
+     * Parse and append a raw log line.
+     *
+     * @return the new entry, or null if the line repeated the previous entry and was collapsed into it
+     */
+    public synchronized RuntimeLogEntry append(String line, long timestamp) {
+        RuntimeLogEntry parsed = parse(nextSequence, line, timestamp);
+
+        RuntimeLogEntry last = size > 0 ? entries[index(nextSequence - 1)] : null;
+        if (last != null && last.getSeverity() == parsed.getSeverity()
+                && last.getMessage().equals(parsed.getMessage())) {
+            last.repeat(timestamp);
+            return null;
+        }
+
+        entries[index(nextSequence)] = parsed;
+        nextSequence++;
+        if (size < entries.length) {
+            size++;
+        }
+        return parsed;
+    }
+
+    /**
+     * Copy up to {@code max} retained entries starting at the given sequence.
+     * A sequence that has already been evicted starts at the oldest retained entry.
+     */
+    public synchronized List<RuntimeLogEntry> getEntries(long fromSequence, int max) {
+        long start = Math.max(fromSequence, nextSequence - size);
+        long end = Math.min(nextSequence, start + max);
+        List<RuntimeLogEntry> page = new ArrayList<>((int) Math.max(0, end - start));
+        for (long seq = start; seq < end; seq++) {
+            page.add(entries[index(seq)]);
+        }
+        return page;
+    }
+
+    /**
+     * Sequence of the oldest retained entry.
+     */
+    public synchronized long getFirstSequence() {
+        return nextSequence - size;
+    }
+
+    /**
+     * Sequence the next new entry will get (one past the newest retained entry).
+     */
+    public synchronized long getNextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        nextSequence = 0;
+        size = 0;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % entries.length);
+    }
+
+    /**
+     * Split a line into severity and message. Handles zerolog console output
+     * ("2024-01-01T00:00:00Z INF message key=value"), "level=info" pairs and JSON lines.
+     * Lines without a recognizable level are INFO and keep their full text.
+     */
+    static RuntimeLogEntry parse(long sequence, String line, long timestamp) {
+        String text = line.trim();
+        if (text.indexOf('\u001B') >= 0) {
+            text = ANSI_ESCAPE.matcher(text).replaceAll("");
+        }
+
+        if (text.startsWith("{")) {
+            Matcher matcher = JSON_LEVEL.matcher(text);
+            RuntimeLogEntry.Severity severity = matcher.find()
+                    ? RuntimeLogEntry.Severity.fromToken(matcher.group(1)) : null;
+            return new RuntimeLogEntry(sequence, timestamp,
+                    severity != null ? severity : RuntimeLogEntry.Severity.INFO, text);
+        }
+
+        int tokenStart = 0;
+        for (int i = 0; i < MAX_LEVEL_TOKEN_INDEX && tokenStart < text.length(); i++) {
+            int tokenEnd = text.indexOf(' ', tokenStart);
+            if (tokenEnd < 0) {
+                tokenEnd = text.length();
+            }
+            String token = text.substring(tokenStart, tokenEnd);
+            if (token.startsWith("level=")) {
+                token = token.substring("level=".length());
+            }
+
+            RuntimeLogEntry.Severity severity = RuntimeLogEntry.Severity.fromToken(token);
+            if (severity != null) {
+                // Drop the eCapture timestamp and level; the entry carries both
+                String message = text.substring(tokenEnd).trim();
+                return new RuntimeLogEntry(sequence, timestamp, severity, message);
+            }
+
+            tokenStart = tokenEnd + 1;
+            while (tokenStart < text.length() && text.charAt(tokenStart) == ' ') {
+                tokenStart++;
+            }
+        }
+        return new RuntimeLogEntry(sequence, timestamp, RuntimeLogEntry.Severity.INFO, text);
+    }
+}
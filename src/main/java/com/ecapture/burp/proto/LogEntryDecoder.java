@@ -0,0 +1,305 @@
+package com.ecapture.burp.proto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable flyweight decoder for LogEntry frames.
+ *
+ * Reads the frame ByteBuffer in place: nested messages are bounded with pushLimit/popLimit
+ * instead of being copied, and string/bytes fields are recorded as offsets into the frame.
+ * Strings are only decoded to UTF-8 when read. The views are only valid until the next
+ * call to {@link #decode(ByteBuffer)}, and only while the frame buffer is unchanged.
+ */
+public final class LogEntryDecoder {
+
+    private final WireReader input = new WireReader();
+    private final EventView event = new EventView();
+    private final HeartbeatView heartbeat = new HeartbeatView();
+
+    private ByteBuffer frame;
+    private LogType logType;
+    private int payloadField;
+    private int runLogOffset;
+    private int runLogLength;
+    private String runLog;
+
+    /**
+     * Decode a frame. The buffer's position and limit are left untouched.
+     */
+    public void decode(ByteBuffer frame) throws WireFormatException {
+        this.frame = frame;
+        this.logType = LogType.LOG_TYPE_HEARTBEAT;
+        this.payloadField = 0;
+        this.runLog = null;
+
+        input.reset(frame);
+        while (!input.isAtEnd()) {
+            int tag = input.readTag();
+            switch (tag) {
+                case 0:
+                    return;
+                case 8: // field 1: log_type (enum)
+                    logType = LogType.forNumber(input.readEnum());
+                    break;
+                case 18: { // field 2: event_payload (message)
+                    int oldLimit = input.pushLimit(input.readLength());
+                    event.decode();
+                    input.popLimit(oldLimit);
+                    payloadField = 2;
+                    break;
+                }
+                case 26: { // field 3: heartbeat_payload (message)
+                    int oldLimit = input.pushLimit(input.readLength());
+                    heartbeat.decode();
+                    input.popLimit(oldLimit);
+                    payloadField = 3;
+                    break;
+                }
+                case 34: // field 4: run_log (string)
+                    runLogLength = input.readLength();
+                    runLogOffset = input.position();
+                    input.skipRawBytes(runLogLength);
+                    payloadField = 4;
+                    break;
+                default:
+                    input.skipField(tag);
+                    break;
+            }
+        }
+    }
+
+    public LogType getLogType() { return logType; }
+
+    public boolean hasEventPayload() { return payloadField == 2; }
+    public EventView getEventPayload() { return hasEventPayload() ? event : null; }
+
+    public boolean hasHeartbeatPayload() { return payloadField == 3; }
+    public HeartbeatView getHeartbeatPayload() { return hasHeartbeatPayload() ? heartbeat : null; }
+
+    public boolean hasRunLog() { return payloadField == 4; }
+    public String getRunLog() {
+        if (!hasRunLog()) {
+            return "";
+        }
+        if (runLog == null) {
+            runLog = utf8(runLogOffset, runLogLength);
+        }
+        return runLog;
+    }
+
+    private String utf8(int offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (frame.hasArray()) {
+            return new String(frame.array(), frame.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        frame.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Flyweight view of an Event message.
+     */
+    public final class EventView {
+        private long timestamp;
+        private int srcPort;
+        private int dstPort;
+        private long pid;
+        private int type;
+        private int length;
+
+        // Offsets into the frame, decoded on first access
+        private int uuidOffset, uuidLength;
+        private int srcIpOffset, srcIpLength;
+        private int dstIpOffset, dstIpLength;
+        private int pnameOffset, pnameLength;
+        private int payloadOffset, payloadLength;
+
+        private String uuid;
+        private String srcIp;
+        private String dstIp;
+        private String pname;
+
+        private void decode() throws WireFormatException {
+            timestamp = 0;
+            srcPort = 0;
+            dstPort = 0;
+            pid = 0;
+            type = 0;
+            length = 0;
+            uuidLength = srcIpLength = dstIpLength = pnameLength = payloadLength = 0;
+            uuid = srcIp = dstIp = pname = null;
+
+            while (!input.isAtEnd()) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return;
+                    case 8: // field 1: timestamp (int64)
+                        timestamp = input.readInt64();
+                        break;
+                    case 18: // field 2: uuid (string)
+                        uuidLength = input.readLength();
+                        uuidOffset = input.position();
+                        input.skipRawBytes(uuidLength);
+                        break;
+                    case 26: // field 3: src_ip (string)
+                        srcIpLength = input.readLength();
+                        srcIpOffset = input.position();
+                        input.skipRawBytes(srcIpLength);
+                        break;
+                    case 32: // field 4: src_port (uint32)
+                        srcPort = input.readUInt32();
+                        break;
+                    case 42: // field 5: dst_ip (string)
+                        dstIpLength = input.readLength();
+                        dstIpOffset = input.position();
+                        input.skipRawBytes(dstIpLength);
+                        break;
+                    case 48: // field 6: dst_port (uint32)
+                        dstPort = input.readUInt32();
+                        break;
+                    case 56: // field 7: pid (int64)
+                        pid = input.readInt64();
+                        break;
+                    case 66: // field 8: pname (string)
+                        pnameLength = input.readLength();
+                        pnameOffset = input.position();
+                        input.skipRawBytes(pnameLength);
+                        break;
+                    case 72: // field 9: type (uint32)
+                        type = input.readUInt32();
+                        break;
+                    case 80: // field 10: length (uint32)
+                        length = input.readUInt32();
+                        break;
+                    case 90: // field 11: payload (bytes)
+                        payloadLength = input.readLength();
+                        payloadOffset = input.position();
+                        input.skipRawBytes(payloadLength);
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
+                }
+            }
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public int getSrcPort() { return srcPort; }
+        public int getDstPort() { return dstPort; }
+        public long getPid() { return pid; }
+        public int getType() { return type; }
+        public int getLength() { return length; }
+
+        public String getUuid() {
+            if (uuid == null) {
+                uuid = utf8(uuidOffset, uuidLength);
+            }
+            return uuid;
+        }
+
+        public String getSrcIp() {
+            if (srcIp == null) {
+                srcIp = utf8(srcIpOffset, srcIpLength);
+            }
+            return srcIp;
+        }
+
+        public String getDstIp() {
+            if (dstIp == null) {
+                dstIp = utf8(dstIpOffset, dstIpLength);
+            }
+            return dstIp;
+        }
+
+        public String getPname() {
+            if (pname == null) {
+                pname = utf8(pnameOffset, pnameLength);
+            }
+            return pname;
+        }
+
+        public int getPayloadLength() { return payloadLength; }
+
+        /**
+         * Read-only slice of the payload, sharing the frame's memory.
+         */
+        public ByteBuffer getPayloadBuffer() {
+            return frame.slice(payloadOffset, payloadLength).asReadOnlyBuffer();
+        }
+
+        /**
+         * Copy the payload out of the frame onto the heap.
+         */
+        public byte[] copyPayload() {
+            byte[] bytes = new byte[payloadLength];
+            frame.get(payloadOffset, bytes);
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Event{timestamp=%d, uuid='%s', src=%s:%d, dst=%s:%d, pid=%d, pname='%s', type=%d, len=%d}",
+                    timestamp, getUuid(), getSrcIp(), srcPort, getDstIp(), dstPort, pid, getPname(), type, length);
+        }
+    }
+
+    /**
+     * Flyweight view of a Heartbeat message.
+     */
+    public final class HeartbeatView {
+        private long timestamp;
+        private long count;
+        private int messageOffset, messageLength;
+        private String message;
+
+        private void decode() throws WireFormatException {
+            timestamp = 0;
+            count = 0;
+            messageLength = 0;
+            message = null;
+
+            while (!input.isAtEnd()) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return;
+                    case 8: // field 1: timestamp (int64)
+                        timestamp = input.readInt64();
+                        break;
+                    case 16: // field 2: count (int64)
+                        count = input.readInt64();
+                        break;
+                    case 26: // field 3: message (string)
+                        messageLength = input.readLength();
+                        messageOffset = input.position();
+                        input.skipRawBytes(messageLength);
+                        break;
+                    default:
+                        input.skipField(tag);
+                        break;
+                }
+            }
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public long getCount() { return count; }
+
+        public String getMessage() {
+            if (message == null) {
+                message = utf8(messageOffset, messageLength);
+            }
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Heartbeat{timestamp=%d, count=%d, message='%s'}",
+                    timestamp, count, getMessage());
+        }
+    }
+}
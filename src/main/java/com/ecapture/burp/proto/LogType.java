@@ -0,0 +1,30 @@
+package com.ecapture.burp.proto;
+
+/**
+ * Kind of a LogEntry frame (the LogType enum of ecaptureq.proto).
+ */
+public enum LogType {
+    LOG_TYPE_HEARTBEAT(0),
+    LOG_TYPE_PROCESS_LOG(1),
+    LOG_TYPE_EVENT(2),
+    UNRECOGNIZED(-1);
+
+    private final int value;
+
+    LogType(int value) {
+        this.value = value;
+    }
+
+    public int getNumber() {
+        return value;
+    }
+
+    public static LogType forNumber(int value) {
+        switch (value) {
+            case 0: return LOG_TYPE_HEARTBEAT;
+            case 1: return LOG_TYPE_PROCESS_LOG;
+            case 2: return LOG_TYPE_EVENT;
+            default: return UNRECOGNIZED;
+        }
+    }
+}
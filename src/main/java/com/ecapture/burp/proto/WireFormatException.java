@@ -0,0 +1,15 @@
+package com.ecapture.burp.proto;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a frame is not valid protobuf wire format.
+ */
+public class WireFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WireFormatException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,270 @@
+package com.ecapture.burp.proto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal protobuf wire-format reader over a ByteBuffer.
+ *
+ * Covers what ecaptureq.proto and the schema-less gRPC dumps need (varints, fixed-width
+ * and length-delimited fields, skipping unknown fields) so the extension does not have
+ * to bundle protobuf-java.
+ * A reader is reset per frame and reused, so decoding allocates nothing. Heap buffers
+ * are read through their backing array, direct buffers through absolute gets.
+ */
+public final class WireReader {
+
+    public static final int WIRETYPE_VARINT = 0;
+    public static final int WIRETYPE_FIXED64 = 1;
+    public static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    public static final int WIRETYPE_START_GROUP = 3;
+    public static final int WIRETYPE_END_GROUP = 4;
+    public static final int WIRETYPE_FIXED32 = 5;
+
+    private ByteBuffer buffer;
+    private byte[] array;
+    private int arrayOffset;
+
+    // Absolute buffer positions; limit is the end of the innermost pushed message
+    private int position;
+    private int limit;
+
+    public WireReader() {
+        reset(ByteBuffer.allocate(0));
+    }
+
+    public WireReader(byte[] data) {
+        reset(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Start reading the buffer's remaining bytes. The buffer's own position is not changed.
+     */
+    public WireReader reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.hasArray()) {
+            this.array = buffer.array();
+            this.arrayOffset = buffer.arrayOffset();
+        } else {
+            this.array = null;
+            this.arrayOffset = 0;
+        }
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+        return this;
+    }
+
+    /**
+     * Absolute buffer position of the next byte to be read.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Go back to a position returned by {@link #position()}, within the current limit
+     * (to read a message twice, e.g. for a field that may come after the ones needing it).
+     */
+    public void seek(int position) throws WireFormatException {
+        if (position < 0 || position > limit) {
+            throw new WireFormatException("Position out of range: " + position);
+        }
+        this.position = position;
+    }
+
+    public boolean isAtEnd() {
+        return position >= limit;
+    }
+
+    /**
+     * Read a field tag, or 0 at the end of the input (or current limit).
+     */
+    public int readTag() throws WireFormatException {
+        if (isAtEnd()) {
+            return 0;
+        }
+        int tag = readVarint32();
+        if ((tag >>> 3) == 0) {
+            throw new WireFormatException("Invalid tag: " + tag);
+        }
+        return tag;
+    }
+
+    public long readInt64() throws WireFormatException {
+        return readVarint64();
+    }
+
+    public int readUInt32() throws WireFormatException {
+        return readVarint32();
+    }
+
+    public int readEnum() throws WireFormatException {
+        return readVarint32();
+    }
+
+    /**
+     * Read the length prefix of a length-delimited field.
+     */
+    public int readLength() throws WireFormatException {
+        int length = readVarint32();
+        if (length < 0) {
+            throw new WireFormatException("Negative length: " + length);
+        }
+        if (length > limit - position) {
+            throw new WireFormatException("Truncated message");
+        }
+        return length;
+    }
+
+    public int readVarint32() throws WireFormatException {
+        // Fast path: single-byte varints are by far the most common (tags, small ints)
+        if (position < limit) {
+            byte b = byteAt(position);
+            if (b >= 0) {
+                position++;
+                return b;
+            }
+        }
+        return (int) readVarint64Slow();
+    }
+
+    public long readVarint64() throws WireFormatException {
+        if (position < limit) {
+            byte b = byteAt(position);
+            if (b >= 0) {
+                position++;
+                return b;
+            }
+        }
+        return readVarint64Slow();
+    }
+
+    private long readVarint64Slow() throws WireFormatException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readRawByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new WireFormatException("Malformed varint");
+    }
+
+    /**
+     * Read a length-delimited UTF-8 string (allocates; the flyweight decoder records offsets instead).
+     */
+    public String readString() throws WireFormatException {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a length-delimited bytes field into a new array.
+     */
+    public byte[] readBytes() throws WireFormatException {
+        int length = readLength();
+        byte[] bytes = new byte[length];
+        if (array != null) {
+            System.arraycopy(array, arrayOffset + position, bytes, 0, length);
+        } else {
+            buffer.get(position, bytes);
+        }
+        position += length;
+        return bytes;
+    }
+
+    public int readFixed32() throws WireFormatException {
+        if (limit - position < 4) {
+            throw new WireFormatException("Truncated message");
+        }
+        int value = (byteAt(position) & 0xFF)
+                | (byteAt(position + 1) & 0xFF) << 8
+                | (byteAt(position + 2) & 0xFF) << 16
+                | (byteAt(position + 3) & 0xFF) << 24;
+        position += 4;
+        return value;
+    }
+
+    public long readFixed64() throws WireFormatException {
+        long low = readFixed32() & 0xFFFFFFFFL;
+        long high = readFixed32() & 0xFFFFFFFFL;
+        return low | high << 32;
+    }
+
+    public byte readRawByte() throws WireFormatException {
+        if (position >= limit) {
+            throw new WireFormatException("Truncated message");
+        }
+        return byteAt(position++);
+    }
+
+    public void skipRawBytes(int length) throws WireFormatException {
+        if (length < 0 || length > limit - position) {
+            throw new WireFormatException("Truncated message");
+        }
+        position += length;
+    }
+
+    /**
+     * Skip a field whose tag has already been read.
+     */
+    public void skipField(int tag) throws WireFormatException {
+        switch (tag & 7) {
+            case WIRETYPE_VARINT:
+                readVarint64();
+                break;
+            case WIRETYPE_FIXED64:
+                skipRawBytes(8);
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                skipRawBytes(readLength());
+                break;
+            case WIRETYPE_START_GROUP:
+                skipGroup(tag >>> 3);
+                break;
+            case WIRETYPE_FIXED32:
+                skipRawBytes(4);
+                break;
+            default:
+                throw new WireFormatException("Invalid wire type in tag: " + tag);
+        }
+    }
+
+    private void skipGroup(int fieldNumber) throws WireFormatException {
+        while (true) {
+            int tag = readTag();
+            if (tag == 0) {
+                throw new WireFormatException("Unterminated group");
+            }
+            if ((tag & 7) == WIRETYPE_END_GROUP) {
+                if ((tag >>> 3) != fieldNumber) {
+                    throw new WireFormatException("Mismatched end group");
+                }
+                return;
+            }
+            skipField(tag);
+        }
+    }
+
+    /**
+     * Bound reading to the next {@code length} bytes (a nested message).
+     *
+     * @return the previous limit, to be passed to {@link #popLimit(int)}
+     */
+    public int pushLimit(int length) throws WireFormatException {
+        if (length < 0 || length > limit - position) {
+            throw new WireFormatException("Truncated message");
+        }
+        int oldLimit = limit;
+        limit = position + length;
+        return oldLimit;
+    }
+
+    public void popLimit(int oldLimit) {
+        limit = oldLimit;
+    }
+
+    private byte byteAt(int index) {
+        return array != null ? array[arrayOffset + index] : buffer.get(index);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ecapture.burp.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Preset dictionary for Deflate, trained from samples of recent traffic.
+ *
+ * Deflate can refer back into a preset dictionary as if it preceded the input, so
+ * headers and JSON keys repeated across payloads of the same services compress
+ * well even in small payloads. Training is sampling, not optimization: the
+ * dictionary is the concatenation of distinct recent payload prefixes, newest last
+ * (Deflate encodes nearer matches in fewer bits), cut to the 32 KiB window.
+ */
+final class CompressionDictionary {
+
+    // Deflate's window: dictionary bytes further back cannot be referenced
+    static final int MAX_SIZE = 32 * 1024;
+
+    private final int id;
+    private final byte[] bytes;
+
+    private CompressionDictionary(int id, byte[] bytes) {
+        this.id = id;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Build a dictionary from samples, oldest first.
+     */
+    static CompressionDictionary train(int id, List<byte[]> samples) {
+        // Walk newest to oldest so the newest samples end up closest to the input
+        Set<ByteBuffer> seen = new HashSet<>();
+        byte[] dictionary = new byte[MAX_SIZE];
+        int start = MAX_SIZE;
+        for (int i = samples.size() - 1; i >= 0 && start > 0; i--) {
+            byte[] sample = samples.get(i);
+            if (!seen.add(ByteBuffer.wrap(sample))) {
+                continue;
+            }
+            int length = Math.min(sample.length, start);
+            start -= length;
+            System.arraycopy(sample, 0, dictionary, start, length);
+        }
+        return new CompressionDictionary(id, Arrays.copyOfRange(dictionary, start, MAX_SIZE));
+    }
+
+    int getId() {
+        return id;
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    int size() {
+        return bytes.length;
+    }
+}
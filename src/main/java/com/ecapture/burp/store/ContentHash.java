@@ -0,0 +1,153 @@
+package com.ecapture.burp.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * XXH64 over a byte buffer (heap or direct), used to find identical payload bodies.
+ *
+ * Equal hashes are only a hint: callers confirm a match by comparing the bytes.
+ */
+final class ContentHash {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hash of the buffer's remaining bytes. The buffer's position is not changed.
+     */
+    static long hash64(ByteBuffer source) {
+        ByteBuffer buffer = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int offset = buffer.position();
+        int end = buffer.limit();
+        int length = end - offset;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+            int stripesEnd = end - 32;
+            while (offset <= stripesEnd) {
+                v1 = round(v1, buffer.getLong(offset));
+                v2 = round(v2, buffer.getLong(offset + 8));
+                v3 = round(v3, buffer.getLong(offset + 16));
+                v4 = round(v4, buffer.getLong(offset + 24));
+                offset += 32;
+            }
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                    + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+        return finish(hash, buffer, offset, end);
+    }
+
+    /**
+     * Hash of the parts' remaining bytes taken in order: the same as {@link #hash64(ByteBuffer)}
+     * of the joined bytes, without joining them. The parts' positions are not changed.
+     */
+    static long hash64(ByteBuffer[] parts) {
+        if (parts.length == 1) {
+            return hash64(parts[0]);
+        }
+
+        // Stripes that straddle two parts are put together in the carry buffer
+        ByteBuffer carry = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+        long v1 = PRIME1 + PRIME2;
+        long v2 = PRIME2;
+        long v3 = 0;
+        long v4 = -PRIME1;
+        long length = 0;
+        for (ByteBuffer part : parts) {
+            ByteBuffer buffer = part.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int offset = buffer.position();
+            int end = buffer.limit();
+            length += end - offset;
+            if (carry.position() > 0) {
+                int n = Math.min(carry.remaining(), end - offset);
+                carry.put(carry.position(), buffer, offset, n).position(carry.position() + n);
+                offset += n;
+                if (carry.hasRemaining()) {
+                    continue;
+                }
+                v1 = round(v1, carry.getLong(0));
+                v2 = round(v2, carry.getLong(8));
+                v3 = round(v3, carry.getLong(16));
+                v4 = round(v4, carry.getLong(24));
+                carry.clear();
+            }
+            int stripesEnd = end - 32;
+            while (offset <= stripesEnd) {
+                v1 = round(v1, buffer.getLong(offset));
+                v2 = round(v2, buffer.getLong(offset + 8));
+                v3 = round(v3, buffer.getLong(offset + 16));
+                v4 = round(v4, buffer.getLong(offset + 24));
+                offset += 32;
+            }
+            carry.put(0, buffer, offset, end - offset).position(end - offset);
+        }
+
+        long hash;
+        if (length >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                    + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+        return finish(hash, carry.flip(), 0, carry.limit());
+    }
+
+    /**
+     * Mix in the last {@code [offset, end)} bytes (fewer than 32) and avalanche.
+     */
+    private static long finish(long hash, ByteBuffer buffer, int offset, int end) {
+        while (offset + 8 <= end) {
+            hash ^= round(0, buffer.getLong(offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+        if (offset + 4 <= end) {
+            hash ^= (buffer.getInt(offset) & 0xFFFF_FFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        while (offset < end) {
+            hash ^= (buffer.get(offset) & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long hash, long v) {
+        return (hash ^ round(0, v)) * PRIME1 + PRIME4;
+    }
+}
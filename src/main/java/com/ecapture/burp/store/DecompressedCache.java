@@ -0,0 +1,50 @@
+package com.ecapture.burp.store;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decompressed payload bytes, bounded by total size.
+ * Keeps the rows a user is looking at (or searching) from being inflated over and over.
+ */
+final class DecompressedCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<Payload, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    DecompressedCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized byte[] get(Payload payload) {
+        return entries.get(payload);
+    }
+
+    synchronized void put(Payload payload, byte[] data) {
+        if (data.length > maxBytes) {
+            return; // Would evict everything else
+        }
+        byte[] previous = entries.put(payload, data);
+        if (previous != null) {
+            bytes -= previous.length;
+        }
+        bytes += data.length;
+
+        Iterator<Map.Entry<Payload, byte[]>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+}
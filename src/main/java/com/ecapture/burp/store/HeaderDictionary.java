@@ -0,0 +1,191 @@
+package com.ecapture.burp.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared dictionary of HTTP/1.x head lines, for storing message heads as a sequence
+ * of dictionary indexes and literals (in the spirit of HPACK, but for storage).
+ *
+ * A line is the exact bytes up to its LF, so a head decodes to its original bytes,
+ * including whitespace and line endings. Entries are never evicted, so indexes in
+ * stored heads stay valid; instead, a line is only added the second time it is seen
+ * (Date headers and request IDs would otherwise fill the table), and the table stops
+ * growing at {@link #MAX_ENTRIES} or {@link #MAX_BYTES}.
+ *
+ * Encoding is done under the {@link PayloadStore} lock; decoding may happen on any
+ * thread and reads the entry array without locking.
+ */
+final class HeaderDictionary {
+
+    static final int MAX_ENTRIES = 16 * 1024;
+    static final int MAX_BYTES = 4 * 1024 * 1024;
+
+    // Longer lines are always stored as literals
+    private static final int MAX_LINE = 8 * 1024;
+
+    // Hashes of lines seen once, for the second-sight admission
+    private static final int SEEN_SLOTS = 1 << 16;
+
+    private static final int LITERAL = 0;
+
+    private final Map<ByteBuffer, Integer> indexes = new HashMap<>();
+    private final long[] seen = new long[SEEN_SLOTS];
+
+    // Replaced (copied) when full; an index is only used after its slot is written
+    private volatile byte[][] entries = new byte[256][];
+    private int size;
+    private int bytes;
+
+    /**
+     * Encode a head (the buffer's remaining bytes, ending with LF).
+     * The buffer's position is not changed.
+     */
+    byte[] encode(ByteBuffer head) {
+        Encoder out = new Encoder(Math.max(16, head.remaining() / 4));
+        int end = head.limit();
+        int lineStart = head.position();
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && head.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            // The LF is implied after every line, except when the head does not end with one
+            int length = lineEnd - lineStart;
+            ByteBuffer line = head.slice(lineStart, length);
+            int index = lineEnd < end ? lookupOrAdmit(line) : -1;
+            if (index >= 0) {
+                out.writeVarint(index + 1);
+            } else {
+                out.writeVarint(LITERAL);
+                out.writeVarint(lineEnd < end ? length + 1 : length);
+                out.writeBytes(line);
+                if (lineEnd < end) {
+                    out.writeByte('\n');
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return out.toByteArray();
+    }
+
+    private int lookupOrAdmit(ByteBuffer line) {
+        Integer index = indexes.get(line);
+        if (index != null) {
+            return index;
+        }
+        int length = line.remaining();
+        if (length > MAX_LINE || size == MAX_ENTRIES || bytes + length + 1 > MAX_BYTES) {
+            return -1;
+        }
+
+        long hash = ContentHash.hash64(line);
+        int slot = (int) (hash & (SEEN_SLOTS - 1));
+        if (seen[slot] != hash) {
+            seen[slot] = hash;
+            return -1;
+        }
+
+        // Entries include the LF
+        byte[] entry = new byte[length + 1];
+        line.get(line.position(), entry, 0, length);
+        entry[length] = '\n';
+
+        byte[][] current = entries;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = entry;
+        entries = current;
+
+        int newIndex = size++;
+        bytes += entry.length;
+        indexes.put(ByteBuffer.wrap(entry, 0, length), newIndex);
+        return newIndex;
+    }
+
+    /**
+     * Decode an encoded head into {@code out}, which must have room for the original length.
+     *
+     * @return the number of bytes written
+     */
+    int decode(ByteBuffer encoded, byte[] out) {
+        byte[][] table = entries;
+        ByteBuffer in = encoded.duplicate();
+        int written = 0;
+        while (in.hasRemaining()) {
+            int token = readVarint(in);
+            if (token == LITERAL) {
+                int length = readVarint(in);
+                in.get(out, written, length);
+                written += length;
+            } else {
+                byte[] entry = table[token - 1];
+                System.arraycopy(entry, 0, out, written, entry.length);
+                written += entry.length;
+            }
+        }
+        return written;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Growable output buffer for the encoder.
+     */
+    private static final class Encoder {
+        private byte[] buffer;
+        private int length;
+
+        Encoder(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buffer[length++] = (byte) b;
+        }
+
+        void writeBytes(ByteBuffer source) {
+            int n = source.remaining();
+            ensure(n);
+            source.get(source.position(), buffer, length, n);
+            length += n;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
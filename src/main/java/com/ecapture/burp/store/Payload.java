@@ -0,0 +1,115 @@
+package com.ecapture.burp.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Captured payload bytes, wherever they are kept (Java heap or a mapped segment file).
+ *
+ * Readers use {@link #buffer()}, a read-only view that does not copy where the
+ * storage allows it; {@link #toByteArray()} always makes a heap copy.
+ */
+public abstract class Payload {
+
+    public static final Payload EMPTY = new HeapPayload(new byte[0]);
+
+    /**
+     * Payload kept on the Java heap.
+     */
+    public static Payload of(byte[] bytes) {
+        return bytes == null || bytes.length == 0 ? EMPTY : new HeapPayload(bytes);
+    }
+
+    public abstract int length();
+
+    public boolean isEmpty() {
+        return length() == 0;
+    }
+
+    /**
+     * Read-only view of the bytes, positioned at 0 with the limit at {@link #length()}.
+     * Each call returns a new view, so callers may move its position freely.
+     */
+    public abstract ByteBuffer buffer();
+
+    /**
+     * Read-only view of at most the first {@code max} bytes. Payloads stored as an HTTP/1.x
+     * head and body return no more than the head, so this is cheaper than {@link #buffer()}
+     * when only the head is needed.
+     */
+    public ByteBuffer buffer(int max) {
+        ByteBuffer buffer = buffer();
+        buffer.limit(Math.min(max, buffer.limit()));
+        return buffer;
+    }
+
+    /**
+     * Read-only view of the bytes from {@code offset} on (e.g. the body, after the head).
+     * Cheaper than {@link #buffer()} for payloads stored in parts, when only the body is needed.
+     */
+    public ByteBuffer bufferFrom(int offset) {
+        ByteBuffer buffer = buffer();
+        buffer.position(Math.min(offset, buffer.limit()));
+        return buffer.slice();
+    }
+
+    /**
+     * Copy the bytes onto the heap.
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = buffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * The bytes on the heap without a defensive copy: the stored array itself for heap
+     * payloads, a fresh copy otherwise. Callers must not modify it.
+     */
+    public byte[] heapBytes() {
+        return toByteArray();
+    }
+
+    /**
+     * Copy the first bytes into {@code out}, as many as fit.
+     *
+     * @return the number of bytes copied
+     */
+    public int prefix(byte[] out) {
+        ByteBuffer buffer = buffer(out.length);
+        int length = buffer.remaining();
+        buffer.get(buffer.position(), out, 0, length);
+        return length;
+    }
+
+    /**
+     * Payload backed by a heap array.
+     */
+    static final class HeapPayload extends Payload {
+        private final byte[] bytes;
+
+        HeapPayload(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return bytes.clone();
+        }
+
+        @Override
+        public byte[] heapBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ecapture.burp.store;
+
+import burp.api.montoya.logging.Logging;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Background compaction of aged payloads into the compressed arena of a {@link PayloadStore}.
+ *
+ * Once a second, payloads stored more than {@link #getCompactAfterMillis()} ago are
+ * deflated with a preset {@link CompressionDictionary} and moved. The dictionary is
+ * retrained from prefixes of recently compacted payloads every minute; payloads keep
+ * a reference to the dictionary they were compressed with. Payloads that do not get
+ * at least 10% smaller are moved uncompressed, so reading them stays copy-free.
+ */
+public class PayloadCompactor {
+
+    public static final long DEFAULT_COMPACT_AFTER_MILLIS = 30_000;
+
+    private static final long RUN_INTERVAL_MILLIS = 1_000;
+    private static final long RETRAIN_INTERVAL_MILLIS = 60_000;
+    private static final int BATCH_SIZE = 1024;
+
+    // Samples are payload prefixes; 16 of them fill the dictionary window
+    private static final int SAMPLE_SIZE = 2048;
+    private static final int SAMPLE_COUNT = 64;
+
+    // Compressed output must be below this fraction of the input to be kept
+    private static final double MAX_RATIO = 0.9;
+
+    private final PayloadStore store;
+    private final Logging logging;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadMXBean threadBean;
+
+    private volatile long compactAfterMillis = DEFAULT_COMPACT_AFTER_MILLIS;
+
+    // Only touched by the compactor thread
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[][] samples = new byte[SAMPLE_COUNT][];
+    private int sampleCursor;
+    private CompressionDictionary dictionary;
+    private long lastTrained;
+    private int nextDictionaryId;
+    private byte[] output = new byte[64 * 1024];
+
+    // Stats
+    private final AtomicLong payloadsCompacted = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+    private final AtomicLong deflateNanos = new AtomicLong();
+
+    PayloadCompactor(PayloadStore store, Logging logging) {
+        this.store = store;
+        this.logging = logging;
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threadBean = bean.isCurrentThreadCpuTimeSupported() ? bean : null;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-Compactor");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::run, RUN_INTERVAL_MILLIS, RUN_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void run() {
+        try {
+            List<PayloadStore.StoredPayload> due;
+            do {
+                due = store.takeUncompacted(System.currentTimeMillis() - compactAfterMillis, BATCH_SIZE);
+                if (!due.isEmpty()) {
+                    compact(due);
+                }
+            } while (due.size() == BATCH_SIZE);
+        } catch (Exception e) {
+            // Keep the schedule alive; the payloads stay raw
+            logging.logToError("Payload compaction failed: " + e.getMessage());
+        }
+    }
+
+    private void compact(List<PayloadStore.StoredPayload> due) {
+        long start = cpuNanos();
+
+        for (PayloadStore.StoredPayload payload : due) {
+            addSample(payload.buffer());
+        }
+        long now = System.currentTimeMillis();
+        if (dictionary == null || now - lastTrained >= RETRAIN_INTERVAL_MILLIS) {
+            train();
+            lastTrained = now;
+        }
+
+        for (PayloadStore.StoredPayload payload : due) {
+            ByteBuffer raw = payload.buffer();
+            int length = raw.remaining();
+            int compressedLength = deflate(raw);
+
+            boolean moved;
+            if (compressedLength >= 0 && compressedLength < length * MAX_RATIO) {
+                moved = store.relocate(payload, ByteBuffer.wrap(output, 0, compressedLength), dictionary);
+                compressedLength = moved ? compressedLength : length;
+            } else {
+                moved = store.relocate(payload, raw, null);
+                compressedLength = length;
+            }
+            if (moved) {
+                payloadsCompacted.incrementAndGet();
+                bytesBefore.addAndGet(length);
+                bytesAfter.addAndGet(compressedLength);
+            }
+        }
+
+        deflateNanos.addAndGet(cpuNanos() - start);
+    }
+
+    /**
+     * Deflate into {@link #output} with the current dictionary.
+     *
+     * @return compressed length, or -1 if the output would not be smaller than the input
+     */
+    private int deflate(ByteBuffer raw) {
+        int length = raw.remaining();
+        if (output.length < length) {
+            output = new byte[length];
+        }
+        deflater.reset();
+        deflater.setDictionary(dictionary.getBytes());
+        deflater.setInput(raw.duplicate());
+        deflater.finish();
+        int n = deflater.deflate(output, 0, length);
+        return deflater.finished() ? n : -1;
+    }
+
+    private void addSample(ByteBuffer payload) {
+        byte[] sample = new byte[Math.min(SAMPLE_SIZE, payload.remaining())];
+        payload.get(payload.position(), sample);
+        samples[sampleCursor] = sample;
+        sampleCursor = (sampleCursor + 1) % SAMPLE_COUNT;
+    }
+
+    private void train() {
+        // Oldest first, as the ring is laid out from the cursor on
+        List<byte[]> ordered = new ArrayList<>(SAMPLE_COUNT);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            byte[] sample = samples[(sampleCursor + i) % SAMPLE_COUNT];
+            if (sample != null) {
+                ordered.add(sample);
+            }
+        }
+        dictionary = CompressionDictionary.train(nextDictionaryId++, ordered);
+    }
+
+    private long cpuNanos() {
+        return threadBean != null ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * How long payloads stay raw before they are compressed.
+     */
+    public void setCompactAfterMillis(long millis) {
+        this.compactAfterMillis = Math.max(0, millis);
+    }
+
+    public long getCompactAfterMillis() {
+        return compactAfterMillis;
+    }
+
+    void resetStats() {
+        payloadsCompacted.set(0);
+        bytesBefore.set(0);
+        bytesAfter.set(0);
+        deflateNanos.set(0);
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Getters for stats
+    public long getPayloadsCompacted() {
+        return payloadsCompacted.get();
+    }
+
+    /**
+     * Size of the compacted payloads before compaction.
+     */
+    public long getBytesBefore() {
+        return bytesBefore.get();
+    }
+
+    /**
+     * Size of the compacted payloads after compaction.
+     */
+    public long getBytesAfter() {
+        return bytesAfter.get();
+    }
+
+    /**
+     * Compressed size as a fraction of the original size, or 1 if nothing was compacted yet.
+     */
+    public double getCompressionRatio() {
+        long before = bytesBefore.get();
+        return before == 0 ? 1.0 : (double) bytesAfter.get() / before;
+    }
+
+    /**
+     * CPU time spent compacting (wall time where the JVM does not measure thread CPU time).
+     */
+    public long getDeflateNanos() {
+        return deflateNanos.get();
+    }
+}
@@ -0,0 +1,883 @@
+package com.ecapture.burp.store;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.logging.Logging;
+import com.ecapture.burp.http.HttpHead;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps payload bytes off the Java heap, in memory-mapped segment files in a temp directory.
+ *
+ * Payloads are appended to the current segment of the raw arena; each stored payload is
+ * only a handle to its location, and reading it returns a read-only slice of the mapping
+ * without copying. The {@link PayloadCompactor} later moves payloads that have aged into
+ * the compressed arena (Deflate with a trained dictionary). A raw segment is deleted as
+ * soon as all its payloads have moved, so only recent traffic is kept uncompressed.
+ * Compressed payloads are inflated on read, through an LRU cache.
+ *
+ * HTTP/1.x messages are stored in two parts: the head, and the body. Heads are encoded
+ * against a shared {@link HeaderDictionary}, so header lines repeated across messages
+ * (User-Agent, cookies, auth tokens) are stored once. Bodies are content-addressed
+ * (64-bit hash, confirmed by comparing the bytes), so byte-identical bodies (polling
+ * responses, static assets) are stored once and shared by reference count. A body that
+ * was compressed meanwhile is inflated (outside the store lock) to compare it, so slow
+ * polling is shared too.
+ *
+ * Segments are released on {@link #clear()}: their files are deleted right away, and the
+ * mapping itself goes away once no payload handle refers to it, so a stale handle can
+ * never read unmapped memory.
+ *
+ * If segment files cannot be created (e.g. the disk is full), payloads stay on the heap.
+ */
+public class PayloadStore {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // Payloads below this size are not worth a trip through the arena
+    private static final int MIN_ARENA_PAYLOAD = 64;
+
+    // Smaller bodies are not worth hashing and sharing
+    private static final int MIN_SHARED_BODY = 64;
+
+    // Decompressed bytes kept for payloads being viewed or searched
+    private static final long DECOMPRESSED_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * One mapped segment file.
+     */
+    private static final class Segment {
+        final Arena arena;
+        final Path file;
+        final MappedByteBuffer mapping;
+        int used;
+
+        // Payloads whose current location is in this segment
+        int livePayloads;
+
+        Segment(Arena arena, Path file, MappedByteBuffer mapping) {
+            this.arena = arena;
+            this.file = file;
+            this.mapping = mapping;
+        }
+
+        int remaining() {
+            return mapping.capacity() - used;
+        }
+    }
+
+    /**
+     * Append-only sequence of segment files.
+     */
+    private final class Arena {
+        final String name;
+        final List<Segment> segments = new ArrayList<>();
+        Segment current;
+        long bytesMapped;
+
+        Arena(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Copy bytes into the arena.
+         */
+        Location append(ByteBuffer source, int length, CompressionDictionary dictionary) throws IOException {
+            Segment segment = segmentFor(length);
+            int offset = segment.used;
+            segment.mapping.put(offset, source, source.position(), length);
+            segment.used += length;
+            segment.livePayloads++;
+            return new Location(segment, offset, length, dictionary);
+        }
+
+        /**
+         * Copy consecutive parts into the arena, as one raw payload of {@code length} bytes.
+         */
+        Location append(ByteBuffer[] sources, int length) throws IOException {
+            Segment segment = segmentFor(length);
+            int offset = segment.used;
+            for (ByteBuffer source : sources) {
+                segment.mapping.put(segment.used, source, source.position(), source.remaining());
+                segment.used += source.remaining();
+            }
+            segment.livePayloads++;
+            return new Location(segment, offset, length, null);
+        }
+
+        private Segment segmentFor(int length) throws IOException {
+            if (current != null && current.remaining() >= length) {
+                return current;
+            }
+            if (length > segmentSize) {
+                // Oversized payloads get a segment of their own; the current one stays open
+                return newSegment(length);
+            }
+            Segment previous = current;
+            current = newSegment(segmentSize);
+            if (previous != null && previous.livePayloads == 0) {
+                // Everything in it was released or moved while it was still being filled
+                delete(previous);
+            }
+            return current;
+        }
+
+        private Segment newSegment(int size) throws IOException {
+            Path file = directory.resolve(name + "-" + (segmentCounter++) + ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                Segment segment = new Segment(this, file, mapping);
+                segments.add(segment);
+                bytesMapped += size;
+                return segment;
+            }
+        }
+
+        /**
+         * A payload moved out of the segment or was released; delete the segment
+         * once nothing lives there.
+         */
+        void release(Segment segment) {
+            segment.livePayloads--;
+            if (segment.livePayloads == 0 && segment != current) {
+                delete(segment);
+            }
+        }
+
+        private void delete(Segment segment) {
+            segments.remove(segment);
+            bytesMapped -= segment.mapping.capacity();
+            deleteQuietly(segment.file);
+        }
+
+        void clear() {
+            for (Segment segment : segments) {
+                deleteQuietly(segment.file);
+            }
+            segments.clear();
+            current = null;
+            bytesMapped = 0;
+        }
+    }
+
+    /**
+     * Where a payload's bytes are: raw, or compressed with a dictionary.
+     */
+    static final class Location {
+        final Segment segment;
+        final int offset;
+        final int storedLength;
+        final CompressionDictionary dictionary;
+
+        Location(Segment segment, int offset, int storedLength, CompressionDictionary dictionary) {
+            this.segment = segment;
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.dictionary = dictionary;
+        }
+
+        boolean isCompressed() {
+            return dictionary != null;
+        }
+
+        ByteBuffer slice() {
+            return segment.mapping.slice(offset, storedLength).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Handle to a payload stored in the arena. The handle stays the same when the
+     * compactor moves the bytes; only its location changes.
+     */
+    final class StoredPayload extends Payload {
+        private final int length;
+        private final long storedAt;
+        private final int generation;
+        private volatile Location location;
+        private boolean released;
+
+        StoredPayload(int length, long storedAt, int generation, Location location) {
+            this.length = length;
+            this.storedAt = storedAt;
+            this.generation = generation;
+            this.location = location;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            Location loc = location;
+            if (!loc.isCompressed()) {
+                return loc.slice();
+            }
+            byte[] bytes = decompressedCache.get(this);
+            if (bytes == null) {
+                bytes = inflate(loc, length);
+                decompressedCache.put(this, bytes);
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        long getStoredAt() {
+            return storedAt;
+        }
+
+        Location getLocation() {
+            return location;
+        }
+    }
+
+    /**
+     * A distinct body, shared by every payload with the same bytes.
+     */
+    private static final class SharedBody {
+        final long hash;
+        final int generation;
+        final Payload bytes;
+        int references = 1;
+
+        // Next body with the same hash
+        SharedBody next;
+
+        SharedBody(long hash, int generation, Payload bytes, SharedBody next) {
+            this.hash = hash;
+            this.generation = generation;
+            this.bytes = bytes;
+            this.next = next;
+        }
+    }
+
+    /**
+     * HTTP/1.x head stored as dictionary indexes and literals; decoded on read
+     * (through the decompressed cache).
+     */
+    final class EncodedHead extends Payload {
+        private final HeaderDictionary dictionary;
+        private final Payload encoded;
+        private final int length;
+
+        EncodedHead(HeaderDictionary dictionary, Payload encoded, int length) {
+            this.dictionary = dictionary;
+            this.encoded = encoded;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            byte[] bytes = decompressedCache.get(this);
+            if (bytes == null) {
+                bytes = new byte[length];
+                dictionary.decode(encoded.buffer(), bytes);
+                decompressedCache.put(this, bytes);
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * HTTP/1.x message stored as its head plus its body. Reading the whole message
+     * joins the two into a new heap array each time; reading just the head
+     * ({@link #buffer(int)}) or just the body ({@link #bufferFrom(int)}) does not.
+     */
+    final class SplicedPayload extends Payload {
+        private final Payload head;
+        private final Payload body;
+
+        // Set when the body is shared with identical ones
+        private final SharedBody shared;
+
+        SplicedPayload(Payload head, Payload body, SharedBody shared) {
+            this.head = head;
+            this.body = body;
+            this.shared = shared;
+        }
+
+        @Override
+        public int length() {
+            return head.length() + body.length();
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(toByteArray()).asReadOnlyBuffer();
+        }
+
+        /**
+         * At most {@code max} bytes of the head only: the head holds the whole header
+         * block, so parsing it never joins (or inflates) the body.
+         */
+        @Override
+        public ByteBuffer buffer(int max) {
+            return head.buffer(max);
+        }
+
+        @Override
+        public ByteBuffer bufferFrom(int offset) {
+            int headLength = head.length();
+            if (offset >= headLength) {
+                return body.bufferFrom(offset - headLength);
+            }
+            return super.bufferFrom(offset);
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            // Not kept in the decompressed cache: the parts are cached where decoding them costs
+            byte[] bytes = new byte[length()];
+            ByteBuffer headBytes = head.buffer();
+            int headLength = headBytes.remaining();
+            headBytes.get(bytes, 0, headLength);
+            body.buffer().get(bytes, headLength, bytes.length - headLength);
+            return bytes;
+        }
+    }
+
+    private final Logging logging;
+    private final Path directory;
+    private final int segmentSize;
+
+    private final Arena rawArena = new Arena("raw");
+    private final Arena compressedArena = new Arena("deflate");
+    private long segmentCounter;
+    private boolean enabled;
+
+    // Bumped on clear, so the compactor drops payloads stored before it
+    private int generation;
+
+    // Raw payloads not yet compacted, oldest first
+    private final ArrayDeque<StoredPayload> uncompacted = new ArrayDeque<>();
+
+    // Replaced on clear; heads handed out before keep decoding against their own
+    private HeaderDictionary headerDictionary = new HeaderDictionary();
+
+    // Distinct bodies by content hash
+    private final Map<Long, SharedBody> bodies = new HashMap<>();
+
+    private final DecompressedCache decompressedCache = new DecompressedCache(DECOMPRESSED_CACHE_BYTES);
+    private final PayloadCompactor compactor;
+
+    // Stats
+    private final AtomicLong bytesStored = new AtomicLong();
+    private final AtomicLong inflateNanos = new AtomicLong();
+    private final AtomicLong headBytes = new AtomicLong();
+    private final AtomicLong encodedHeadBytes = new AtomicLong();
+    private final AtomicLong bodyCount = new AtomicLong();
+    private final AtomicLong distinctBodyCount = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final AtomicLong distinctBodyBytes = new AtomicLong();
+
+    public PayloadStore(MontoyaApi api) {
+        this(api, null, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory where segment files go, or null for a new temp directory
+     */
+    public PayloadStore(MontoyaApi api, Path directory, int segmentSize) {
+        this.logging = api.logging();
+        this.segmentSize = segmentSize;
+
+        Path dir = directory;
+        try {
+            if (dir == null) {
+                dir = Files.createTempDirectory("ecapture-payloads-");
+                dir.toFile().deleteOnExit();
+            } else {
+                Files.createDirectories(dir);
+            }
+            this.enabled = true;
+        } catch (IOException e) {
+            logging.logToError("Payload arena unavailable, keeping payloads on the heap: " + e.getMessage());
+            this.enabled = false;
+        }
+        this.directory = dir;
+
+        this.compactor = new PayloadCompactor(this, logging);
+    }
+
+    /**
+     * Copy a payload into the arena. HTTP/1.x heads are dictionary encoded, and bodies
+     * are shared with earlier identical ones. The source buffer's position is not changed.
+     */
+    public Payload store(ByteBuffer source) {
+        return store(new ByteBuffer[] {source});
+    }
+
+    /**
+     * Copy a payload given as consecutive parts (e.g. the fragments of a reassembled
+     * message), like {@link #store(ByteBuffer)}. The parts are copied into the arena one
+     * after the other and never joined on the heap; only a head split across parts is
+     * put together to parse it. The parts' positions are not changed.
+     */
+    public Payload store(ByteBuffer[] parts) {
+        ByteBuffer headBytes = parts[0];
+        int bodyOffset = HttpHead.findBodyOffset(headBytes);
+        if (bodyOffset <= 0 && parts.length > 1) {
+            headBytes = leading(parts, HttpHead.MAX_HEAD_SIZE);
+            bodyOffset = HttpHead.findBodyOffset(headBytes);
+        }
+        if (bodyOffset <= 0) {
+            synchronized (this) {
+                return storeBytes(parts);
+            }
+        }
+
+        // Hashing, and inflating compressed bodies it may match, happen outside the lock
+        ByteBuffer[] body = skip(parts, bodyOffset);
+        int bodyLength = remaining(body);
+        long hash = 0;
+        if (bodyLength >= MIN_SHARED_BODY) {
+            hash = ContentHash.hash64(body);
+            inflateCandidates(hash, bodyLength);
+        }
+
+        synchronized (this) {
+            Payload head = storeHead(headBytes.duplicate().limit(headBytes.position() + bodyOffset));
+            if (bodyLength == 0) {
+                return head;
+            }
+            if (bodyLength < MIN_SHARED_BODY) {
+                return new SplicedPayload(head, storeBytes(body), null);
+            }
+            SharedBody shared = internBody(body, bodyLength, hash);
+            return new SplicedPayload(head, shared.bytes, shared);
+        }
+    }
+
+    /**
+     * Inflate the compressed bodies with this hash and length into the decompressed
+     * cache, so {@link #internBody} can compare them under the lock without inflating.
+     * Reading a body released meanwhile is harmless: its mapping outlives its file.
+     */
+    private void inflateCandidates(long hash, int length) {
+        List<Payload> compressed = null;
+        synchronized (this) {
+            for (SharedBody candidate = bodies.get(hash); candidate != null; candidate = candidate.next) {
+                if (candidate.bytes.length() == length && peek(candidate.bytes) == null) {
+                    if (compressed == null) {
+                        compressed = new ArrayList<>(1);
+                    }
+                    compressed.add(candidate.bytes);
+                }
+            }
+        }
+        if (compressed != null) {
+            for (Payload candidate : compressed) {
+                try {
+                    candidate.buffer();
+                } catch (IllegalStateException e) {
+                    // Not shared then; the reader of that payload reports it
+                }
+            }
+        }
+    }
+
+    private Payload storeHead(ByteBuffer head) {
+        byte[] encoded = headerDictionary.encode(head);
+        headBytes.addAndGet(head.remaining());
+        encodedHeadBytes.addAndGet(encoded.length);
+        return new EncodedHead(headerDictionary, storeBytes(ByteBuffer.wrap(encoded)), head.remaining());
+    }
+
+    private SharedBody internBody(ByteBuffer[] body, int length, long hash) {
+        bodyCount.incrementAndGet();
+        bodyBytes.addAndGet(length);
+
+        SharedBody first = bodies.get(hash);
+        for (SharedBody candidate = first; candidate != null; candidate = candidate.next) {
+            if (candidate.bytes.length() != length) {
+                continue;
+            }
+            ByteBuffer bytes = peek(candidate.bytes);
+            if (bytes != null && contentEquals(bytes, body)) {
+                candidate.references++;
+                return candidate;
+            }
+        }
+
+        SharedBody shared = new SharedBody(hash, generation, storeBytes(body), first);
+        bodies.put(hash, shared);
+        distinctBodyCount.incrementAndGet();
+        distinctBodyBytes.addAndGet(length);
+        return shared;
+    }
+
+    /**
+     * The payload's bytes if they can be read without inflating them: raw bytes in the
+     * arena or on the heap, or compressed bytes already in the decompressed cache.
+     * Called under the store lock, where inflating would hold up every writer.
+     *
+     * @return null for compressed bytes that are not cached (only when the cache evicted
+     *         them again after {@link #inflateCandidates}, or the compactor just moved them)
+     */
+    private ByteBuffer peek(Payload payload) {
+        if (payload instanceof StoredPayload && ((StoredPayload) payload).getLocation().isCompressed()) {
+            byte[] cached = decompressedCache.get(payload);
+            return cached != null ? ByteBuffer.wrap(cached) : null;
+        }
+        return payload.buffer();
+    }
+
+    /**
+     * Whether {@code bytes} holds the same bytes as the parts, of the same total length.
+     */
+    private static boolean contentEquals(ByteBuffer bytes, ByteBuffer[] parts) {
+        int offset = bytes.position();
+        for (ByteBuffer part : parts) {
+            int length = part.remaining();
+            if (!bytes.slice(offset, length).equals(part)) {
+                return false;
+            }
+            offset += length;
+        }
+        return true;
+    }
+
+    /**
+     * Copy bytes into the arena as they are, without head encoding or body sharing
+     * (e.g. fragments of a message still being reassembled).
+     */
+    public synchronized Payload storeRaw(ByteBuffer source) {
+        return storeBytes(source);
+    }
+
+    private Payload storeBytes(ByteBuffer... parts) {
+        int length = remaining(parts);
+        if (length == 0) {
+            return Payload.EMPTY;
+        }
+        if (!enabled || length < MIN_ARENA_PAYLOAD) {
+            return heapCopy(parts, length);
+        }
+
+        try {
+            Location location = rawArena.append(parts, length);
+            StoredPayload payload = new StoredPayload(length, System.currentTimeMillis(), generation, location);
+            uncompacted.addLast(payload);
+            bytesStored.addAndGet(length);
+            return payload;
+        } catch (IOException e) {
+            // Don't retry on every payload; stay on the heap until the next clear
+            logging.logToError("Payload arena write failed, keeping payloads on the heap: " + e.getMessage());
+            enabled = false;
+            return heapCopy(parts, length);
+        }
+    }
+
+    private static Payload heapCopy(ByteBuffer[] parts, int length) {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteBuffer part : parts) {
+            part.get(part.position(), bytes, offset, part.remaining());
+            offset += part.remaining();
+        }
+        return Payload.of(bytes);
+    }
+
+    private static int remaining(ByteBuffer[] parts) {
+        int length = 0;
+        for (ByteBuffer part : parts) {
+            length += part.remaining();
+        }
+        return length;
+    }
+
+    /**
+     * The first {@code max} bytes of the parts (or all of them) in one buffer.
+     */
+    private static ByteBuffer leading(ByteBuffer[] parts, int max) {
+        byte[] bytes = new byte[Math.min(max, remaining(parts))];
+        int offset = 0;
+        for (int i = 0; offset < bytes.length; i++) {
+            int n = Math.min(parts[i].remaining(), bytes.length - offset);
+            parts[i].get(parts[i].position(), bytes, offset, n);
+            offset += n;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Views of the parts without their first {@code n} bytes.
+     */
+    private static ByteBuffer[] skip(ByteBuffer[] parts, int n) {
+        int first = 0;
+        while (n >= parts[first].remaining() && first < parts.length - 1) {
+            n -= parts[first].remaining();
+            first++;
+        }
+        ByteBuffer[] rest = new ByteBuffer[parts.length - first];
+        for (int i = 0; i < rest.length; i++) {
+            rest[i] = parts[first + i].duplicate();
+        }
+        rest[0].position(rest[0].position() + n);
+        return rest;
+    }
+
+    /**
+     * Remove and return up to {@code max} uncompacted payloads stored at or before the cutoff.
+     */
+    synchronized List<StoredPayload> takeUncompacted(long storedBefore, int max) {
+        List<StoredPayload> due = new ArrayList<>();
+        while (due.size() < max && !uncompacted.isEmpty()
+                && uncompacted.peekFirst().getStoredAt() <= storedBefore) {
+            due.add(uncompacted.pollFirst());
+        }
+        return due;
+    }
+
+    /**
+     * Move a payload into the compressed arena.
+     *
+     * @param data       compressed bytes, or the raw bytes if they did not compress
+     * @param dictionary dictionary used, or null for raw bytes
+     * @return false if the payload was cleared meanwhile or the write failed
+     */
+    synchronized boolean relocate(StoredPayload payload, ByteBuffer data, CompressionDictionary dictionary) {
+        if (payload.generation != generation || payload.released) {
+            return false;
+        }
+        Location old = payload.getLocation();
+        try {
+            payload.location = compressedArena.append(data, data.remaining(), dictionary);
+        } catch (IOException e) {
+            logging.logToError("Payload compaction write failed: " + e.getMessage());
+            return false;
+        }
+        bytesStored.addAndGet(data.remaining() - old.storedLength);
+        rawArena.release(old.segment);
+        return true;
+    }
+
+    /**
+     * Give up a payload that will never be read again (e.g. its event was dropped).
+     * Its share of a body is returned, and arena space is freed once a segment is unused.
+     */
+    public synchronized void release(Payload payload) {
+        if (payload instanceof SplicedPayload) {
+            SplicedPayload spliced = (SplicedPayload) payload;
+            release(spliced.head);
+            if (spliced.shared != null) {
+                releaseBody(spliced.shared);
+            } else {
+                release(spliced.body);
+            }
+        } else if (payload instanceof EncodedHead) {
+            EncodedHead head = (EncodedHead) payload;
+            if (head.dictionary == headerDictionary) {
+                headBytes.addAndGet(-head.length);
+                encodedHeadBytes.addAndGet(-head.encoded.length());
+            }
+            release(head.encoded);
+        } else if (payload instanceof StoredPayload) {
+            StoredPayload stored = (StoredPayload) payload;
+            if (stored.generation != generation || stored.released) {
+                return;
+            }
+            stored.released = true;
+            Location location = stored.getLocation();
+            bytesStored.addAndGet(-location.storedLength);
+            location.segment.arena.release(location.segment);
+        }
+    }
+
+    private void releaseBody(SharedBody body) {
+        if (body.generation != generation || body.references == 0) {
+            return;
+        }
+        int length = body.bytes.length();
+        bodyCount.decrementAndGet();
+        bodyBytes.addAndGet(-length);
+        if (--body.references > 0) {
+            return;
+        }
+
+        // Unlink from its hash chain
+        SharedBody first = bodies.get(body.hash);
+        if (first == body) {
+            if (body.next != null) {
+                bodies.put(body.hash, body.next);
+            } else {
+                bodies.remove(body.hash);
+            }
+        } else {
+            for (SharedBody previous = first; previous != null; previous = previous.next) {
+                if (previous.next == body) {
+                    previous.next = body.next;
+                    break;
+                }
+            }
+        }
+        distinctBodyCount.decrementAndGet();
+        distinctBodyBytes.addAndGet(-length);
+        release(body.bytes);
+    }
+
+    private byte[] inflate(Location location, int length) {
+        long start = System.nanoTime();
+        Inflater inflater = new Inflater();
+        try {
+            ByteBuffer input = location.slice();
+            inflater.setInput(input);
+            byte[] bytes = new byte[length];
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int inflated = inflater.inflate(bytes, n, length - n);
+                if (inflated == 0) {
+                    if (!inflater.needsDictionary()) {
+                        break;
+                    }
+                    inflater.setDictionary(location.dictionary.getBytes());
+                }
+                n += inflated;
+            }
+            if (n != length) {
+                throw new IllegalStateException("Inflated " + n + " of " + length + " bytes");
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+            inflateNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Release all segments. Payloads handed out before keep working until they are dropped.
+     */
+    public synchronized void clear() {
+        rawArena.clear();
+        compressedArena.clear();
+        uncompacted.clear();
+        bodies.clear();
+        headerDictionary = new HeaderDictionary();
+        decompressedCache.clear();
+        generation++;
+        bytesStored.set(0);
+        headBytes.set(0);
+        encodedHeadBytes.set(0);
+        bodyCount.set(0);
+        distinctBodyCount.set(0);
+        bodyBytes.set(0);
+        distinctBodyBytes.set(0);
+        enabled = directory != null;
+        compactor.resetStats();
+    }
+
+    /**
+     * Stop compacting, release all segments and remove the directory (extension unload).
+     */
+    public synchronized void close() {
+        compactor.shutdown();
+        clear();
+        enabled = false;
+        if (directory != null) {
+            deleteQuietly(directory);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Still mapped on platforms that forbid it (Windows); removed on exit instead
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    public PayloadCompactor getCompactor() {
+        return compactor;
+    }
+
+    // Getters for stats
+    public long getBytesStored() {
+        return bytesStored.get();
+    }
+
+    public synchronized long getBytesMapped() {
+        return rawArena.bytesMapped + compressedArena.bytesMapped;
+    }
+
+    public synchronized int getSegmentCount() {
+        return rawArena.segments.size() + compressedArena.segments.size();
+    }
+
+    /**
+     * Time spent inflating compressed payloads for readers, in nanoseconds.
+     */
+    public long getInflateNanos() {
+        return inflateNanos.get();
+    }
+
+    /**
+     * Size of the stored HTTP/1.x heads before encoding.
+     */
+    public long getHeadBytes() {
+        return headBytes.get();
+    }
+
+    /**
+     * Size of the stored HTTP/1.x heads after dictionary encoding.
+     */
+    public long getEncodedHeadBytes() {
+        return encodedHeadBytes.get();
+    }
+
+    /**
+     * Number of stored message bodies, counting duplicates.
+     */
+    public long getBodyCount() {
+        return bodyCount.get();
+    }
+
+    /**
+     * Number of distinct message bodies actually kept.
+     */
+    public long getDistinctBodyCount() {
+        return distinctBodyCount.get();
+    }
+
+    /**
+     * Bytes not stored because a body was identical to one already kept.
+     */
+    public long getDedupBytesSaved() {
+        return bodyBytes.get() - distinctBodyBytes.get();
+    }
+
+    /**
+     * Body bytes referenced per body byte kept, or 1 if no bodies were stored yet.
+     */
+    public double getDedupRatio() {
+        long distinct = distinctBodyBytes.get();
+        return distinct == 0 ? 1.0 : (double) bodyBytes.get() / distinct;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ecapture.burp.ui;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.ui.editor.HttpRequestEditor;
+import burp.api.montoya.ui.editor.HttpResponseEditor;
+import com.ecapture.burp.event.DecodedBodyCache;
+import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.http.DecodedBody;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.TitledBorder;
+import java.awt.*;
+
+import static burp.api.montoya.ui.editor.EditorOptions.READ_ONLY;
+
+/**
+ * The selected pair with chunked and compressed bodies decoded.
+ * Bodies are decoded on the decoder thread, only while the view is showing, and the
+ * results are kept in the {@link DecodedBodyCache} shared with body search.
+ */
+public class DecodedPanel {
+
+    private final MontoyaApi api;
+    private final DecodedBodyCache cache;
+
+    private final JPanel panel;
+    private final JLabel statusLabel;
+    private final HttpRequestEditor requestEditor;
+    private final HttpResponseEditor responseEditor;
+
+    private MatchedHttpPair pair;
+
+    // Pair whose decoded bodies are in the editors (or being decoded for them)
+    private MatchedHttpPair loadedPair;
+
+    public DecodedPanel(MontoyaApi api, DecodedBodyCache cache) {
+        this.api = api;
+        this.cache = cache;
+
+        panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        statusLabel = new JLabel("Nothing to decode");
+        panel.add(statusLabel, BorderLayout.NORTH);
+
+        requestEditor = api.userInterface().createHttpRequestEditor(READ_ONLY);
+        responseEditor = api.userInterface().createHttpResponseEditor(READ_ONLY);
+
+        JPanel requestPanel = new JPanel(new BorderLayout());
+        requestPanel.setBorder(new TitledBorder("Request (decoded)"));
+        requestPanel.add(requestEditor.uiComponent(), BorderLayout.CENTER);
+
+        JPanel responsePanel = new JPanel(new BorderLayout());
+        responsePanel.setBorder(new TitledBorder("Response (decoded)"));
+        responsePanel.add(responseEditor.uiComponent(), BorderLayout.CENTER);
+
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, requestPanel, responsePanel);
+        split.setResizeWeight(0.5);
+        panel.add(split, BorderLayout.CENTER);
+    }
+
+    public JPanel getPanel() {
+        return panel;
+    }
+
+    /**
+     * Show another pair. Its bodies are decoded on the next {@link #refresh()} while showing.
+     */
+    public void setPair(MatchedHttpPair pair) {
+        this.pair = pair;
+        this.loadedPair = null; // Reload even if the same pair, its response may have arrived
+        refresh();
+    }
+
+    /**
+     * Decode and show the current pair, if the view is showing (called when its tab is selected).
+     */
+    public void refresh() {
+        if (!panel.isShowing() || (pair != null && pair == loadedPair)) {
+            return;
+        }
+        loadedPair = pair;
+        requestEditor.setRequest(HttpRequest.httpRequest(""));
+        responseEditor.setResponse(HttpResponse.httpResponse(""));
+        if (pair == null) {
+            statusLabel.setText("Nothing to decode");
+            return;
+        }
+        statusLabel.setText("Decoding...");
+
+        MatchedHttpPair requested = pair;
+        cache.getAsync(requested, false)
+                .thenCombine(cache.getAsync(requested, true),
+                        (request, response) -> new DecodedBody[]{request, response})
+                .whenComplete((decoded, error) -> SwingUtilities.invokeLater(() -> {
+                    // Another pair may have been selected meanwhile
+                    if (loadedPair != requested) {
+                        return;
+                    }
+                    if (error != null) {
+                        api.logging().logToError("Error decoding bodies: " + error.getMessage());
+                        statusLabel.setText("Decoding failed");
+                        return;
+                    }
+                    show(decoded[0], decoded[1]);
+                }));
+    }
+
+    private void show(DecodedBody request, DecodedBody response) {
+        if (request != null) {
+            requestEditor.setRequest(HttpRequest.httpRequest(ByteArray.byteArray(request.getMessage())));
+        }
+        if (response != null) {
+            responseEditor.setResponse(HttpResponse.httpResponse(ByteArray.byteArray(response.getMessage())));
+        }
+        statusLabel.setText("Request: " + describe(request) + " | Response: " + describe(response));
+    }
+
+    private static String describe(DecodedBody body) {
+        if (body == null) {
+            return "none";
+        }
+        String text = body.isDecoded()
+                ? String.join(", ", body.getCodings()) + " decoded, " + body.getBodyLength() + " bytes"
+                : "unchanged";
+        return body.getProblem() != null ? text + " (" + body.getProblem() + ")" : text;
+    }
+}
@@ -8,6 +8,7 @@ import burp.api.montoya.ui.contextmenu.ContextMenuEvent;
 import burp.api.montoya.ui.contextmenu.ContextMenuItemsProvider;
 import com.ecapture.burp.event.CapturedEvent;
 import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.http2.Http2Messages;
 
 import javax.swing.*;
 import java.awt.*;
@@ -133,7 +134,7 @@ public class ECaptureContextMenuProvider implements ContextMenuItemsProvider {
         
         CapturedEvent request = pair.getRequest();
         if (request.getPayload() != null) {
-            String requestStr = new String(request.getPayload());
+            String requestStr = new String(request.getPayload().toByteArray());
             copyToClipboard(requestStr);
         }
     }
@@ -149,7 +150,7 @@ public class ECaptureContextMenuProvider implements ContextMenuItemsProvider {
         
         CapturedEvent response = pair.getResponse();
         if (response.getPayload() != null) {
-            String responseStr = new String(response.getPayload());
+            String responseStr = new String(response.getPayload().toByteArray());
             copyToClipboard(responseStr);
         }
     }
@@ -206,9 +207,8 @@ public class ECaptureContextMenuProvider implements ContextMenuItemsProvider {
             // Create HttpService
             HttpService httpService = HttpService.httpService(host, port, useHttps);
             
-            // Create HttpRequest with service and raw request string
-            String rawRequest = new String(request.getPayload());
-            return HttpRequest.httpRequest(httpService, rawRequest);
+            // Create HttpRequest with service and raw request (HTTP/2 requests keep their protocol)
+            return Http2Messages.toHttpRequest(httpService, request);
         } catch (Exception e) {
             logging.logToError("Error building HttpRequest: " + e.getMessage());
             return null;
@@ -12,16 +12,19 @@ import com.ecapture.burp.ECaptureBurpExtension;
 import com.ecapture.burp.event.CapturedEvent;
 import com.ecapture.burp.event.EventManager;
 import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.http2.Http2Demuxer;
+import com.ecapture.burp.ingest.Http1Reassembler;
+import com.ecapture.burp.ingest.IngestPipeline;
+import com.ecapture.burp.ingest.RetentionPolicy;
+import com.ecapture.burp.store.PayloadCompactor;
+import com.ecapture.burp.store.PayloadStore;
 import com.ecapture.burp.websocket.ECaptureWebSocketClient;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 
 import static burp.api.montoya.ui.editor.EditorOptions.READ_ONLY;
 
@@ -34,6 +37,7 @@ public class ECaptureTab {
     private final Logging logging;
     private final ECaptureWebSocketClient wsClient;
     private final EventManager eventManager;
+    private final IngestPipeline ingestPipeline;
     
     private JPanel mainPanel;
     private JTextField urlField;
@@ -42,31 +46,54 @@ public class ECaptureTab {
     private JLabel statusLabel;
     private JLabel heartbeatLabel;
     private JLabel statsLabel;
+    private JLabel queueLabel;
+    private JLabel laneLabel;
+    private JLabel compressionLabel;
+    private JLabel dedupLabel;
+    private JLabel retentionLabel;
+    private JComboBox<IngestPipeline.OverflowPolicy> overflowPolicyBox;
+    private JCheckBox parallelBox;
+    
+    // Lane event counts at the previous stats tick, for per-lane throughput
+    private long[] lastLaneCounts;
     
     private JTable eventTable;
-    private DefaultTableModel tableModel;
-    private TableRowSorter<DefaultTableModel> tableSorter;
+    private PairTableModel tableModel;
+    private PairRowSorter tableSorter;
     private JTextField searchField;
+    private JCheckBox searchBodiesBox;
     
     // Burp native HTTP message editors (like Proxy History)
     private HttpRequestEditor requestEditor;
     private HttpResponseEditor responseEditor;
+    private TitledBorder requestBorder;
+    private TitledBorder responseBorder;
+    
+    // Builds editor messages off the EDT; detailPair is the pair they are loaded for
+    private final PairDetailLoader detailLoader = new PairDetailLoader();
+    private MatchedHttpPair detailPair;
+    
+    // Decoded gRPC messages of the selected pair, next to the HTTP editors
+    private GrpcPanel grpcPanel;
+    
+    // Selected pair with chunked and compressed bodies decoded
+    private DecodedPanel decodedPanel;
     
     private ECaptureContextMenuProvider contextMenuProvider;
     
-    // Table columns
-    private static final String[] COLUMN_NAMES = {
-            "#", "Time", "Method", "Host", "URL", "Status", "Req Len", "Resp Len", "Process", "Complete"
-    };
+    private RuntimeLogPanel runtimeLogPanel;
     
-    // Map pair ID to table row index for updates
-    private final java.util.Map<String, Integer> pairToRowMap = new java.util.concurrent.ConcurrentHashMap<>();
+    // Publish table changes once per frame, and refresh the status panel; stopped on unload
+    private Timer frameTimer;
+    private Timer statsTimer;
     
-    public ECaptureTab(MontoyaApi api, ECaptureWebSocketClient wsClient, EventManager eventManager) {
+    public ECaptureTab(MontoyaApi api, ECaptureWebSocketClient wsClient, EventManager eventManager,
+                       IngestPipeline ingestPipeline) {
         this.api = api;
         this.logging = api.logging();
         this.wsClient = wsClient;
         this.eventManager = eventManager;
+        this.ingestPipeline = ingestPipeline;
         
         initializeUI();
         setupListeners();
@@ -90,11 +117,28 @@ public class ECaptureTab {
         JPanel tablePanel = createTablePanel();
         mainSplit.setTopComponent(tablePanel);
         
-        // Bottom - Request/Response split view using Burp's native editors
+        // Bottom - Request/Response split view using Burp's native editors, and the gRPC view
         JSplitPane detailSplit = createDetailSplitPane();
-        mainSplit.setBottomComponent(detailSplit);
+        grpcPanel = new GrpcPanel(logging);
+        decodedPanel = new DecodedPanel(api, eventManager.getDecodedBodies());
+        JTabbedPane detailTabs = new JTabbedPane();
+        detailTabs.addTab("HTTP", detailSplit);
+        detailTabs.addTab("Decoded", decodedPanel.getPanel());
+        detailTabs.addTab("gRPC", grpcPanel.getPanel());
+        // Bodies and messages are decoded only once their tab is shown
+        detailTabs.addChangeListener(e -> {
+            decodedPanel.refresh();
+            grpcPanel.refresh();
+        });
+        mainSplit.setBottomComponent(detailTabs);
+        
+        // Traffic and eCapture runtime logs on separate tabs
+        runtimeLogPanel = new RuntimeLogPanel(eventManager.getRuntimeLogs());
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Traffic", mainSplit);
+        tabs.addTab("Runtime Log", runtimeLogPanel.getPanel());
         
-        mainPanel.add(mainSplit, BorderLayout.CENTER);
+        mainPanel.add(tabs, BorderLayout.CENTER);
     }
     
     private JPanel createTopPanel() {
@@ -123,8 +167,38 @@ public class ECaptureTab {
         
         topPanel.add(connectionPanel, BorderLayout.WEST);
         
+        // Processing panel
+        JPanel processingPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        processingPanel.setBorder(new TitledBorder("Processing"));
+        
+        processingPanel.add(new JLabel("When full:"));
+        overflowPolicyBox = new JComboBox<>(IngestPipeline.OverflowPolicy.values());
+        overflowPolicyBox.setSelectedItem(ingestPipeline.getOverflowPolicy());
+        overflowPolicyBox.setToolTipText("What to do when the ingest queue is full: block the reader, drop, or keep a sample");
+        overflowPolicyBox.addActionListener(e -> ingestPipeline.setOverflowPolicy(
+                (IngestPipeline.OverflowPolicy) overflowPolicyBox.getSelectedItem()));
+        processingPanel.add(overflowPolicyBox);
+        
+        parallelBox = new JCheckBox("Parallel lanes", ingestPipeline.isParallel());
+        parallelBox.setToolTipText("Pair connections on " + eventManager.getLaneCount() +
+                " lanes in parallel; each connection stays in order, but pairs of different connections" +
+                " may be listed out of capture order. Unchecked processes all events in capture order");
+        parallelBox.addActionListener(e -> ingestPipeline.setParallel(parallelBox.isSelected()));
+        processingPanel.add(parallelBox);
+        
+        processingPanel.add(new JLabel("Match timeout (s):"));
+        JSpinner matchTimeoutSpinner = new JSpinner(new SpinnerNumberModel(
+                (int) (eventManager.getMatchTimeoutMs() / 1000), 1, 3600, 10));
+        matchTimeoutSpinner.setToolTipText("Requests without a response after this long are marked as orphans");
+        matchTimeoutSpinner.addChangeListener(e -> eventManager.setMatchTimeoutMs(
+                ((Number) matchTimeoutSpinner.getValue()).longValue() * 1000));
+        processingPanel.add(matchTimeoutSpinner);
+        
+        topPanel.add(processingPanel, BorderLayout.CENTER);
+        topPanel.add(createRetentionPanel(), BorderLayout.SOUTH);
+        
         // Status panel
-        JPanel statusPanel = new JPanel(new GridLayout(3, 1, 5, 2));
+        JPanel statusPanel = new JPanel(new GridLayout(8, 1, 5, 2));
         statusPanel.setBorder(new TitledBorder("Status"));
         
         statusLabel = new JLabel("● Disconnected");
@@ -134,14 +208,68 @@ public class ECaptureTab {
         heartbeatLabel = new JLabel("Heartbeat: -");
         statusPanel.add(heartbeatLabel);
         
-        statsLabel = new JLabel("Events: 0 | Pairs: 0 | Pending: 0");
+        statsLabel = new JLabel("Events: 0 | Pairs: 0 | Pending: 0 | Expired: 0");
         statusPanel.add(statsLabel);
         
+        queueLabel = new JLabel("Queue: 0/" + ingestPipeline.getCapacity() + " | Dropped: 0");
+        statusPanel.add(queueLabel);
+        
+        laneLabel = new JLabel("Lanes (ev/s): -");
+        statusPanel.add(laneLabel);
+        lastLaneCounts = eventManager.getLaneEventCounts();
+        
+        compressionLabel = new JLabel("Compression: -");
+        statusPanel.add(compressionLabel);
+        
+        dedupLabel = new JLabel("Dedup: -");
+        statusPanel.add(dedupLabel);
+        
+        retentionLabel = new JLabel("Retention: -");
+        statusPanel.add(retentionLabel);
+        
         topPanel.add(statusPanel, BorderLayout.EAST);
         
         return topPanel;
     }
     
+    /**
+     * Settings deciding how much of each body is kept (see {@link RetentionPolicy}).
+     */
+    private JPanel createRetentionPanel() {
+        RetentionPolicy policy = wsClient.getRetentionPolicy();
+        JPanel retentionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        retentionPanel.setBorder(new TitledBorder("Body Retention"));
+        
+        retentionPanel.add(new JLabel("Max body (KB):"));
+        JSpinner maxBodySpinner = new JSpinner(new SpinnerNumberModel(
+                policy.getMaxBodySize() / 1024, 0, Integer.MAX_VALUE / 1024, 1024));
+        maxBodySpinner.setToolTipText("Bodies are cut after this many KB before they are stored");
+        maxBodySpinner.addChangeListener(e -> policy.setMaxBodySize(
+                ((Number) maxBodySpinner.getValue()).intValue() * 1024));
+        retentionPanel.add(maxBodySpinner);
+        
+        JCheckBox mediaBox = new JCheckBox("Headers only for media", policy.isMediaHeadersOnly());
+        mediaBox.setToolTipText("Drop the bodies of images, video, audio and fonts (by Content-Type or magic bytes)");
+        mediaBox.addActionListener(e -> policy.setMediaHeadersOnly(mediaBox.isSelected()));
+        retentionPanel.add(mediaBox);
+        
+        retentionPanel.add(new JLabel("Host overrides:"));
+        JTextField overridesField = new JTextField(policy.getHostOverrides(), 40);
+        overridesField.setToolTipText("host=all|headers|size, e.g. api.example.com=all, .cdn.example.com=headers, "
+                + "10.0.0.5=512k (press Enter to apply)");
+        overridesField.addActionListener(e -> {
+            try {
+                policy.setHostOverrides(overridesField.getText());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(mainPanel, ex.getMessage(), "Invalid host override",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        retentionPanel.add(overridesField);
+        
+        return retentionPanel;
+    }
+    
     private JPanel createTablePanel() {
         JPanel panel = new JPanel(new BorderLayout(5, 5));
         panel.setBorder(new TitledBorder("Captured HTTP Traffic (GET/POST only)"));
@@ -150,9 +278,14 @@ public class ECaptureTab {
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
         searchPanel.add(new JLabel("Search:"));
         searchField = new JTextField(30);
-        searchField.setToolTipText("Filter by host, URL, method, or process name");
+        searchField.setToolTipText("Filter by host, URL, method, or process name (press Enter)");
         searchPanel.add(searchField);
         
+        searchBodiesBox = new JCheckBox("Search bodies");
+        searchBodiesBox.setToolTipText("Also match decoded request and response bodies");
+        searchBodiesBox.addActionListener(e -> applyFilter());
+        searchPanel.add(searchBodiesBox);
+        
         JButton searchButton = new JButton("Filter");
         searchButton.addActionListener(e -> applyFilter());
         searchPanel.add(searchButton);
@@ -167,12 +300,8 @@ public class ECaptureTab {
         panel.add(searchPanel, BorderLayout.NORTH);
         
         // Table
-        tableModel = new DefaultTableModel(COLUMN_NAMES, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Rows are read from the pair store; changes reach the table once per frame
+        tableModel = new PairTableModel(eventManager);
         
         eventTable = new JTable(tableModel);
         eventTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -190,8 +319,8 @@ public class ECaptureTab {
         eventTable.getColumnModel().getColumn(8).setPreferredWidth(120); // Process
         eventTable.getColumnModel().getColumn(9).setPreferredWidth(60);  // Complete
         
-        // Row sorter for filtering
-        tableSorter = new TableRowSorter<>(tableModel);
+        // Row sorter; filters in the background
+        tableSorter = new PairRowSorter(tableModel, eventManager);
         eventTable.setRowSorter(tableSorter);
         
         // Selection listener - show request and response when row is selected
@@ -219,12 +348,14 @@ public class ECaptureTab {
         
         // Request panel
         JPanel requestPanel = new JPanel(new BorderLayout());
-        requestPanel.setBorder(new TitledBorder("Request"));
+        requestBorder = new TitledBorder("Request");
+        requestPanel.setBorder(requestBorder);
         requestPanel.add(requestEditor.uiComponent(), BorderLayout.CENTER);
         
         // Response panel
         JPanel responsePanel = new JPanel(new BorderLayout());
-        responsePanel.setBorder(new TitledBorder("Response"));
+        responseBorder = new TitledBorder("Response");
+        responsePanel.setBorder(responseBorder);
         responsePanel.add(responseEditor.uiComponent(), BorderLayout.CENTER);
         
         // Split pane - horizontal split (request on left, response on right)
@@ -289,19 +420,18 @@ public class ECaptureTab {
         }));
         
         // Event manager listeners
-        eventManager.addPairListener(pair -> {
-            javax.swing.SwingUtilities.invokeLater(() -> {
-                try {
-                    updateTableSafe(pair);
-                    updateStats();
-                } catch (Exception e) {
-                    logging.logToError("Error in pair listener: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            });
+        // Pair changes are only marked here; the frame timer publishes them to the table
+        eventManager.addPairListener(tableModel::markChanged);
+        frameTimer = new Timer(PairTableModel.FRAME_INTERVAL_MS, e -> {
+            try {
+                tableModel.flush();
+            } catch (Exception ex) {
+                logging.logToError("Error updating table: " + ex.getMessage());
+            }
         });
+        frameTimer.start();
         
-        // eCapture logs go to Burp Output
+        // eCapture logs go to Burp Output (repeats collapsed and rate limited by the EventManager)
         eventManager.addLogListener(log -> {
             logging.logToOutput("[eCapture] " + log.trim());
         });
@@ -310,58 +440,55 @@ public class ECaptureTab {
         searchField.addActionListener(e -> applyFilter());
         
         // Timer to update heartbeat and stats
-        Timer statsTimer = new Timer(1000, e -> updateHeartbeatAndStats());
+        statsTimer = new Timer(1000, e -> updateHeartbeatAndStats());
         statsTimer.start();
     }
     
-    /**
-     * Safely add or update a row in the table for the given pair.
-     */
-    private void updateTableSafe(MatchedHttpPair pair) {
-        try {
-            String pairId = pair.getUuid();
-            
-            // Check if this pair already has a row
-            Integer existingRow = pairToRowMap.get(pairId);
-            
-            if (existingRow != null && existingRow < tableModel.getRowCount()) {
-                // Update existing row (response arrived)
-                tableModel.setValueAt(pair.getStatusCode(), existingRow, 5);
-                tableModel.setValueAt(pair.getResponseLength(), existingRow, 7);
-                tableModel.setValueAt(pair.isComplete() ? "✓" : "...", existingRow, 9);
-                
-            } else {
-                // Add new row
-                int rowNum = tableModel.getRowCount();
-                
-                java.util.Vector<Object> rowData = new java.util.Vector<>();
-                rowData.add(rowNum + 1);
-                rowData.add(pair.getTimestamp());
-                rowData.add(pair.getMethod());
-                rowData.add(pair.getHost());
-                rowData.add(pair.getUrl());
-                rowData.add(pair.getStatusCode());
-                rowData.add(pair.getRequestLength());
-                rowData.add(pair.getResponseLength());
-                rowData.add(pair.getProcessInfo());
-                rowData.add(pair.isComplete() ? "✓" : "...");
-                
-                tableModel.addRow(rowData);
-                pairToRowMap.put(pairId, rowNum);
-                
-            }
-            
-        } catch (Exception e) {
-            logging.logToError("Error in updateTableSafe: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
     private void updateStats() {
-        statsLabel.setText(String.format("Events: %d | Pairs: %d | Pending: %d",
+        statsLabel.setText(String.format("Events: %d | Pairs: %d | Pending: %d | Expired: %d",
                 eventManager.getTotalEventsReceived(),
                 eventManager.getTotalPairsMatched(),
-                eventManager.getPendingPairsCount()));
+                eventManager.getPendingPairsCount(),
+                eventManager.getExpiredCount()));
+        Http1Reassembler reassembler = wsClient.getReassembler();
+        Http2Demuxer http2 = wsClient.getHttp2Demuxer();
+        queueLabel.setText(String.format("Queue: %d/%d | Dropped: %d | Reassembly: %d pending (%.1f MB), %d incomplete"
+                        + " | HTTP/2: %d messages, %d undecodable",
+                ingestPipeline.getQueueDepth(),
+                ingestPipeline.getCapacity(),
+                ingestPipeline.getDroppedCount(),
+                reassembler.getPendingStreams(),
+                reassembler.getBufferedBytes() / (1024.0 * 1024.0),
+                reassembler.getIncompleteMessages(),
+                http2.getMessagesDecoded(),
+                http2.getDecodeErrors()));
+        
+        PayloadStore store = eventManager.getPayloadStore();
+        PayloadCompactor compactor = store.getCompactor();
+        if (compactor.getPayloadsCompacted() > 0) {
+            compressionLabel.setText(String.format("Compression: %.0f%% of %.1f MB | CPU: deflate %d ms, inflate %d ms",
+                    compactor.getCompressionRatio() * 100,
+                    compactor.getBytesBefore() / (1024.0 * 1024.0),
+                    compactor.getDeflateNanos() / 1_000_000,
+                    store.getInflateNanos() / 1_000_000));
+        } else {
+            compressionLabel.setText("Compression: -");
+        }
+        if (store.getHeadBytes() > 0) {
+            dedupLabel.setText(String.format("Dedup: %.1fx (%d bodies, %d distinct) | Saved: %.1f MB | Headers: %.0f%%",
+                    store.getDedupRatio(),
+                    store.getBodyCount(),
+                    store.getDistinctBodyCount(),
+                    store.getDedupBytesSaved() / (1024.0 * 1024.0),
+                    store.getEncodedHeadBytes() * 100.0 / store.getHeadBytes()));
+        } else {
+            dedupLabel.setText("Dedup: -");
+        }
+        RetentionPolicy retention = wsClient.getRetentionPolicy();
+        retentionLabel.setText(String.format("Retention: %d bodies cut, %d headers only | Dropped: %.1f MB",
+                retention.getTruncatedBodies(),
+                retention.getHeaderOnlyBodies(),
+                retention.getBytesDropped() / (1024.0 * 1024.0)));
     }
     
     private void updateHeartbeatAndStats() {
@@ -382,10 +509,25 @@ public class ECaptureTab {
         }
         
         updateStats();
+        updateLaneThroughput();
+    }
+    
+    /**
+     * Show events per second handled by each pairing lane (called once per second).
+     */
+    private void updateLaneThroughput() {
+        long[] counts = eventManager.getLaneEventCounts();
+        StringBuilder text = new StringBuilder("Lanes (ev/s):");
+        for (int i = 0; i < counts.length; i++) {
+            text.append(i == 0 ? " " : " | ").append(counts[i] - lastLaneCounts[i]);
+        }
+        laneLabel.setText(text.toString());
+        lastLaneCounts = counts;
     }
     
     /**
      * Show selected pair's request and response in Burp's native editors.
+     * The messages are built in the background; the editors show a placeholder until then.
      */
     private void showSelectedPairDetails() {
         int selectedRow = eventTable.getSelectedRow();
@@ -396,39 +538,70 @@ public class ECaptureTab {
         // Convert view index to model index (for filtering)
         int modelRow = eventTable.convertRowIndexToModel(selectedRow);
         
-        List<MatchedHttpPair> pairs = eventManager.getMatchedPairs();
-        if (modelRow >= pairs.size()) {
+        MatchedHttpPair pair = tableModel.getPair(modelRow);
+        if (pair == null) {
             return;
         }
         
-        MatchedHttpPair pair = pairs.get(modelRow);
+        detailPair = pair;
+        grpcPanel.setPair(pair);
+        decodedPanel.setPair(pair);
+        
+        CompletableFuture<PairDetailLoader.Messages> load = detailLoader.load(pair,
+                pairAtViewRow(selectedRow - 1), pairAtViewRow(selectedRow + 1));
+        if (load.isDone() && !load.isCompletedExceptionally()) {
+            showDetails(pair, load.join());
+            return;
+        }
         
+        // Placeholder until the messages are built
+        requestBorder.setTitle("Request (loading...)");
+        responseBorder.setTitle("Response (loading...)");
+        mainPanel.repaint();
         try {
-            // Build HttpRequest for the editor
-            HttpRequest httpRequest = null;
-            if (pair.getRequest() != null && pair.getRequest().getPayload() != null) {
-                String rawRequest = new String(pair.getRequest().getPayload());
-                httpRequest = HttpRequest.httpRequest(rawRequest);
+            requestEditor.setRequest(HttpRequest.httpRequest(""));
+            responseEditor.setResponse(HttpResponse.httpResponse(""));
+        } catch (Exception e) {
+            // Ignore
+        }
+        
+        load.whenComplete((messages, error) -> SwingUtilities.invokeLater(() -> {
+            // Another row may have been selected meanwhile
+            if (detailPair != pair || load.isCancelled()) {
+                return;
             }
-            
-            // Build HttpResponse for the editor
-            HttpResponse httpResponse = null;
-            if (pair.getResponse() != null && pair.getResponse().getPayload() != null) {
-                String rawResponse = new String(pair.getResponse().getPayload());
-                httpResponse = HttpResponse.httpResponse(rawResponse);
+            if (error != null) {
+                logging.logToError("Error showing details: " + error.getMessage());
+                return;
             }
-            
+            showDetails(pair, messages);
+        }));
+    }
+    
+    private MatchedHttpPair pairAtViewRow(int viewRow) {
+        if (viewRow < 0 || viewRow >= eventTable.getRowCount()) {
+            return null;
+        }
+        return tableModel.getPair(eventTable.convertRowIndexToModel(viewRow));
+    }
+    
+    private void showDetails(MatchedHttpPair pair, PairDetailLoader.Messages messages) {
+        requestBorder.setTitle(editorTitle("Request", pair.getRequest()));
+        responseBorder.setTitle(editorTitle("Response", pair.getResponse()));
+        mainPanel.repaint();
+        
+        try {
             // Set request in editor
-            if (httpRequest != null) {
-                requestEditor.setRequest(httpRequest);
+            if (messages.getRequest() != null) {
+                requestEditor.setRequest(messages.getRequest());
             } else {
                 // Clear the editor if no request
                 requestEditor.setRequest(HttpRequest.httpRequest(""));
             }
             
             // Set response in editor
-            if (httpResponse != null) {
-                responseEditor.setResponse(httpResponse);
+            if (messages.getResponse() != null) {
+                responseEditor.setResponse(messages.getResponse());
             } else {
                 // Clear the editor if no response
                 responseEditor.setResponse(HttpResponse.httpResponse(""));
@@ -439,27 +612,37 @@ public class ECaptureTab {
         }
     }
     
-    private void applyFilter() {
-        String filterText = searchField.getText().trim();
-        
-        if (filterText.isEmpty()) {
-            tableSorter.setRowFilter(null);
-        } else {
-            try {
-                // Case-insensitive filter across multiple columns (Host, URL, Method, Process)
-                tableSorter.setRowFilter(RowFilter.regexFilter("(?i)" + Pattern.quote(filterText)));
-            } catch (Exception e) {
-                logging.logToError("Invalid filter pattern: " + e.getMessage());
-            }
+    /**
+     * Editor title, noting bodies cut by the retention policy.
+     */
+    private static String editorTitle(String title, CapturedEvent event) {
+        if (event == null || !event.isBodyTruncated()) {
+            return title;
         }
+        return String.format("%s (body truncated: %,d of %,d bytes not kept)",
+                title, event.getOmittedBytes(), event.getLength());
+    }
+    
+    private void applyFilter() {
+        // Case-insensitive match on Method, Host, URL and Process (and decoded bodies if asked)
+        tableSorter.setFilter(searchField.getText().trim(), searchBodiesBox.isSelected());
     }
     
     private void clearAll() {
+        wsClient.clearStreams();
         eventManager.clear();
-        tableModel.setRowCount(0);
-        pairToRowMap.clear();
+        ingestPipeline.resetCounters();
+        wsClient.getRetentionPolicy().resetCounters();
+        tableModel.clear();
+        detailLoader.clear();
+        detailPair = null;
+        runtimeLogPanel.reload();
         
         // Clear editors
+        grpcPanel.setPair(null);
+        decodedPanel.setPair(null);
+        requestBorder.setTitle("Request");
+        responseBorder.setTitle("Response");
         try {
             requestEditor.setRequest(HttpRequest.httpRequest(""));
             responseEditor.setResponse(HttpResponse.httpResponse(""));
@@ -480,12 +663,7 @@ public class ECaptureTab {
         }
         
         int modelRow = eventTable.convertRowIndexToModel(selectedRow);
-        List<MatchedHttpPair> pairs = eventManager.getMatchedPairs();
-        
-        if (modelRow < pairs.size()) {
-            return pairs.get(modelRow);
-        }
-        return null;
+        return tableModel.getPair(modelRow);
     }
     
     /**
@@ -495,6 +673,17 @@ public class ECaptureTab {
         return eventTable;
     }
     
+    /**
+     * Stop background work (extension unload).
+     */
+    public void shutdown() {
+        frameTimer.stop();
+        statsTimer.stop();
+        tableSorter.shutdown();
+        detailLoader.shutdown();
+        grpcPanel.shutdown();
+    }
+    
     /**
      * Get the main UI component.
      */
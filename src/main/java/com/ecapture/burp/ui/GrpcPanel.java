@@ -0,0 +1,243 @@
+package com.ecapture.burp.ui;
+
+import burp.api.montoya.logging.Logging;
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.grpc.GrpcBody;
+import com.ecapture.burp.grpc.ProtoSchema;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Paged view of the gRPC messages of the selected pair.
+ * Messages are only decoded while the view is showing, one page at a time, so streaming
+ * RPCs with thousands of messages stay cheap to select. Indexing and decoding run on the
+ * decoder thread; only the finished page is shown on the EDT.
+ */
+public class GrpcPanel {
+
+    private static final int PAGE_SIZE = 50;
+
+    private final Logging logging;
+    private final ProtoSchema schema = new ProtoSchema();
+
+    private final JPanel panel;
+    private final JComboBox<String> sideBox;
+    private final JLabel pageLabel;
+    private final JTextArea textArea;
+
+    private final ExecutorService decoder;
+
+    private MatchedHttpPair pair;
+
+    // Indexed body of the side shown; null until first shown for the pair
+    private GrpcBody body;
+    private int pageStart;
+
+    // Bumped by each page requested (EDT); pages of older requests are not shown
+    private volatile int generation;
+
+    public GrpcPanel(Logging logging) {
+        this.logging = logging;
+        this.decoder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-gRPC");
+            t.setDaemon(true);
+            return t;
+        });
+
+        panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
+
+        sideBox = new JComboBox<>(new String[]{"Request", "Response"});
+        sideBox.addActionListener(e -> {
+            body = null;
+            pageStart = 0;
+            refresh();
+        });
+        controlPanel.add(sideBox);
+
+        JButton firstButton = new JButton("|<");
+        firstButton.setToolTipText("First messages");
+        firstButton.addActionListener(e -> showPage(0));
+        controlPanel.add(firstButton);
+
+        JButton previousButton = new JButton("<");
+        previousButton.setToolTipText("Previous page");
+        previousButton.addActionListener(e -> showPage(pageStart - PAGE_SIZE));
+        controlPanel.add(previousButton);
+
+        JButton nextButton = new JButton(">");
+        nextButton.setToolTipText("Next page");
+        nextButton.addActionListener(e -> showPage(pageStart + PAGE_SIZE));
+        controlPanel.add(nextButton);
+
+        JButton lastButton = new JButton(">|");
+        lastButton.setToolTipText("Last messages");
+        lastButton.addActionListener(e -> showPage(Integer.MAX_VALUE));
+        controlPanel.add(lastButton);
+
+        pageLabel = new JLabel("No gRPC messages");
+        controlPanel.add(pageLabel);
+
+        JButton descriptorsButton = new JButton("Load descriptors...");
+        descriptorsButton.setToolTipText("Load descriptor sets (protoc --include_imports --descriptor_set_out) "
+                + "for field names and types");
+        descriptorsButton.addActionListener(e -> loadDescriptors());
+        controlPanel.add(descriptorsButton);
+
+        panel.add(controlPanel, BorderLayout.NORTH);
+
+        textArea = new JTextArea();
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        panel.add(new JScrollPane(textArea), BorderLayout.CENTER);
+    }
+
+    public JPanel getPanel() {
+        return panel;
+    }
+
+    /**
+     * Show another pair. Its messages are decoded on the next {@link #refresh()} while showing.
+     */
+    public void setPair(MatchedHttpPair pair) {
+        this.pair = pair;
+        this.body = null;
+        this.pageStart = 0;
+        refresh();
+    }
+
+    /**
+     * Decode and show the current page, if the view is showing (called when its tab is selected).
+     */
+    public void refresh() {
+        if (!panel.isShowing()) {
+            return;
+        }
+        CapturedEvent event = currentEvent();
+        if (event == null) {
+            generation++;
+            body = null;
+            pageLabel.setText("No gRPC messages");
+            textArea.setText("");
+            return;
+        }
+        load(event, body, pageStart);
+    }
+
+    private CapturedEvent currentEvent() {
+        if (pair == null) {
+            return null;
+        }
+        return sideBox.getSelectedIndex() == 0 ? pair.getRequest() : pair.getResponse();
+    }
+
+    private void showPage(int start) {
+        CapturedEvent event = currentEvent();
+        if (body == null || event == null) {
+            return;
+        }
+        load(event, body, start);
+    }
+
+    /**
+     * Index the event's body (unless {@code indexed} is already its index) and render the
+     * page at {@code start} on the decoder thread, then show it on the EDT. EDT only.
+     */
+    private void load(CapturedEvent event, GrpcBody indexed, int start) {
+        int loadGeneration = ++generation;
+        MatchedHttpPair requested = pair;
+        boolean request = sideBox.getSelectedIndex() == 0;
+        pageLabel.setText("Decoding...");
+
+        decoder.execute(() -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            String label;
+            String text;
+            GrpcBody loaded = null;
+            int first = 0;
+            try {
+                loaded = indexed != null ? indexed : GrpcBody.of(event);
+                if (loaded == null) {
+                    label = "No gRPC messages";
+                    text = "";
+                } else {
+                    int size = loaded.size();
+                    int lastPageStart = Math.max(0, (size - 1) / PAGE_SIZE * PAGE_SIZE);
+                    first = Math.max(0, Math.min(start, lastPageStart));
+
+                    // The method path picks the message type when descriptors are loaded
+                    ProtoSchema.MessageType type = null;
+                    if (!schema.isEmpty() && requested.getRequest() != null) {
+                        type = schema.getMethodType(requested.getRequest().getUrl(), request);
+                    }
+
+                    String status = loaded.getStatus() != null ? " | grpc-status: " + loaded.getStatus() : "";
+                    label = size == 0 ? "No messages" + status : String.format("Messages %d-%d of %d%s%s",
+                            first + 1, Math.min(size, first + PAGE_SIZE), size,
+                            loaded.isTruncated() ? " (cut off)" : "", status);
+                    text = loaded.renderPage(first, PAGE_SIZE, schema, type);
+                }
+            } catch (Exception e) {
+                logging.logToError("Error decoding gRPC messages: " + e.getMessage());
+                label = "Decoding failed";
+                text = "";
+            }
+
+            GrpcBody shown = loaded;
+            int shownStart = first;
+            String shownLabel = label;
+            String shownText = text;
+            SwingUtilities.invokeLater(() -> {
+                // Another pair, side or page may have been requested meanwhile
+                if (generation != loadGeneration) {
+                    return;
+                }
+                body = shown;
+                pageStart = shownStart;
+                pageLabel.setText(shownLabel);
+                textArea.setText(shownText);
+                textArea.setCaretPosition(0);
+            });
+        });
+    }
+
+    private void loadDescriptors() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setMultiSelectionEnabled(true);
+        chooser.setDialogTitle("Load protobuf descriptor sets");
+        if (chooser.showOpenDialog(panel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        int loaded = 0;
+        for (File file : chooser.getSelectedFiles()) {
+            try {
+                loaded += schema.load(file.toPath());
+            } catch (IOException e) {
+                logging.logToError("Failed to load descriptor set " + file + ": " + e.getMessage());
+                JOptionPane.showMessageDialog(panel, "Not a descriptor set: " + file.getName(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+        logging.logToOutput("Loaded " + loaded + " protobuf message types");
+        refresh();
+    }
+
+    /**
+     * Stop the decoder thread (extension unload).
+     */
+    public void shutdown() {
+        generation++;
+        decoder.shutdownNow();
+    }
+}
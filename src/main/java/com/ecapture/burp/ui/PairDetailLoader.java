@@ -0,0 +1,195 @@
+package com.ecapture.burp.ui;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.http2.Http2Messages;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds the Burp request and response of the selected pair on the loader thread, so
+ * large messages never stall the EDT, and keeps built messages in an LRU cache bounded
+ * by total payload size.
+ *
+ * Each {@link #load} replaces the previous one: loads and prefetches still queued for an
+ * earlier selection are skipped, so moving through rows only builds what is looked at.
+ */
+public class PairDetailLoader {
+
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final long maxBytes;
+
+    // Key: pair ID; access order for LRU eviction
+    private final LinkedHashMap<String, Messages> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    private final ExecutorService loader;
+
+    // Bumped by each load (EDT); tasks of older loads are skipped
+    private volatile int generation;
+
+    public PairDetailLoader() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public PairDetailLoader(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-Detail");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Burp messages of a pair, built on the loader thread (or complete at once if cached),
+     * then the neighbours are built into the cache. EDT only.
+     *
+     * @return future cancelled if another load starts before this one runs
+     */
+    public CompletableFuture<Messages> load(MatchedHttpPair pair, MatchedHttpPair... neighbours) {
+        int loadGeneration = ++generation;
+        CompletableFuture<Messages> result;
+        Messages cached = cached(pair);
+        if (cached != null) {
+            result = CompletableFuture.completedFuture(cached);
+        } else {
+            result = new CompletableFuture<>();
+            loader.execute(() -> {
+                if (generation != loadGeneration) {
+                    result.cancel(false);
+                    return;
+                }
+                try {
+                    result.complete(build(pair));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+        for (MatchedHttpPair neighbour : neighbours) {
+            if (neighbour == null) {
+                continue;
+            }
+            loader.execute(() -> {
+                if (generation == loadGeneration && cached(neighbour) == null) {
+                    try {
+                        build(neighbour);
+                    } catch (Exception e) {
+                        // Reported when the row is selected
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Cached messages of a pair, if they match its current request and response.
+     */
+    private synchronized Messages cached(MatchedHttpPair pair) {
+        Messages messages = entries.get(pair.getUuid());
+        if (messages != null && messages.requestEvent == pair.getRequest()
+                && messages.responseEvent == pair.getResponse()) {
+            return messages;
+        }
+        return null;
+    }
+
+    private Messages build(MatchedHttpPair pair) {
+        CapturedEvent requestEvent = pair.getRequest();
+        CapturedEvent responseEvent = pair.getResponse();
+
+        HttpRequest request = null;
+        if (requestEvent != null && requestEvent.getPayload() != null) {
+            if (requestEvent.getStreamId() > 0) {
+                // HTTP/2 requests need a service for their :scheme and :authority
+                int port = pair.getPort() > 0 ? pair.getPort() : 443;
+                HttpService service = HttpService.httpService(pair.getHost(), port, port == 443 || port == 8443);
+                request = Http2Messages.toHttpRequest(service, requestEvent);
+            } else {
+                request = HttpRequest.httpRequest(Http2Messages.toByteArray(requestEvent.getPayload()));
+            }
+        }
+
+        HttpResponse response = null;
+        if (responseEvent != null && responseEvent.getPayload() != null) {
+            response = Http2Messages.toHttpResponse(responseEvent);
+        }
+
+        Messages messages = new Messages(requestEvent, responseEvent, request, response);
+        put(pair.getUuid(), messages);
+        return messages;
+    }
+
+    private synchronized void put(String key, Messages messages) {
+        if (messages.size > maxBytes) {
+            return; // Would evict everything else
+        }
+        Messages previous = entries.put(key, messages);
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += messages.size;
+
+        Iterator<Map.Entry<String, Messages>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().size;
+            it.remove();
+        }
+    }
+
+    /**
+     * Drop cached messages and skip queued loads (after the pair store was cleared).
+     */
+    public void clear() {
+        generation++;
+        synchronized (this) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    public void shutdown() {
+        generation++;
+        loader.shutdownNow();
+        clear();
+    }
+
+    /**
+     * Burp request and response of a pair; either is null if the pair has no such message.
+     */
+    public static final class Messages {
+        private final CapturedEvent requestEvent;
+        private final CapturedEvent responseEvent;
+        private final HttpRequest request;
+        private final HttpResponse response;
+        private final long size;
+
+        Messages(CapturedEvent requestEvent, CapturedEvent responseEvent, HttpRequest request, HttpResponse response) {
+            this.requestEvent = requestEvent;
+            this.responseEvent = responseEvent;
+            this.request = request;
+            this.response = response;
+            this.size = (requestEvent != null && requestEvent.getPayload() != null ? requestEvent.getPayload().length() : 0)
+                    + (responseEvent != null && responseEvent.getPayload() != null ? responseEvent.getPayload().length() : 0);
+        }
+
+        public HttpRequest getRequest() {
+            return request;
+        }
+
+        public HttpResponse getResponse() {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package com.ecapture.burp.ui;
+
+import com.ecapture.burp.event.DecodedBodyCache;
+import com.ecapture.burp.event.EventManager;
+import com.ecapture.burp.event.MatchedHttpPair;
+import com.ecapture.burp.http.DecodedBody;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Row sorter for the traffic table that filters and sorts in the background.
+ *
+ * Filtering runs on the filter thread against lowercase keys of the searchable columns
+ * (method, host, URL, process), built once per row the first time a filter needs them.
+ * Matching rows are handed to the view a chunk at a time while the scan goes on, and a
+ * new query cancels the running scan. Rows added while a filter is active are tested
+ * once, on arrival, instead of filtering the whole table again.
+ *
+ * Sorting takes typed keys of every row ({@link PairSortIndex}) and merge sorts the row
+ * indices on the sort thread; the result replaces the view in one step, and the old order
+ * stays on screen until then. Rows arriving later are placed by binary search against the
+ * same keys rather than sorting again. Keys are taken once per row, so a row that changes
+ * afterwards (a response arriving) keeps its place until the next sort.
+ *
+ * All view state is owned by the EDT.
+ */
+public class PairRowSorter extends RowSorter<PairTableModel> {
+
+    // Rows tested between two hand-offs to the view
+    private static final int SCAN_CHUNK = 8192;
+
+    private final PairTableModel model;
+    private final EventManager eventManager;
+    private final ExecutorService filterExecutor;
+    private final ExecutorService sortExecutor;
+
+    // View row to model row, for the first viewCount view rows; null when the view is
+    // the model itself (no filter, no sort)
+    private int[] viewToModel;
+    private int viewCount;
+
+    // Inverse of viewToModel, built on demand; null when stale
+    private int[] modelToView;
+
+    // Model rows the sorter knows about
+    private int modelRowCount;
+
+    private List<SortKey> sortKeys = Collections.emptyList();
+
+    // Keys and full order of the last finished sort, or null; bumping the sort generation
+    // drops a running sort
+    private PairSortIndex sortIndex;
+    private int[] sortedOrder;
+    private int sortGeneration;
+
+    // Active query (lowercase), or null; bumping the generation cancels running scans
+    private String query;
+    private boolean searchBodies;
+    private volatile int generation;
+
+    // Filter thread only: lowercase search keys by model row
+    private final RowKeys rowKeys = new RowKeys();
+
+    public PairRowSorter(PairTableModel model, EventManager eventManager) {
+        this.model = model;
+        this.eventManager = eventManager;
+        this.modelRowCount = model.getRowCount();
+        this.viewCount = modelRowCount;
+        this.filterExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-Filter");
+            t.setDaemon(true);
+            return t;
+        });
+        this.sortExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "eCapture-Sort");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Show only rows whose method, host, URL or process contains the text (ignoring case),
+     * or, with {@code searchBodies}, whose decoded request or response body does.
+     * An empty text shows all rows. Matches appear as the background scan finds them.
+     */
+    public void setFilter(String text, boolean searchBodies) {
+        int[] previous = previousMapping();
+        generation++;
+        this.query = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+        this.searchBodies = searchBodies;
+
+        if (query == null) {
+            showAllRows();
+        } else {
+            viewToModel = new int[Math.max(16, Math.min(modelRowCount, SCAN_CHUNK))];
+            viewCount = 0;
+            modelToView = null;
+            scan(0, modelRowCount);
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    /**
+     * Whether a filter is active.
+     */
+    public boolean isFiltered() {
+        return query != null;
+    }
+
+    /**
+     * Stop the filter and sort threads (extension unload).
+     */
+    public void shutdown() {
+        generation++;
+        sortGeneration++;
+        filterExecutor.shutdownNow();
+        sortExecutor.shutdownNow();
+    }
+
+    /**
+     * Test model rows {@code [from, to)} against the active query on the filter thread,
+     * handing matches to the view as they are found.
+     */
+    private void scan(int from, int to) {
+        int scanGeneration = generation;
+        String text = query;
+        boolean bodies = searchBodies;
+        DecodedBodyCache bodyCache = eventManager.getDecodedBodies();
+        filterExecutor.execute(() -> {
+            int[] matches = new int[SCAN_CHUNK];
+            for (int start = from; start < to; start += SCAN_CHUNK) {
+                int end = Math.min(to, start + SCAN_CHUNK);
+                int found = 0;
+                for (int row = start; row < end; row++) {
+                    if (generation != scanGeneration) {
+                        return; // Query changed or table cleared
+                    }
+                    MatchedHttpPair pair = eventManager.getPair(row);
+                    if (pair != null && (rowKeys.get(row, pair).contains(text)
+                            || (bodies && bodyContains(bodyCache, pair, text)))) {
+                        matches[found++] = row;
+                    }
+                }
+                if (found > 0) {
+                    int[] chunk = Arrays.copyOf(matches, found);
+                    SwingUtilities.invokeLater(() -> addMatches(scanGeneration, chunk));
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether either message, with its Content-Encoding undone, contains the text.
+     * gRPC bodies are searched as their raw frames: text in string fields of uncompressed
+     * messages matches, but messages compressed per grpc-encoding and the decoded view
+     * (field names, numbers as text) are not searched.
+     */
+    private static boolean bodyContains(DecodedBodyCache cache, MatchedHttpPair pair, String text) {
+        DecodedBody request = cache.get(pair, false);
+        if (request != null && request.contains(text)) {
+            return true;
+        }
+        DecodedBody response = cache.get(pair, true);
+        return response != null && response.contains(text);
+    }
+
+    /**
+     * Add rows found by a scan to the filtered view (EDT).
+     */
+    private void addMatches(int scanGeneration, int[] rows) {
+        if (scanGeneration != generation || query == null) {
+            return;
+        }
+        int[] previous = previousMapping();
+        insertRows(rows, rows.length);
+        fireRowSorterChanged(previous);
+    }
+
+    /**
+     * Insert model rows (in increasing order) into the view, in sort order once a sort has finished.
+     */
+    private void insertRows(int[] rows, int count) {
+        ensureCapacity(viewCount + count);
+        if (sortIndex == null) {
+            // Arrivals and scan chunks come in model order, after the rows already shown
+            System.arraycopy(rows, 0, viewToModel, viewCount, count);
+            viewCount += count;
+            modelToView = null;
+            return;
+        }
+        PairSortIndex index = sortIndex;
+        index.extend(modelRowCount, eventManager);
+        if (count <= 8) {
+            for (int i = 0; i < count; i++) {
+                int position = insertionPoint(index, rows[i]);
+                System.arraycopy(viewToModel, position, viewToModel, position + 1, viewCount - position);
+                viewToModel[position] = rows[i];
+                viewCount++;
+            }
+        } else {
+            // Sort the new rows, then merge them in from the back
+            int[] sorted = Arrays.copyOf(rows, count);
+            RowIndexSort.sort(sorted, 0, count, index::compare);
+            int i = viewCount - 1;
+            int j = count - 1;
+            for (int k = viewCount + count - 1; j >= 0; k--) {
+                if (i >= 0 && index.compare(viewToModel[i], sorted[j]) > 0) {
+                    viewToModel[k] = viewToModel[i--];
+                } else {
+                    viewToModel[k] = sorted[j--];
+                }
+            }
+            viewCount += count;
+        }
+        modelToView = null;
+    }
+
+    /**
+     * View position of a model row in the sorted view (binary search).
+     */
+    private int insertionPoint(PairSortIndex index, int modelRow) {
+        int low = 0;
+        int high = viewCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (index.compare(viewToModel[mid], modelRow) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Drop the filter: every model row, in the order of the last sort if there is one.
+     */
+    private void showAllRows() {
+        modelToView = null;
+        if (sortIndex == null) {
+            viewToModel = null;
+            viewCount = modelRowCount;
+            return;
+        }
+        viewToModel = Arrays.copyOf(sortedOrder, Math.max(modelRowCount, 16));
+        viewCount = sortedOrder.length;
+        insertRange(sortedOrder.length, modelRowCount);
+    }
+
+    /**
+     * Insert model rows {@code [from, to)} into the view.
+     */
+    private void insertRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = from + i;
+        }
+        insertRows(rows, rows.length);
+    }
+
+    /**
+     * Sort all model rows by the current sort keys on the sort thread.
+     */
+    private void startSort() {
+        int sortId = ++sortGeneration;
+        int rowCount = modelRowCount;
+        PairSortIndex index = new PairSortIndex(sortKeys);
+        sortExecutor.execute(() -> {
+            if (sortId != sortGeneration) {
+                return;
+            }
+            index.extend(rowCount, eventManager);
+            int[] order = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                order[i] = i;
+            }
+            RowIndexSort.parallelSort(order, index::compare);
+            SwingUtilities.invokeLater(() -> applySort(sortId, index, order));
+        });
+    }
+
+    /**
+     * Replace the view with the result of a finished sort (EDT).
+     */
+    private void applySort(int sortId, PairSortIndex index, int[] order) {
+        if (sortId != sortGeneration) {
+            return; // Sort keys changed or table cleared meanwhile
+        }
+        int[] previous = previousMapping();
+        sortIndex = index;
+        sortedOrder = order;
+        if (query == null) {
+            showAllRows();
+        } else {
+            // Keep the rows the filter has found so far, in the new order
+            BitSet shown = new BitSet(modelRowCount);
+            for (int i = 0; i < viewCount; i++) {
+                shown.set(viewToModel == null ? i : viewToModel[i]);
+            }
+            int[] view = new int[Math.max(viewCount, 16)];
+            int count = 0;
+            for (int row : order) {
+                if (shown.get(row)) {
+                    view[count++] = row;
+                }
+            }
+            // Rows newer than the sort go in by their keys
+            int[] rest = new int[viewCount - count];
+            int restCount = 0;
+            for (int row = shown.nextSetBit(order.length); row >= 0; row = shown.nextSetBit(row + 1)) {
+                rest[restCount++] = row;
+            }
+            viewToModel = view;
+            viewCount = count;
+            modelToView = null;
+            insertRows(rest, restCount);
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (viewToModel == null) {
+            // Materialize the identity view before changing it
+            viewToModel = new int[Math.max(capacity, 16)];
+            for (int i = 0; i < viewCount; i++) {
+                viewToModel[i] = i;
+            }
+        } else if (capacity > viewToModel.length) {
+            viewToModel = Arrays.copyOf(viewToModel, Math.max(capacity, viewToModel.length * 2));
+        }
+    }
+
+    /**
+     * The current mapping for a sorter event; null means it was the model itself.
+     */
+    private int[] previousMapping() {
+        return viewToModel == null ? null : Arrays.copyOf(viewToModel, viewCount);
+    }
+
+    // RowSorter
+
+    @Override
+    public PairTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortOrder order = SortOrder.ASCENDING;
+        if (!keys.isEmpty() && keys.get(0).getColumn() == column) {
+            order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            keys.remove(0);
+        } else {
+            keys.removeIf(key -> key.getColumn() == column);
+        }
+        keys.add(0, new SortKey(column, order));
+        // Only the most recent columns matter for ties
+        setSortKeys(keys.size() > 3 ? keys.subList(0, 3) : keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys == null ? Collections.emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(keys));
+        if (newKeys.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = newKeys;
+        fireSortOrderChanged();
+        if (!sortKeys.isEmpty()) {
+            // The current order stays until the sort is done
+            startSort();
+            return;
+        }
+        int[] previous = previousMapping();
+        sortGeneration++;
+        sortIndex = null;
+        sortedOrder = null;
+        if (query == null) {
+            showAllRows();
+        } else {
+            // Back to model order
+            Arrays.sort(viewToModel, 0, viewCount);
+            modelToView = null;
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (index < 0 || index >= viewCount) {
+            throw new IndexOutOfBoundsException("Invalid view index: " + index);
+        }
+        return viewToModel == null ? index : viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (index < 0 || index >= modelRowCount) {
+            return -1;
+        }
+        if (viewToModel == null) {
+            return index;
+        }
+        if (sortKeys.isEmpty()) {
+            // Filtered view in model order
+            int position = Arrays.binarySearch(viewToModel, 0, viewCount, index);
+            return position >= 0 ? position : -1;
+        }
+        if (modelToView == null) {
+            modelToView = new int[modelRowCount];
+            Arrays.fill(modelToView, -1);
+            for (int i = 0; i < viewCount; i++) {
+                if (viewToModel[i] < modelRowCount) {
+                    modelToView[viewToModel[i]] = i;
+                }
+            }
+        }
+        return index < modelToView.length ? modelToView[index] : -1;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewCount;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        // The table was cleared (or replaced): start over, with fresh keys
+        int[] previous = previousMapping();
+        modelRowCount = model.getRowCount();
+        generation++;
+        filterExecutor.execute(rowKeys::clear);
+        sortIndex = null;
+        sortedOrder = null;
+        if (sortKeys.isEmpty()) {
+            sortGeneration++;
+        } else {
+            startSort();
+        }
+        if (query == null) {
+            showAllRows();
+        } else {
+            viewToModel = new int[16];
+            viewCount = 0;
+            modelToView = null;
+            scan(0, modelRowCount);
+        }
+        fireRowSorterChanged(previous);
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        modelRowCount = model.getRowCount();
+        if (query != null) {
+            // Tested once, in the background; matches are added when found
+            scan(firstRow, endRow + 1);
+            return;
+        }
+        if (viewToModel == null) {
+            viewCount = modelRowCount;
+            return;
+        }
+        int[] previous = previousMapping();
+        insertRange(firstRow, endRow + 1);
+        fireRowSorterChanged(previous);
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        // Rows are never deleted one by one; the table is only cleared as a whole
+        allRowsChanged();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        // Search keys come from the request and do not change; sort keys are kept until the next sort
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsUpdated(firstRow, endRow);
+    }
+
+    /**
+     * Lowercase search keys by model row, in chunks. Filter thread only.
+     */
+    private static final class RowKeys {
+        private static final int CHUNK_SHIFT = 12;
+        private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+        private String[][] chunks = new String[16][];
+
+        String get(int row, MatchedHttpPair pair) {
+            int chunkIndex = row >>> CHUNK_SHIFT;
+            if (chunkIndex >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, chunkIndex + 1));
+            }
+            String[] chunk = chunks[chunkIndex];
+            if (chunk == null) {
+                chunk = new String[CHUNK_SIZE];
+                chunks[chunkIndex] = chunk;
+            }
+            String key = chunk[row & (CHUNK_SIZE - 1)];
+            if (key == null) {
+                key = (pair.getMethod() + ' ' + pair.getHost() + ' ' + pair.getUrl() + ' '
+                        + pair.getProcessInfo()).toLowerCase(Locale.ROOT);
+                chunk[row & (CHUNK_SIZE - 1)] = key;
+            }
+            return key;
+        }
+
+        void clear() {
+            chunks = new String[16][];
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ecapture.burp.ui;
+
+import com.ecapture.burp.event.EventManager;
+import com.ecapture.burp.event.MatchedHttpPair;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort keys of the traffic table rows for a set of sort columns, in parallel arrays
+ * indexed by model row: epoch millis for Time, numbers for Status and the lengths, and
+ * the cell text for the other columns.
+ *
+ * Keys are taken once per row, so rows changed later (a response arriving) keep their
+ * place until the next sort. Built on the sort thread, then extended on the EDT only.
+ */
+final class PairSortIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int[] columns;
+    private final boolean[] descending;
+
+    // Per sort column: numeric keys, or text keys (the other one is null)
+    private final long[][] numbers;
+    private final String[][] texts;
+
+    // Rows with keys: [0, size)
+    private int size;
+
+    PairSortIndex(List<? extends RowSorter.SortKey> sortKeys) {
+        List<RowSorter.SortKey> keys = new ArrayList<>();
+        for (RowSorter.SortKey key : sortKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) {
+                keys.add(key);
+            }
+        }
+        columns = new int[keys.size()];
+        descending = new boolean[keys.size()];
+        numbers = new long[keys.size()][];
+        texts = new String[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            columns[i] = keys.get(i).getColumn();
+            descending[i] = keys.get(i).getSortOrder() == SortOrder.DESCENDING;
+            if (isNumeric(columns[i])) {
+                numbers[i] = new long[INITIAL_CAPACITY];
+            } else {
+                texts[i] = new String[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    private static boolean isNumeric(int column) {
+        switch (column) {
+            case 0: // #
+            case 1: // Time
+            case 5: // Status
+            case 6: // Req Len
+            case 7: // Resp Len
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Take the keys of rows {@code [size, rowCount)} from the pair store.
+     */
+    void extend(int rowCount, EventManager eventManager) {
+        if (rowCount <= size) {
+            return;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (numbers[i] != null && numbers[i].length < rowCount) {
+                numbers[i] = Arrays.copyOf(numbers[i], Math.max(rowCount, numbers[i].length * 2));
+            } else if (texts[i] != null && texts[i].length < rowCount) {
+                texts[i] = Arrays.copyOf(texts[i], Math.max(rowCount, texts[i].length * 2));
+            }
+        }
+        for (int row = size; row < rowCount; row++) {
+            MatchedHttpPair pair = eventManager.getPair(row);
+            for (int i = 0; i < columns.length; i++) {
+                if (numbers[i] != null) {
+                    numbers[i][row] = pair != null ? numberKey(pair, row, columns[i]) : 0;
+                } else {
+                    texts[i][row] = pair != null ? textKey(pair, columns[i]) : "";
+                }
+            }
+        }
+        size = rowCount;
+    }
+
+    private static long numberKey(MatchedHttpPair pair, int row, int column) {
+        switch (column) {
+            case 1:
+                return pair.getTimestampMillis();
+            case 5:
+                return pair.getStatus();
+            case 6:
+                return pair.getRequestLength();
+            case 7:
+                return pair.getResponseLength();
+            case 0:
+            default:
+                return row;
+        }
+    }
+
+    private static String textKey(MatchedHttpPair pair, int column) {
+        switch (column) {
+            case 2:
+                return pair.getMethod();
+            case 3:
+                return pair.getHost();
+            case 4:
+                return pair.getUrl();
+            case 8:
+                return pair.getProcessInfo();
+            case 9:
+                return PairTableModel.completeMarker(pair);
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Compare two model rows (both below {@link #size()}) by the sort columns, then by model order.
+     */
+    int compare(int a, int b) {
+        for (int i = 0; i < columns.length; i++) {
+            int result = numbers[i] != null
+                    ? Long.compare(numbers[i][a], numbers[i][b])
+                    : String.CASE_INSENSITIVE_ORDER.compare(texts[i][a], texts[i][b]);
+            if (result != 0) {
+                return descending[i] ? -result : result;
+            }
+        }
+        return Integer.compare(a, b);
+    }
+}
@@ -0,0 +1,176 @@
+package com.ecapture.burp.ui;
+
+import com.ecapture.burp.event.EventManager;
+import com.ecapture.burp.event.MatchedHttpPair;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model reading rows straight from the pair store.
+ *
+ * Row i is the pair at index i of the store, and cell values are computed when the
+ * table asks for them, so a row costs nothing beyond the pair itself. Capture threads
+ * only mark pairs as changed; {@link #flush()}, called on the EDT once per frame, turns
+ * everything that happened since the last frame into at most one insert and one update
+ * event.
+ */
+public class PairTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    // About 30 frames per second
+    public static final int FRAME_INTERVAL_MS = 33;
+
+    static final String[] COLUMN_NAMES = {
+            "#", "Time", "Method", "Host", "URL", "Status", "Req Len", "Resp Len", "Process", "Complete"
+    };
+
+    private final EventManager eventManager;
+
+    // Rows the table knows about; EDT only
+    private int rowCount;
+
+    // Range of changed rows since the last flush; empty when dirtyFrom > dirtyTo
+    private final Object dirtyLock = new Object();
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo = -1;
+
+    public PairTableModel(EventManager eventManager) {
+        this.eventManager = eventManager;
+    }
+
+    /**
+     * Note that a pair was added or changed (response, expiry). Called from any thread.
+     */
+    public void markChanged(MatchedHttpPair pair) {
+        int index = pair.getIndex();
+        if (index < 0) {
+            return;
+        }
+        synchronized (dirtyLock) {
+            dirtyFrom = Math.min(dirtyFrom, index);
+            dirtyTo = Math.max(dirtyTo, index);
+        }
+    }
+
+    /**
+     * Publish new and changed rows to the table. EDT only.
+     */
+    public void flush() {
+        int from;
+        int to;
+        synchronized (dirtyLock) {
+            from = dirtyFrom;
+            to = dirtyTo;
+            dirtyFrom = Integer.MAX_VALUE;
+            dirtyTo = -1;
+        }
+
+        int oldCount = rowCount;
+        int newCount = eventManager.getPairCount();
+        if (newCount < oldCount) {
+            // Cleared since the last frame
+            rowCount = newCount;
+            fireTableDataChanged();
+            return;
+        }
+
+        // New rows are read fresh, so only changes to rows the table already has count
+        to = Math.min(to, oldCount - 1);
+        if (from <= to) {
+            fireTableRowsUpdated(from, to);
+        }
+        if (newCount > oldCount) {
+            rowCount = newCount;
+            fireTableRowsInserted(oldCount, newCount - 1);
+        }
+    }
+
+    /**
+     * Drop all rows (after the pair store was cleared). EDT only.
+     */
+    public void clear() {
+        rowCount = 0;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Pair shown in a model row, or null if the store no longer has it.
+     */
+    public MatchedHttpPair getPair(int row) {
+        return row < rowCount ? eventManager.getPair(row) : null;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0:
+            case 6:
+            case 7:
+                return Integer.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        MatchedHttpPair pair = eventManager.getPair(row);
+        if (pair == null) {
+            // Cleared; the next flush drops the row
+            return getColumnClass(column) == Integer.class ? (Object) 0 : "";
+        }
+        switch (column) {
+            case 0:
+                return row + 1;
+            case 1:
+                return pair.getTimestamp();
+            case 2:
+                return pair.getMethod();
+            case 3:
+                return pair.getHost();
+            case 4:
+                return pair.getUrl();
+            case 5:
+                return pair.getStatusCode();
+            case 6:
+                return pair.getRequestLength();
+            case 7:
+                return pair.getResponseLength();
+            case 8:
+                return pair.getProcessInfo();
+            case 9:
+                return completeMarker(pair);
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Value of the Complete column: done, waiting, or expired without a response.
+     */
+    static String completeMarker(MatchedHttpPair pair) {
+        String marker;
+        if (pair.isComplete()) {
+            marker = "✓";
+        } else {
+            marker = pair.isOrphaned() ? "orphan" : "...";
+        }
+        return pair.isBodyTruncated() ? marker + " (truncated)" : marker;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecapture.burp.ui;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable merge sort of row indices with a primitive comparator, sequential or split
+ * across the fork/join pool. Row indices stay unboxed throughout.
+ */
+final class RowIndexSort {
+
+    /**
+     * Compares two model rows.
+     */
+    interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    // Ranges at most this long are sorted on one thread
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    // Ranges at most this long are insertion sorted
+    private static final int INSERTION_THRESHOLD = 32;
+
+    private RowIndexSort() {
+    }
+
+    static void sort(int[] rows, int from, int to, RowComparator comparator) {
+        mergeSort(rows, new int[rows.length], from, to, comparator);
+    }
+
+    static void parallelSort(int[] rows, RowComparator comparator) {
+        if (rows.length <= SEQUENTIAL_THRESHOLD) {
+            sort(rows, 0, rows.length, comparator);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new SortTask(rows, new int[rows.length], 0, rows.length, comparator));
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] rows;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final RowComparator comparator;
+
+        SortTask(int[] rows, int[] buffer, int from, int to, RowComparator comparator) {
+            this.rows = rows;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                mergeSort(rows, buffer, from, to, comparator);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(rows, buffer, from, mid, comparator),
+                    new SortTask(rows, buffer, mid, to, comparator));
+            merge(rows, buffer, from, mid, to, comparator);
+        }
+    }
+
+    private static void mergeSort(int[] rows, int[] buffer, int from, int to, RowComparator comparator) {
+        if (to - from <= INSERTION_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, mid, comparator);
+        mergeSort(rows, buffer, mid, to, comparator);
+        merge(rows, buffer, from, mid, to, comparator);
+    }
+
+    /**
+     * Merge the sorted ranges {@code [from, mid)} and {@code [mid, to)}.
+     */
+    private static void merge(int[] rows, int[] buffer, int from, int mid, int to, RowComparator comparator) {
+        if (comparator.compare(rows[mid - 1], rows[mid]) <= 0) {
+            return; // Already in order
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comparator.compare(buffer[i], buffer[j]) <= 0)) {
+                rows[k] = buffer[i++];
+            } else {
+                rows[k] = buffer[j++];
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.ecapture.burp.ui;
+
+import com.ecapture.burp.log.RuntimeLogEntry;
+import com.ecapture.burp.log.RuntimeLogStore;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Paged viewer for eCapture runtime logs.
+ * Only one page is held by the table; it is refreshed from the log store on a timer,
+ * so a chatty eCapture never floods the EDT.
+ */
+public class RuntimeLogPanel {
+
+    private static final int PAGE_SIZE = 200;
+    private static final int REFRESH_INTERVAL_MS = 500;
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final String[] COLUMN_NAMES = {"#", "Time", "Level", "Message", "Repeats"};
+
+    private final RuntimeLogStore logStore;
+
+    private final JPanel panel;
+    private final PageTableModel tableModel;
+    private final JLabel pageLabel;
+    private final JCheckBox followBox;
+
+    // First sequence of the page shown; ignored while following the newest entries
+    private long pageStart;
+
+    // Store state at the last refresh, to skip refreshes when nothing changed
+    private long lastNextSequence = -1;
+    private long lastFirstSequence = -1;
+
+    public RuntimeLogPanel(RuntimeLogStore logStore) {
+        this.logStore = logStore;
+        this.tableModel = new PageTableModel();
+
+        panel = new JPanel(new BorderLayout(5, 5));
+        panel.setBorder(new EmptyBorder(5, 5, 5, 5));
+
+        // Paging controls
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 2));
+
+        JButton oldestButton = new JButton("|<");
+        oldestButton.setToolTipText("Oldest");
+        oldestButton.addActionListener(e -> showPage(logStore.getFirstSequence()));
+        controlPanel.add(oldestButton);
+
+        JButton previousButton = new JButton("<");
+        previousButton.setToolTipText("Previous page");
+        previousButton.addActionListener(e -> showPage(currentPageStart() - PAGE_SIZE));
+        controlPanel.add(previousButton);
+
+        JButton nextButton = new JButton(">");
+        nextButton.setToolTipText("Next page");
+        nextButton.addActionListener(e -> showPage(currentPageStart() + PAGE_SIZE));
+        controlPanel.add(nextButton);
+
+        JButton newestButton = new JButton(">|");
+        newestButton.setToolTipText("Newest");
+        newestButton.addActionListener(e -> showPage(Long.MAX_VALUE));
+        controlPanel.add(newestButton);
+
+        followBox = new JCheckBox("Follow", true);
+        followBox.setToolTipText("Keep showing the newest entries");
+        followBox.addActionListener(e -> refresh(true));
+        controlPanel.add(followBox);
+
+        pageLabel = new JLabel("No entries");
+        controlPanel.add(pageLabel);
+
+        panel.add(controlPanel, BorderLayout.NORTH);
+
+        // Table
+        JTable table = new JTable(tableModel);
+        table.setAutoResizeMode(JTable.AUTO_RESIZE_SUBSEQUENT_COLUMNS);
+        table.getColumnModel().getColumn(0).setPreferredWidth(60);  // #
+        table.getColumnModel().getColumn(1).setPreferredWidth(160); // Time
+        table.getColumnModel().getColumn(2).setPreferredWidth(60);  // Level
+        table.getColumnModel().getColumn(3).setPreferredWidth(700); // Message
+        table.getColumnModel().getColumn(4).setPreferredWidth(60);  // Repeats
+        table.getColumnModel().getColumn(2).setCellRenderer(new SeverityRenderer());
+
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        Timer refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh(false));
+        refreshTimer.start();
+    }
+
+    public JPanel getPanel() {
+        return panel;
+    }
+
+    /**
+     * Reload the current page now (e.g. after the store was cleared).
+     */
+    public void reload() {
+        refresh(true);
+    }
+
+    private long currentPageStart() {
+        return followBox.isSelected() ? newestPageStart() : pageStart;
+    }
+
+    private long newestPageStart() {
+        return Math.max(logStore.getFirstSequence(), logStore.getNextSequence() - PAGE_SIZE);
+    }
+
+    private void showPage(long start) {
+        long first = logStore.getFirstSequence();
+        long newest = newestPageStart();
+        pageStart = Math.max(first, Math.min(start, newest));
+
+        // Paging to the end resumes following
+        followBox.setSelected(pageStart >= newest && logStore.getNextSequence() > 0);
+        refresh(true);
+    }
+
+    private void refresh(boolean force) {
+        long nextSequence = logStore.getNextSequence();
+        long firstSequence = logStore.getFirstSequence();
+
+        // Collapsed repeats only change counts; repaint the rows instead of reloading
+        if (!force && nextSequence == lastNextSequence && firstSequence == lastFirstSequence) {
+            if (tableModel.getRowCount() > 0) {
+                tableModel.fireTableRowsUpdated(0, tableModel.getRowCount() - 1);
+            }
+            return;
+        }
+        boolean cleared = nextSequence < lastNextSequence;
+        lastNextSequence = nextSequence;
+        lastFirstSequence = firstSequence;
+
+        // A full page that is not following only changes once its entries are evicted
+        if (!force && !cleared && !followBox.isSelected()
+                && pageStart >= firstSequence && tableModel.getRowCount() == PAGE_SIZE) {
+            updatePageLabel(firstSequence, nextSequence);
+            return;
+        }
+
+        if (followBox.isSelected()) {
+            pageStart = newestPageStart();
+        } else if (pageStart < firstSequence || pageStart >= nextSequence) {
+            pageStart = Math.max(firstSequence, Math.min(pageStart, newestPageStart()));
+        }
+
+        tableModel.setEntries(logStore.getEntries(pageStart, PAGE_SIZE));
+        updatePageLabel(firstSequence, nextSequence);
+    }
+
+    private void updatePageLabel(long firstSequence, long nextSequence) {
+        if (nextSequence == firstSequence) {
+            pageLabel.setText("No entries");
+            return;
+        }
+        long pageEnd = Math.min(nextSequence, pageStart + tableModel.getRowCount());
+        pageLabel.setText(String.format("Entries %d-%d of %d-%d (newest %d kept)",
+                pageStart + 1, pageEnd, firstSequence + 1, nextSequence, logStore.capacity()));
+    }
+
+    /**
+     * Table model over one page of entries.
+     */
+    private static class PageTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+
+        private List<RuntimeLogEntry> entries = Collections.emptyList();
+
+        void setEntries(List<RuntimeLogEntry> entries) {
+            this.entries = entries;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return entries.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            RuntimeLogEntry entry = entries.get(row);
+            switch (column) {
+                case 0:
+                    return entry.getSequence() + 1;
+                case 1:
+                    return TIME_FORMAT.format(Instant.ofEpochMilli(entry.getLastTimestamp()));
+                case 2:
+                    return entry.getSeverity();
+                case 3:
+                    return entry.getMessage();
+                case 4:
+                    return entry.getRepeatCount() > 1 ? entry.getRepeatCount() : "";
+                default:
+                    return "";
+            }
+        }
+    }
+
+    /**
+     * Colors the Level column by severity.
+     */
+    private static class SeverityRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            RuntimeLogEntry.Severity severity = (RuntimeLogEntry.Severity) value;
+            super.getTableCellRendererComponent(table, severity.getShortName(), isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                switch (severity) {
+                    case WARN:
+                        setForeground(new Color(255, 152, 0));
+                        break;
+                    case ERROR:
+                    case FATAL:
+                        setForeground(Color.RED);
+                        break;
+                    case TRACE:
+                    case DEBUG:
+                        setForeground(Color.GRAY);
+                        break;
+                    default:
+                        setForeground(table.getForeground());
+                }
+            }
+            return this;
+        }
+    }
+}
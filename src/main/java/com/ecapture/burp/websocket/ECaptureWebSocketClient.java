@@ -4,13 +4,21 @@ import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.logging.Logging;
 import com.ecapture.burp.event.CapturedEvent;
 import com.ecapture.burp.event.EventManager;
-import com.ecapture.burp.proto.ECaptureProto;
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.ecapture.burp.http2.Http2Demuxer;
+import com.ecapture.burp.ingest.Http1Reassembler;
+import com.ecapture.burp.ingest.IngestPipeline;
+import com.ecapture.burp.ingest.RetentionPolicy;
+import com.ecapture.burp.proto.LogEntryDecoder;
+import com.ecapture.burp.proto.WireFormatException;
+import com.ecapture.burp.store.Payload;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -27,6 +35,27 @@ public class ECaptureWebSocketClient {
     private final MontoyaApi api;
     private final Logging logging;
     private final EventManager eventManager;
+    private final IngestPipeline ingestPipeline;
+    
+    // Reused for every frame; only touched from the WebSocket read thread
+    private final LogEntryDecoder decoder;
+    
+    // Joins HTTP/1.x messages split across events; guarded by streamLock
+    private final Http1Reassembler reassembler;
+    
+    // Splits HTTP/2 connections into messages, ahead of the reassembler; guarded by streamLock
+    private final Http2Demuxer http2Demuxer;
+    
+    // Decides how much of each message is stored; consulted on the read thread
+    private final RetentionPolicy retentionPolicy;
+    
+    // Held by the read thread while it handles a frame, and by close and clear,
+    // which may run on other threads
+    private final Object streamLock = new Object();
+    
+    // Messages completed under streamLock; published only once it is released, since
+    // publishing may block (BLOCK policy) and clear waits for the lock on the EDT
+    private List<CapturedEvent> completed = new ArrayList<>();
     
     private WebSocketClient wsClient;
     private String serverUrl;
@@ -53,10 +82,25 @@ public class ECaptureWebSocketClient {
     
     private volatile ConnectionState currentState = ConnectionState.DISCONNECTED;
     
-    public ECaptureWebSocketClient(MontoyaApi api, EventManager eventManager) {
+    public ECaptureWebSocketClient(MontoyaApi api, EventManager eventManager, IngestPipeline ingestPipeline) {
         this.api = api;
         this.logging = api.logging();
         this.eventManager = eventManager;
+        this.ingestPipeline = ingestPipeline;
+        this.decoder = new LogEntryDecoder();
+        this.retentionPolicy = new RetentionPolicy();
+        this.reassembler = new Http1Reassembler(new Http1Reassembler.Listener() {
+            @Override
+            public void onMessage(CapturedEvent source, ByteBuffer[] message, int omitted) {
+                publishMessage(source, message, omitted);
+            }
+            
+            @Override
+            public void onPassthrough(CapturedEvent source) {
+                publishPassthrough(source);
+            }
+        }, eventManager.getPayloadStore(), retentionPolicy);
+        this.http2Demuxer = new Http2Demuxer(this::publishHttp2Message);
         this.shouldReconnect = new AtomicBoolean(false);
         this.isConnecting = new AtomicBoolean(false);
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -137,6 +181,9 @@ public class ECaptureWebSocketClient {
                             ", remote=" + remote);
                     isConnecting.set(false);
                     
+                    // Streams cannot continue on the next connection; deliver what arrived
+                    flushStreams();
+                    
                     if (shouldReconnect.get()) {
                         updateState(ConnectionState.RECONNECTING);
                         scheduleReconnect();
@@ -168,37 +215,88 @@ public class ECaptureWebSocketClient {
     
     /**
      * Handle binary protobuf message from eCapture.
+     * The frame is decoded in place; only the event payload is copied out of it.
      */
     private void handleBinaryMessage(ByteBuffer bytes) {
-        try {
-            byte[] data = new byte[bytes.remaining()];
-            bytes.get(data);
-            
-            ECaptureProto.LogEntry logEntry = ECaptureProto.LogEntry.parseFrom(data);
-            
-            switch (logEntry.getLogType()) {
-                case LOG_TYPE_HEARTBEAT:
-                    handleHeartbeat(logEntry.getHeartbeatPayload());
-                    break;
-                    
-                case LOG_TYPE_PROCESS_LOG:
-                    handleProcessLog(logEntry.getRunLog());
-                    break;
-                    
-                case LOG_TYPE_EVENT:
-                    handleEvent(logEntry.getEventPayload());
-                    break;
-                    
-                default:
-                    logging.logToOutput("Unknown log type: " + logEntry.getLogType());
+        List<CapturedEvent> ready;
+        synchronized (streamLock) {
+            try {
+                decoder.decode(bytes);
+                
+                switch (decoder.getLogType()) {
+                    case LOG_TYPE_HEARTBEAT:
+                        handleHeartbeat(decoder.getHeartbeatPayload());
+                        break;
+                        
+                    case LOG_TYPE_PROCESS_LOG:
+                        handleProcessLog(decoder.getRunLog());
+                        break;
+                        
+                    case LOG_TYPE_EVENT:
+                        handleEvent(decoder.getEventPayload());
+                        break;
+                        
+                    default:
+                        logging.logToOutput("Unknown log type: " + decoder.getLogType());
+                }
+                
+            } catch (WireFormatException e) {
+                logging.logToError("Failed to parse protobuf message: " + e.getMessage());
             }
-            
-        } catch (InvalidProtocolBufferException e) {
-            logging.logToError("Failed to parse protobuf message: " + e.getMessage());
+            ready = takeCompleted();
+        }
+        publish(ready);
+    }
+    
+    /**
+     * Deliver every partly received message as incomplete (the connection is gone).
+     */
+    private void flushStreams() {
+        List<CapturedEvent> ready;
+        synchronized (streamLock) {
+            reassembler.flushAll();
+            http2Demuxer.flushAll();
+            ready = takeCompleted();
         }
+        publish(ready);
     }
     
-    private void handleHeartbeat(ECaptureProto.Heartbeat heartbeat) {
+    /**
+     * Messages completed since the last call. Called under streamLock.
+     */
+    private List<CapturedEvent> takeCompleted() {
+        if (completed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<CapturedEvent> taken = completed;
+        completed = new ArrayList<>();
+        return taken;
+    }
+    
+    /**
+     * Hand messages off to the ingest consumers. Called without streamLock held.
+     */
+    private void publish(List<CapturedEvent> events) {
+        for (CapturedEvent event : events) {
+            ingestPipeline.publish(event);
+        }
+    }
+    
+    /**
+     * Drop partly received messages without delivering them (the captured traffic was cleared).
+     */
+    public void clearStreams() {
+        synchronized (streamLock) {
+            reassembler.clear();
+            http2Demuxer.clear();
+        }
+    }
+    
+    private void handleHeartbeat(LogEntryDecoder.HeartbeatView heartbeat) {
+        // Heartbeats keep coming when traffic stops, so idle streams still get flushed
+        long now = System.currentTimeMillis();
+        reassembler.flushIdle(now);
+        http2Demuxer.flushIdle(now);
         if (heartbeat != null) {
             eventManager.processHeartbeat(
                     heartbeat.getTimestamp(),
@@ -214,7 +312,7 @@ public class ECaptureWebSocketClient {
         }
     }
     
-    private void handleEvent(ECaptureProto.Event event) {
+    private void handleEvent(LogEntryDecoder.EventView event) {
         if (event == null) {
             return;
         }
@@ -230,10 +328,46 @@ public class ECaptureWebSocketClient {
                 event.getPname(),
                 event.getType(),
                 event.getLength(),
-                event.getPayload().toByteArray()
+                null
         );
         
-        eventManager.processEvent(capturedEvent);
+        // Messages come back out once complete; the payload is copied out of the frame then
+        ByteBuffer payload = event.getPayloadBuffer();
+        if (!http2Demuxer.accept(capturedEvent, payload)) {
+            reassembler.accept(capturedEvent, payload);
+        }
+    }
+    
+    /**
+     * Store a reassembled message and queue it for the ingest consumers,
+     * so this read thread keeps draining the socket.
+     * The reassembler already left out the body bytes the retention policy drops.
+     */
+    private void publishMessage(CapturedEvent source, ByteBuffer[] message, int omitted) {
+        Payload payload = eventManager.getPayloadStore().store(message);
+        completed.add(source.withPayload(payload, omitted));
+    }
+    
+    /**
+     * Data that is not HTTP is not stored. An event eCapture typed as a request is still
+     * published, without payload, so it keeps its place among the connection's unanswered
+     * requests; anything else is dropped here.
+     */
+    private void publishPassthrough(CapturedEvent source) {
+        if (source.isRequest()) {
+            completed.add(source);
+        }
+    }
+    
+    /**
+     * Store a decoded HTTP/2 message (in HTTP/1-style text form) and queue it
+     * like {@link #publishMessage}. Only the part kept by the retention policy is copied
+     * into the store.
+     */
+    private void publishHttp2Message(CapturedEvent source, int streamId, boolean request, ByteBuffer message) {
+        int kept = retentionPolicy.retainedLength(source, message);
+        Payload payload = eventManager.getPayloadStore().store(message.slice(message.position(), kept));
+        completed.add(source.withHttp2Message(payload, request, streamId, message.remaining() - kept));
     }
     
     /**
@@ -318,6 +452,27 @@ public class ECaptureWebSocketClient {
         }
     }
     
+    /**
+     * HTTP/1.x reassembly state, for stats.
+     */
+    public Http1Reassembler getReassembler() {
+        return reassembler;
+    }
+    
+    /**
+     * HTTP/2 decoding state, for stats.
+     */
+    public Http2Demuxer getHttp2Demuxer() {
+        return http2Demuxer;
+    }
+    
+    /**
+     * Body retention settings and stats.
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+    
     /**
      * Get current server URL.
      */
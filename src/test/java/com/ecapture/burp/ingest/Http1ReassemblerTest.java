@@ -0,0 +1,230 @@
+package com.ecapture.burp.ingest;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.logging.Logging;
+import com.ecapture.burp.event.CapturedEvent;
+import com.ecapture.burp.store.PayloadStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Http1ReassemblerTest {
+
+    private static final String UUID = "sock:100_200_curl_3_0_10.0.0.1:5000-10.0.0.2:80";
+
+    private final List<String> messages = new ArrayList<>();
+    private final List<Integer> omitted = new ArrayList<>();
+    private final List<CapturedEvent> passthrough = new ArrayList<>();
+    private PayloadStore store;
+    private Http1Reassembler reassembler;
+
+    @TempDir
+    Path arenaDirectory;
+
+    @BeforeEach
+    void setUp() {
+        store = new PayloadStore(api(), arenaDirectory, 1024 * 1024);
+        reassembler = reassembler(new RetentionPolicy(), Http1Reassembler.DEFAULT_MAX_MESSAGE_SIZE,
+                Http1Reassembler.DEFAULT_SPILL_THRESHOLD);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private Http1Reassembler reassembler(RetentionPolicy retentionPolicy, int maxMessageSize, int spillThreshold) {
+        return new Http1Reassembler(new Http1Reassembler.Listener() {
+            @Override
+            public void onMessage(CapturedEvent source, ByteBuffer[] message, int omittedBytes) {
+                StringBuilder text = new StringBuilder();
+                for (ByteBuffer part : message) {
+                    text.append(StandardCharsets.ISO_8859_1.decode(part));
+                }
+                messages.add(text.toString());
+                omitted.add(omittedBytes);
+            }
+
+            @Override
+            public void onPassthrough(CapturedEvent source) {
+                passthrough.add(source);
+            }
+        }, store, retentionPolicy, maxMessageSize, spillThreshold, Http1Reassembler.DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Montoya API whose logging discards everything (the store only logs).
+     */
+    private static MontoyaApi api() {
+        Logging logging = (Logging) Proxy.newProxyInstance(Logging.class.getClassLoader(),
+                new Class<?>[] {Logging.class}, (proxy, method, args) -> null);
+        return (MontoyaApi) Proxy.newProxyInstance(MontoyaApi.class.getClassLoader(),
+                new Class<?>[] {MontoyaApi.class},
+                (proxy, method, args) -> method.getReturnType() == Logging.class ? logging : null);
+    }
+
+    private CapturedEvent feed(String data) {
+        CapturedEvent event = new CapturedEvent(0, UUID, "10.0.0.1", 5000, "10.0.0.2", 80,
+                100, "curl", 0, data.length(), null);
+        reassembler.accept(event, ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1)));
+        return event;
+    }
+
+    @Test
+    void contentLengthBodySplitAcrossEvents() {
+        feed("POST /items HTTP/1.1\r\nHost: example.com\r\nContent-Length: 10\r\n\r\n01234");
+        assertTrue(messages.isEmpty());
+        feed("56789");
+
+        assertEquals(List.of("POST /items HTTP/1.1\r\nHost: example.com\r\nContent-Length: 10\r\n\r\n0123456789"),
+                messages);
+        assertEquals(1, reassembler.getMessagesReassembled());
+        assertEquals(0, reassembler.getPendingStreams());
+        assertEquals(0, reassembler.getBufferedBytes());
+    }
+
+    @Test
+    void pipelinedMessagesInOneEventAreSplit() {
+        feed("GET /a HTTP/1.1\r\nHost: example.com\r\n\r\n"
+                + "POST /b HTTP/1.1\r\nHost: example.com\r\nContent-Length: 3\r\n\r\nabc"
+                + "GET /c HTTP/1.1\r\nHost: example.com\r\n\r\n");
+
+        assertEquals(List.of("GET /a HTTP/1.1\r\nHost: example.com\r\n\r\n",
+                "POST /b HTTP/1.1\r\nHost: example.com\r\nContent-Length: 3\r\n\r\nabc",
+                "GET /c HTTP/1.1\r\nHost: example.com\r\n\r\n"), messages);
+        assertEquals(2, reassembler.getMessagesSplit());
+        assertEquals(0, reassembler.getMessagesReassembled());
+        assertEquals(0, reassembler.getPendingStreams());
+    }
+
+    @Test
+    void closeDelimitedResponseEndsWhenStreamGoesIdle() {
+        feed("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nfirst ");
+        feed("second");
+        assertTrue(messages.isEmpty());
+
+        reassembler.flushIdle(System.currentTimeMillis() + Http1Reassembler.DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+        assertEquals(List.of("HTTP/1.0 200 OK\r\nContent-Type: text/plain\r\n\r\nfirst second"), messages);
+        assertEquals(0, reassembler.getIncompleteMessages());
+        assertEquals(0, reassembler.getPendingStreams());
+    }
+
+    @Test
+    void closeDelimitedResponseEndsWhenConnectionCloses() {
+        feed("HTTP/1.0 200 OK\r\n\r\nbody");
+        reassembler.flushAll();
+
+        assertEquals(List.of("HTTP/1.0 200 OK\r\n\r\nbody"), messages);
+        assertEquals(0, reassembler.getIncompleteMessages());
+    }
+
+    @Test
+    void fragmentsPastSpillThresholdAreSpilledAndReleased() {
+        reassembler = reassembler(new RetentionPolicy(), Http1Reassembler.DEFAULT_MAX_MESSAGE_SIZE, 64);
+        String head = "HTTP/1.1 200 OK\r\nContent-Length: 300\r\n\r\n";
+        String body = "0123456789".repeat(30);
+        feed(head + body.substring(0, 10));
+        feed(body.substring(10, 110));
+        feed(body.substring(110, 210));
+
+        assertTrue(store.getBytesStored() >= 200);
+        feed(body.substring(210));
+
+        assertEquals(List.of(head + body), messages);
+        assertEquals(0, store.getBytesStored());
+        assertEquals(0, reassembler.getBufferedBytes());
+    }
+
+    @Test
+    void messageOverSizeLimitIsDeliveredCutShort() {
+        reassembler = reassembler(new RetentionPolicy(), 64, Http1Reassembler.DEFAULT_SPILL_THRESHOLD);
+        String head = "HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n";
+        String body = "x".repeat(100);
+        feed(head + body.substring(0, 10));
+        feed(body.substring(10, 60));
+        assertEquals(0, reassembler.getBufferedBytes());
+        feed(body.substring(60));
+
+        assertEquals(List.of((head + body).substring(0, 64)), messages);
+        assertEquals(1, reassembler.getTruncatedMessages());
+        assertEquals(1, reassembler.getIncompleteMessages());
+
+        // The rest of the message is skipped, and the next one is read as usual
+        feed("HTTP/1.1 204 No Content\r\n\r\n");
+        assertEquals(2, messages.size());
+        assertEquals("HTTP/1.1 204 No Content\r\n\r\n", messages.get(1));
+        assertEquals(0, reassembler.getPendingStreams());
+    }
+
+    @Test
+    void bodyPastRetentionLimitIsNotBuffered() {
+        RetentionPolicy retentionPolicy = new RetentionPolicy(4, true);
+        reassembler = reassembler(retentionPolicy, Http1Reassembler.DEFAULT_MAX_MESSAGE_SIZE,
+                Http1Reassembler.DEFAULT_SPILL_THRESHOLD);
+        String head = "HTTP/1.1 200 OK\r\nContent-Length: 20\r\n\r\n";
+        feed(head + "0123456");
+        assertEquals(head.length() + 4, reassembler.getBufferedBytes());
+        feed("789abcdefghij");
+
+        assertEquals(List.of(head + "0123"), messages);
+        assertEquals(List.of(16), omitted);
+        assertEquals(1, retentionPolicy.getTruncatedBodies());
+        assertEquals(16, retentionPolicy.getBytesDropped());
+    }
+
+    @Test
+    void chunkedBodySplitAcrossEvents() {
+        feed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nWi");
+        feed("ki\r\n5;ext=1\r\npedia\r\n0\r\n\r\n");
+
+        assertEquals(List.of("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "4\r\nWiki\r\n5;ext=1\r\npedia\r\n0\r\n\r\n"), messages);
+        assertTrue(passthrough.isEmpty());
+    }
+
+    @Test
+    void chunkSizeOfFifteenDigitsWaitsForData() {
+        feed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nfffffffffffffff\r\nabc");
+
+        assertTrue(messages.isEmpty());
+        assertTrue(passthrough.isEmpty());
+        assertEquals(1, reassembler.getPendingStreams());
+    }
+
+    @Test
+    void chunkSizeThatWouldOverflowFallsBackToPassthrough() {
+        // 16 hex digits would shift into the sign bit of the size
+        CapturedEvent event = feed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "8000000000000000\r\nabc");
+
+        assertTrue(messages.isEmpty());
+        assertEquals(1, passthrough.size());
+        assertSame(event, passthrough.get(0));
+        assertEquals(0, reassembler.getPendingStreams());
+        assertEquals(0, reassembler.getBufferedBytes());
+    }
+
+    @Test
+    void chunkSizeOverflowInLaterEventDropsBufferedMessage() {
+        CapturedEvent first = feed("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n");
+        feed("fffffffffffffffff\r\n");
+
+        assertTrue(messages.isEmpty());
+        assertEquals(1, passthrough.size());
+        assertSame(first, passthrough.get(0));
+        assertEquals(0, reassembler.getBufferedBytes());
+    }
+}